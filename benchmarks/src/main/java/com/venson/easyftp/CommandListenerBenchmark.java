@@ -0,0 +1,95 @@
+package com.venson.easyftp;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.net.ProtocolCommandEvent;
+import org.apache.commons.net.ProtocolCommandListener;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The benchmark of the command listeners, which are called for each FTP command and reply.
+ *
+ * @author venson
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CommandListenerBenchmark {
+
+    /**
+     * The command listener under test.
+     * LOG_OFF: FTPLogCommandListener with debug level off, which is the usual production setting.
+     * LOG_ON: FTPLogCommandListener with debug level on, logged to no appender.
+     * METRICS: FTPMetricsCommandListener.
+     * EVENT_OFF: FTPEventCommandListener whose event listener records nothing.
+     */
+    @Param({ "LOG_OFF", "LOG_ON", "METRICS", "EVENT_OFF" })
+    public String listenerType;
+
+    /**
+     * The command listener.
+     */
+    private ProtocolCommandListener listener;
+
+    /**
+     * The event of command sent.
+     */
+    private ProtocolCommandEvent commandEvent;
+
+    /**
+     * The event of reply received.
+     */
+    private ProtocolCommandEvent replyEvent;
+
+    /**
+     * Create the command listener and the events.
+     */
+    @Setup
+    public void setup() {
+
+        Object source = new Object();
+        commandEvent = new ProtocolCommandEvent(source, "RETR", "RETR /ftp/file/foo.xml\r\n");
+        replyEvent = new ProtocolCommandEvent(source, 150, "150 Opening BINARY mode data connection.\r\n");
+
+        if ("LOG_OFF".equals(listenerType)) {
+            listener = new FTPLogCommandListener(LoggerFactory.getLogger("benchmark.quiet"));
+        } else if ("LOG_ON".equals(listenerType)) {
+            listener = new FTPLogCommandListener(LoggerFactory.getLogger("benchmark.debug"));
+        } else if ("METRICS".equals(listenerType)) {
+            listener = new FTPMetricsCommandListener(new MetricsRegistry());
+        } else {
+            listener = new FTPEventCommandListener(new FTPEventListener() {
+
+                public Object begin(FTPEventType type, String hostKey, String name) {
+                    return null;
+                }
+
+                public void end(Object event, long bytes, int replyCode, boolean success) {
+                }
+            }, "127.0.0.1:21");
+        }
+    }
+
+    /**
+     * Notify the listener of one command and its reply.
+     */
+    @Benchmark
+    public void commandAndReply() {
+        listener.protocolCommandSent(commandEvent);
+        listener.protocolReplyReceived(replyEvent);
+    }
+}
@@ -0,0 +1,167 @@
+package com.venson.easyftp;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.net.io.Util;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The benchmark of the copy loops of download, from the data connection through the stream
+ * wrappers of ServerToClient, without any socket or disk.
+ *
+ * @author venson
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StreamCopyBenchmark {
+
+    /**
+     * The size of the copied data.(byte)
+     */
+    @Param({ "65536", "16777216" })
+    public int size;
+
+    /**
+     * The size of copy buffer.(byte)
+     */
+    @Param({ "1024", "65536" })
+    public int bufferSize;
+
+    /**
+     * The stream wrappers of the output.
+     * PLAIN: no wrapper.
+     * COUNTING: CountingOutputStream, which is used when metrics are on.
+     * CRC32: ChecksumOutputStream with CRC32.
+     * MD5: ChecksumOutputStream with MD5.
+     */
+    @Param({ "PLAIN", "COUNTING", "CRC32", "MD5" })
+    public String chain;
+
+    /**
+     * The copied data.
+     */
+    private byte[] data;
+
+    /**
+     * The pool of direct buffers.
+     */
+    private DirectBufferPool bufferPool;
+
+    /**
+     * Create the copied data.
+     */
+    @Setup
+    public void setup() {
+
+        data = new byte[size];
+        new Random(size).nextBytes(data);
+        bufferPool = new DirectBufferPool(1);
+    }
+
+    /**
+     * Copy the data through the stream wrappers, like FTPClient.retrieveFile does.
+     *
+     * @return The count of bytes copied.
+     * @throws IOException
+     */
+    @Benchmark
+    public long copyStream() throws IOException {
+
+        OutputStream output = new NullOutputStream();
+        if ("COUNTING".equals(chain)) {
+            output = new CountingOutputStream(output, new TransferMetrics());
+        } else if ("CRC32".equals(chain)) {
+            output = new ChecksumOutputStream(output, new TransferChecksum(ChecksumAlgorithm.CRC32));
+        } else if ("MD5".equals(chain)) {
+            output = new ChecksumOutputStream(output, new TransferChecksum(ChecksumAlgorithm.MD5));
+        }
+
+        return Util.copyStream(new ByteArrayInputStream(data), output, bufferSize);
+    }
+
+    /**
+     * Copy the data into a pooled direct buffer, like the download through file channel does.
+     *
+     * @return The count of bytes copied.
+     * @throws IOException
+     */
+    @Benchmark
+    public long copyChannel() throws IOException {
+
+        ReadableByteChannel input = Channels.newChannel(new ByteArrayInputStream(data));
+        ByteBuffer buffer = bufferPool.acquire(bufferSize);
+        TransferChecksum digest = null;
+        if ("CRC32".equals(chain)) {
+            digest = new TransferChecksum(ChecksumAlgorithm.CRC32);
+        } else if ("MD5".equals(chain)) {
+            digest = new TransferChecksum(ChecksumAlgorithm.MD5);
+        }
+
+        long total = 0L;
+        try {
+
+            int count;
+            while ((count = input.read(buffer)) != -1) {
+
+                buffer.flip();
+                if (digest != null) {
+                    digest.update(buffer);
+                }
+                total += count;
+                buffer.clear();
+            }
+
+        } finally {
+            bufferPool.release(buffer);
+        }
+
+        return total;
+    }
+
+    /**
+     * The output stream which discards all data.
+     */
+    private static class NullOutputStream extends OutputStream {
+
+        /**
+         * Discard the byte.
+         *
+         * @param b The byte.
+         */
+        @Override
+        public void write(int b) {
+        }
+
+        /**
+         * Discard the bytes.
+         *
+         * @param b The bytes.
+         * @param off The offset of the bytes.
+         * @param len The length of the bytes.
+         */
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+}
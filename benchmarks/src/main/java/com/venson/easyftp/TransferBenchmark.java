@@ -0,0 +1,213 @@
+package com.venson.easyftp;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The end-to-end benchmark of ServerToClient against LoopbackFTPServer, including connect,
+ * login, probe, the data connection and the local disk.
+ *
+ * @author venson
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class TransferBenchmark {
+
+    /**
+     * The path of the downloaded file on FTP server.
+     */
+    private static final String DOWNLOAD_PATH = "/ftp/file/download.bin";
+
+    /**
+     * The path of the uploaded file on FTP server.
+     */
+    private static final String UPLOAD_PATH = "/ftp/file/upload.bin";
+
+    /**
+     * The size of the transferred file.(byte)
+     */
+    @Param({ "1048576", "67108864" })
+    public int size;
+
+    /**
+     * The IO path of transfer.
+     * STREAM: download and upload through stream.
+     * CHANNEL: download through file channel with direct buffers, and zero-copy upload.
+     */
+    @Param({ "STREAM", "CHANNEL" })
+    public String ioMode;
+
+    /**
+     * The delay of each reply of FTP server, which emulates the round trip of a remote one.(millisecond)
+     */
+    @Param({ "0", "20" })
+    public long replyLatency;
+
+    /**
+     * The working directory, with the root of FTP server and the local files.
+     */
+    private File workDirectory;
+
+    /**
+     * The FTP server.
+     */
+    private LoopbackFTPServer server;
+
+    /**
+     * The FTP client of download.
+     */
+    private ServerToClient downloadClient;
+
+    /**
+     * The FTP client of upload.
+     */
+    private ServerToClient uploadClient;
+
+    /**
+     * The local file of download.
+     */
+    private String downloadLocal;
+
+    /**
+     * The local file of upload.
+     */
+    private String uploadLocal;
+
+    /**
+     * Start FTP server and create the transferred files.
+     *
+     * @throws IOException
+     */
+    @Setup
+    public void setup() throws IOException {
+
+        workDirectory = File.createTempFile("easyftp-bench", "");
+        if (!workDirectory.delete() || !workDirectory.mkdirs()) {
+            throw new IOException("Cannot create " + workDirectory);
+        }
+
+        File root = new File(workDirectory, "root");
+        createFile(new File(root, DOWNLOAD_PATH), size);
+        uploadLocal = createFile(new File(workDirectory, "local/upload.bin"), size).getAbsolutePath();
+        downloadLocal = new File(workDirectory, "local/download.bin").getAbsolutePath();
+
+        server = new LoopbackFTPServer(root);
+        server.setReplyLatency(replyLatency);
+        server.start();
+
+        boolean channel = "CHANNEL".equals(ioMode);
+
+        downloadClient = new ServerToClient();
+        downloadClient.setDownloadBufferSize(channel ? 64 * 1024 : 0);
+
+        uploadClient = new ServerToClient();
+        uploadClient.setTransferMode(FTPTransferMode.UPLOAD);
+        uploadClient.setZeroCopyUpload(channel);
+    }
+
+    /**
+     * Delete the transferred files of the last invocation, so that each one transfers the whole file.
+     */
+    @Setup(Level.Invocation)
+    public void deleteTransferred() {
+        new File(downloadLocal).delete();
+        new File(server.getRootDirectory(), UPLOAD_PATH).delete();
+    }
+
+    /**
+     * Stop FTP server and delete the files.
+     */
+    @TearDown
+    public void tearDown() {
+
+        server.stop();
+        delete(workDirectory);
+    }
+
+    /**
+     * Download the file.
+     */
+    @Benchmark
+    public void download() {
+        if (!downloadClient.transfer(server.getUrl(DOWNLOAD_PATH), downloadLocal)) {
+            throw new IllegalStateException("Download failed.");
+        }
+    }
+
+    /**
+     * Upload the file.
+     */
+    @Benchmark
+    public void upload() {
+        if (!uploadClient.transfer(server.getUrl(UPLOAD_PATH), uploadLocal)) {
+            throw new IllegalStateException("Upload failed.");
+        }
+    }
+
+    /**
+     * Create the file with random content.
+     *
+     * @param file The file.
+     * @param size The size of the file.
+     * @return The file.
+     * @throws IOException
+     */
+    private static File createFile(File file, int size) throws IOException {
+
+        if (!file.getParentFile().exists() && !file.getParentFile().mkdirs()) {
+            throw new IOException("Cannot create " + file.getParentFile());
+        }
+
+        byte[] buffer = new byte[64 * 1024];
+        Random random = new Random(size);
+        FileOutputStream output = new FileOutputStream(file);
+        try {
+            for (int written = 0; written < size; written += buffer.length) {
+                random.nextBytes(buffer);
+                output.write(buffer, 0, Math.min(buffer.length, size - written));
+            }
+        } finally {
+            output.close();
+        }
+
+        return file;
+    }
+
+    /**
+     * Delete the file or the directory with its content.
+     *
+     * @param file The file or the directory.
+     */
+    private static void delete(File file) {
+
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+
+        file.delete();
+    }
+}
@@ -1,10 +1,19 @@
 package com.venson.easyftp;
 
 import java.io.IOException;
+import java.net.ConnectException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import org.apache.commons.net.ProtocolCommandListener;
 import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPFile;
 import org.apache.commons.net.ftp.FTPReply;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -33,6 +42,16 @@ public abstract class AbstractFTPClient {
      */
     private static final String STR_DIR_SEPARATOR = "/";
 
+    /**
+     * The default probe of remote file metadata, which shares the FEAT capabilities among clients.
+     */
+    private static final FTPMetadataProbe DEFAULT_METADATA_PROBE = new FTPMetadataProbe();
+
+    /**
+     * The default cache of existing directories, which is shared among clients.
+     */
+    private static final FTPDirectoryCache DEFAULT_DIRECTORY_CACHE = new FTPDirectoryCache();
+
     /**
      * The max count of retry time.
      */
@@ -53,6 +72,109 @@ public abstract class AbstractFTPClient {
      */
     private boolean resumeBroken = true;
 
+    /**
+     * The pool of logged-in FTP clients.
+     */
+    private FTPClientPool connectionPool = null;
+
+    /**
+     * The probe of remote file metadata.
+     */
+    private FTPMetadataProbe metadataProbe = DEFAULT_METADATA_PROBE;
+
+    /**
+     * The cache of existing directories.
+     */
+    private FTPDirectoryCache directoryCache = DEFAULT_DIRECTORY_CACHE;
+
+    /**
+     * The policy of retry, null means retry with the max count of retry time and the interval wait time.
+     */
+    private RetryPolicy retryPolicy = null;
+
+    /**
+     * The budget of retries shared by FTP clients, null means no limit.
+     */
+    private RetryBudget retryBudget = null;
+
+    /**
+     * The circuit breaker shared by FTP clients, null means no circuit breaker.
+     */
+    private CircuitBreaker circuitBreaker = null;
+
+    /**
+     * The adaptive limiter of concurrent connections shared by FTP clients, null means no limit.
+     */
+    private AdaptiveConcurrencyLimiter concurrencyLimiter = null;
+
+    /**
+     * The permits held by the current attempt grouped by FTP server, each one shared by the
+     * connections of the attempt to the FTP server.
+     */
+    private final Map<String, AdaptiveConcurrencyLimiter.Permit> heldPermits =
+        new HashMap<String, AdaptiveConcurrencyLimiter.Permit>();
+
+    /**
+     * The keys of FTP server of the connections sharing the held permits.
+     */
+    private final Map<FTPClient, String> permitClients = new IdentityHashMap<FTPClient, String>();
+
+    /**
+     * The registry which the metrics of transfers are aggregated in, null means no registry.
+     */
+    private MetricsRegistry metricsRegistry = null;
+
+    /**
+     * The metrics of the current transfer.
+     */
+    private TransferMetrics metrics = null;
+
+    /**
+     * The monitor which the active transfers are registered to, null means no monitor.
+     */
+    private EasyFTPMonitor monitor = null;
+
+    /**
+     * The command listeners which record the latencies of FTP commands, by FTP client.
+     */
+    private final Map<FTPClient, List<ProtocolCommandListener>> commandListeners =
+        new WeakHashMap<FTPClient, List<ProtocolCommandListener>>();
+
+    /**
+     * The listener which is notified of the events of FTP client, null means no listener.
+     */
+    private FTPEventListener eventListener = null;
+
+    /**
+     * The flag of whether the last attempt failed fast for the open circuit.
+     */
+    private boolean circuitOpen = false;
+
+    /**
+     * The flag of whether to retry on the same logged-in session when only the file transfer failed.
+     */
+    private boolean retainSessionOnRetry = true;
+
+    /**
+     * The flag of whether the logged-in session is kept for the next attempt.
+     */
+    private boolean sessionRetained = false;
+
+    /**
+     * The flag of whether to keep the logged-in session after the transfer for the next one.
+     */
+    private boolean keepSession = false;
+
+    /**
+     * The start time of the current transfer.(millisecond)
+     */
+    private long transferStartTime = 0L;
+
+    /**
+     * The wait time before the next retry.(millisecond)
+     */
+    private long nextRetryDelay = 0L;
+
     /**
      * Get the max count of retry time.
      *
@@ -117,48 +239,560 @@ public abstract class AbstractFTPClient {
     }
 
     /**
-     * The basic work flow when store or retrieve file from an FTP server.
-     *
-     * @return The result of work flow.
+     * Get the pool of logged-in FTP clients.
+     *
+     * @return The pool of logged-in FTP clients.
+     */
+    public FTPClientPool getConnectionPool() {
+        return connectionPool;
+    }
+
+    /**
+     * Set the pool of logged-in FTP clients, then the FTP clients will be reused
+     * among transfers instead of being disconnected.
+     *
+     * @param connectionPool The pool of logged-in FTP clients.
+     */
+    public void setConnectionPool(FTPClientPool connectionPool) {
+        this.connectionPool = connectionPool;
+    }
+
+    /**
+     * Get the probe of remote file metadata.
+     *
+     * @return The probe of remote file metadata.
+     */
+    public FTPMetadataProbe getMetadataProbe() {
+        return metadataProbe;
+    }
+
+    /**
+     * Set the probe of remote file metadata. Defaults to the one shared among clients.
+     *
+     * @param metadataProbe The probe of remote file metadata.
+     */
+    public void setMetadataProbe(FTPMetadataProbe metadataProbe) {
+        this.metadataProbe = metadataProbe;
+    }
+
+    /**
+     * Get the cache of existing directories.
+     *
+     * @return The cache of existing directories.
+     */
+    public FTPDirectoryCache getDirectoryCache() {
+        return directoryCache;
+    }
+
+    /**
+     * Set the cache of existing directories. Defaults to the one shared among clients,
+     * and null means no cache.
+     *
+     * @param directoryCache The cache of existing directories.
+     */
+    public void setDirectoryCache(FTPDirectoryCache directoryCache) {
+        this.directoryCache = directoryCache;
+    }
+
+    /**
+     * Get the policy of retry.
+     *
+     * @return The policy of retry.
+     */
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Set the policy of retry, which replaces the max count of retry time and the interval
+     * wait time. Set null to use them again.
+     *
+     * @param retryPolicy The policy of retry.
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * Get the budget of retries.
+     *
+     * @return The budget of retries.
+     */
+    public RetryBudget getRetryBudget() {
+        return retryBudget;
+    }
+
+    /**
+     * Set the budget of retries, which should be shared by FTP clients. Set null for no limit.
+     *
+     * @param retryBudget The budget of retries.
+     */
+    public void setRetryBudget(RetryBudget retryBudget) {
+        this.retryBudget = retryBudget;
+    }
+
+    /**
+     * Get the circuit breaker.
+     *
+     * @return The circuit breaker.
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    /**
+     * Set the circuit breaker, which should be shared by FTP clients. Set null to turn it off.
+     *
+     * @param circuitBreaker The circuit breaker.
+     */
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * Get the flag of whether to retry on the same logged-in session when only the file transfer failed.
+     *
+     * @return The flag of whether to retry on the same logged-in session.
+     */
+    public boolean isRetainSessionOnRetry() {
+        return retainSessionOnRetry;
+    }
+
+    /**
+     * Set the flag of whether to retry on the same logged-in session when only the file transfer
+     * failed and the control connection is still alive. Defaults to on.
+     *
+     * @param retainSessionOnRetry The flag of whether to retry on the same logged-in session.
+     */
+    public void setRetainSessionOnRetry(boolean retainSessionOnRetry) {
+        this.retainSessionOnRetry = retainSessionOnRetry;
+    }
+
+    /**
+     * Get the flag of whether to keep the logged-in session after the transfer for the next one.
+     *
+     * @return The flag of whether to keep the logged-in session.
+     */
+    protected boolean isKeepSession() {
+        return keepSession;
+    }
+
+    /**
+     * Set the flag of whether to keep the logged-in session after the transfer, so that the next
+     * transfer to the same FTP server goes on it without connect and login. The kept session is
+     * released by releaseRetainedSession.
+     *
+     * @param keepSession The flag of whether to keep the logged-in session.
+     */
+    protected void setKeepSession(boolean keepSession) {
+        this.keepSession = keepSession;
+    }
+
+    /**
+     * Get the adaptive limiter of concurrent connections shared by FTP clients.
+     *
+     * @return The adaptive limiter of concurrent connections.
+     */
+    public AdaptiveConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    /**
+     * Set the adaptive limiter of concurrent connections shared by FTP clients. Defaults to null,
+     * which means no limit.
+     *
+     * @param concurrencyLimiter The adaptive limiter of concurrent connections.
+     */
+    public void setConcurrencyLimiter(AdaptiveConcurrencyLimiter concurrencyLimiter) {
+        this.concurrencyLimiter = concurrencyLimiter;
+    }
+
+    /**
+     * Get the registry which the metrics of transfers are aggregated in.
+     *
+     * @return The metrics registry.
+     */
+    public MetricsRegistry getMetricsRegistry() {
+        return metricsRegistry;
+    }
+
+    /**
+     * Set the registry which the metrics of transfers and the latencies of FTP commands are
+     * aggregated in. Defaults to null, which means the metrics are kept only for the last transfer.
+     *
+     * @param metricsRegistry The metrics registry.
+     */
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    /**
+     * Get the monitor which the active transfers are registered to.
+     *
+     * @return The monitor.
+     */
+    public EasyFTPMonitor getMonitor() {
+        return monitor;
+    }
+
+    /**
+     * Set the monitor which the active transfers are registered to. Defaults to null, which
+     * means no monitor.
+     *
+     * @param monitor The monitor.
+     */
+    public void setMonitor(EasyFTPMonitor monitor) {
+        this.monitor = monitor;
+    }
+
+    /**
+     * Get the listener which is notified of the events of FTP client.
+     *
+     * @return The FTP event listener.
+     */
+    public FTPEventListener getEventListener() {
+        return eventListener;
+    }
+
+    /**
+     * Set the listener which is notified of the events of FTP client, like connect, login, each
+     * command and each data transfer. Defaults to null, which means no listener.
+     *
+     * @param eventListener The FTP event listener.
+     */
+    public void setEventListener(FTPEventListener eventListener) {
+        this.eventListener = eventListener;
+    }
+
+    /**
+     * Get the metrics of the last transfer.
+     *
+     * @return The metrics of the last transfer, or null before any transfer.
+     */
+    public TransferMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Copy the transfer settings of the given FTP client, so that the FTP clients created for
+     * the same work transfer alike. The connection pool and the state of transfer are not copied.
+     *
+     * @param source The FTP client whose settings are copied.
+     */
+    protected void copySettings(AbstractFTPClient source) {
+        retryTimes = source.retryTimes;
+        retryWaitTime = source.retryWaitTime;
+        resumeBroken = source.resumeBroken;
+        metadataProbe = source.metadataProbe;
+        directoryCache = source.directoryCache;
+        retryPolicy = source.retryPolicy;
+        retryBudget = source.retryBudget;
+        circuitBreaker = source.circuitBreaker;
+        retainSessionOnRetry = source.retainSessionOnRetry;
+        concurrencyLimiter = source.concurrencyLimiter;
+        metricsRegistry = source.metricsRegistry;
+        monitor = source.monitor;
+        eventListener = source.eventListener;
+    }
+
+    /**
+     * The basic work flow when store or retrieve file from an FTP server.
+     *
+     * @return The result of work flow.
+     */
+    protected boolean doTransferFlow() {
+
+        // The count of retry time is counted for each transfer.
+        startTransfer();
+
+        while (true) {
+
+            boolean result = false;
+            boolean attempted = false;
+
+            try {
+                result = doTransferAttempt();
+                attempted = true;
+            } finally {
+
+                // Release the session and finish the transfer when the attempt threw an unexpected exception.
+                if (!attempted) {
+                    releaseRetainedSession();
+                    finishTransfer(false);
+                }
+            }
+
+            if (!result && shouldRetry()) {
+                waitForRetry();
+            } else {
+                if (!keepSession) {
+                    releaseRetainedSession();
+                }
+                finishTransfer(result);
+                return result;
+            }
+        }
+    }
+
+    /**
+     * Start a transfer, which resets the count of retry time and records it to the budget of retries.
+     */
+    protected void startTransfer() {
+
+        currentRetryTimes = 0;
+        transferStartTime = System.currentTimeMillis();
+        metrics = new TransferMetrics();
+
+        if (retryBudget != null) {
+            retryBudget.recordTransfer(getHostKey());
+        }
+
+        if (monitor != null) {
+            monitor.transferStarted(this);
+        }
+    }
+
+    /**
+     * Finish a transfer, which completes its metrics and records them to the registry.
+     *
+     * @param result The result of transfer.
+     */
+    protected void finishTransfer(boolean result) {
+
+        TransferMetrics current = metrics;
+        if (current == null) {
+            return;
+        }
+
+        current.setRetryTimes(currentRetryTimes);
+        current.setElapsedTime(System.currentTimeMillis() - transferStartTime);
+
+        if (monitor != null) {
+            monitor.transferFinished(this);
+        }
+
+        MetricsRegistry registry = metricsRegistry;
+        if (registry != null) {
+            registry.record(getHostKey(), current, result);
+        }
+    }
+
+    /**
+     * Add the time since the start time to the phase of the current transfer.
+     *
+     * @param phase The phase of file transfer.
+     * @param startTime The start time of the phase.(millisecond)
+     */
+    protected void recordPhase(TransferPhase phase, long startTime) {
+
+        TransferMetrics current = metrics;
+        if (current != null) {
+            current.addPhaseTime(phase, System.currentTimeMillis() - startTime);
+        }
+    }
+
+    /**
+     * Get the key of FTP server which the retries are counted to.
+     *
+     * @return The key of FTP server.
+     */
+    protected String getHostKey() {
+        return null;
+    }
+
+    /**
+     * Get the path of the remote file, which is shown by the monitor.
+     *
+     * @return The path of the remote file.
+     */
+    protected String getTransferPath() {
+        return null;
+    }
+
+    /**
+     * One attempt of the basic work flow, which connects, logins, transfers and then
+     * releases the connection. When the file transfer returned a failure without an exception
+     * and the control connection is still alive, the logged-in session is kept, and the next
+     * attempt resumes from the file transfer on it. After an exception the reply of the transfer
+     * may be still pending, so the session is not kept.
+     *
+     * @return The result of the attempt.
+     */
+    protected boolean doTransferAttempt() {
+
+        boolean result = false;
+        boolean loggedIn = false;
+        boolean transferReturned = false;
+        circuitOpen = false;
+
+        try {
+
+            // Resume on the logged-in session of the last attempt.
+            if (sessionRetained) {
+
+                sessionRetained = false;
+
+                if (isSessionAlive()) {
+                    loggedIn = true;
+                } else {
+                    releaseConnection(false);
+                    releasePermits(false);
+                }
+            }
+
+            if (!loggedIn) {
+
+                // Connect to FTP server.
+                long phaseStartTime = System.currentTimeMillis();
+                boolean connected = connect();
+                recordPhase(TransferPhase.CONNECT, phaseStartTime);
+                if (!connected) {
+                    return false;
+                }
+
+                // Login to FTP server.
+                phaseStartTime = System.currentTimeMillis();
+                loggedIn = login();
+                recordPhase(TransferPhase.LOGIN, phaseStartTime);
+                if (!loggedIn) {
+                    return false;
+                }
+            }
+
+            // Transfer the files, and the probe and changeDir inside are not counted twice.
+            TransferMetrics current = metrics;
+            long nestedTime = getNestedPhaseTime(current);
+            long bytes = current == null ? 0L : current.getBytesTransferred();
+            FTPEventListener events = eventListener;
+            Object event = events == null ? null : events.begin(FTPEventType.DATA_TRANSFER, getHostKey(), getTransferPath());
+            long phaseStartTime = System.currentTimeMillis();
+            try {
+                result = doTransfer();
+                transferReturned = true;
+            } finally {
+
+                if (current != null) {
+                    current.addPhaseTime(TransferPhase.TRANSFER,
+                        System.currentTimeMillis() - phaseStartTime - (getNestedPhaseTime(current) - nestedTime));
+                }
+
+                if (event != null) {
+                    events.end(event, current == null ? 0L : current.getBytesTransferred() - bytes, 0, result);
+                }
+            }
+
+        } catch (CircuitOpenException e) {
+            logger.warn(e.getMessage());
+            circuitOpen = true;
+        } catch (IOException e) {
+            logger.error("DoTransferFlow failed.", e);
+        } finally {
+
+            // Keep the session for the next transfer, or when the control connection survived the failed transfer.
+            if (result && loggedIn && keepSession) {
+                sessionRetained = true;
+            } else if (!result && loggedIn && transferReturned && retainSessionOnRetry && isSessionAlive()) {
+                logger.info("Keep the logged-in session for retry.");
+                sessionRetained = true;
+            } else {
+                long phaseStartTime = System.currentTimeMillis();
+                releaseConnection(result);
+                recordPhase(TransferPhase.LOGOUT, phaseStartTime);
+                releasePermits(result);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Get the time of the phases recorded inside the data transfer phase.
+     *
+     * @param current The metrics of the current transfer, or null.
+     * @return The time of probe and changeDir.(millisecond)
+     */
+    private static long getNestedPhaseTime(TransferMetrics current) {
+
+        if (current == null) {
+            return 0L;
+        }
+
+        return current.getPhaseTime(TransferPhase.PROBE) + current.getPhaseTime(TransferPhase.CHANGE_DIR);
+    }
+
+    /**
+     * Release the logged-in session kept for the retry or the next transfer, when it is no more used.
      */
-    protected boolean doTransferFlow() {
-
-        boolean result = false;
+    protected void releaseRetainedSession() {
 
-        while (true) {
+        if (sessionRetained) {
+            sessionRetained = false;
+            long phaseStartTime = System.currentTimeMillis();
+            releaseConnection(false);
+            recordPhase(TransferPhase.LOGOUT, phaseStartTime);
+            releasePermits(false);
+        }
+    }
 
-            try {
+    /**
+     * Return the permits held by the attempt to the concurrency limiter. It backs off when the
+     * last reply of a connection sharing the permit tells that FTP server is overloaded.
+     *
+     * @param result The result of the attempt.
+     */
+    protected void releasePermits(boolean result) {
 
-                // Connect to FTP server.
-                if (!connect()) {
-                    continue;
-                }
+        AdaptiveConcurrencyLimiter limiter = concurrencyLimiter;
+        synchronized (heldPermits) {
 
-                // Login to FTP server.
-                if (!login()) {
-                    continue;
-                }
+            for (Map.Entry<String, AdaptiveConcurrencyLimiter.Permit> entry : heldPermits.entrySet()) {
 
-                // Transfer the files
-                if (!doTransfer()) {
-                    continue;
+                if (!result && isOverloaded(entry.getKey())) {
+                    limiter.releaseOverloaded(entry.getValue());
                 } else {
-                    result = true;
+                    limiter.release(entry.getValue(), result);
                 }
+            }
+            heldPermits.clear();
+            permitClients.clear();
+        }
+    }
 
-            } catch (IOException e) {
-                logger.error("DoTransferFlow failed.", e);
-            } finally {
-
-                logoutAndDisconnect();
+    /**
+     * Determine whether the last reply of a connection sharing the permit of FTP server tells that it is overloaded.
+     *
+     * @param hostKey The key of FTP server.
+     * @return The result of whether FTP server is overloaded.
+     */
+    private boolean isOverloaded(String hostKey) {
 
-                if (!result && shouldRetry()) {
-                    waitForRetry();
-                } else {
-                    return result;
-                }
+        for (Map.Entry<FTPClient, String> entry : permitClients.entrySet()) {
+            if (entry.getValue().equals(hostKey) && isOverloaded(entry.getKey().getReplyCode())) {
+                return true;
             }
         }
+
+        return false;
+    }
+
+    /**
+     * Determine whether the reply code tells that FTP server is overloaded.
+     *
+     * @param replyCode The reply code.
+     * @return The result of whether FTP server is overloaded.
+     */
+    private static boolean isOverloaded(int replyCode) {
+        return replyCode == FTPReply.SERVICE_NOT_AVAILABLE || replyCode == FTPReply.CANNOT_OPEN_DATA_CONNECTION;
+    }
+
+    /**
+     * Determine whether the control connection of the logged-in session is still alive.
+     * Defaults to false, which means the session is never kept.
+     *
+     * @return The result of whether the control connection is alive.
+     */
+    protected boolean isSessionAlive() {
+        return false;
     }
 
     /**
@@ -180,6 +814,15 @@ public abstract class AbstractFTPClient {
      */
     protected abstract void logoutAndDisconnect();
 
+    /**
+     * Release the connection after the transfer. Defaults to logout and disconnect.
+     *
+     * @param result The result of transfer.
+     */
+    protected void releaseConnection(boolean result) {
+        logoutAndDisconnect();
+    }
+
     /**
      * Store or retrieve file from FTP server.
      *
@@ -234,26 +877,282 @@ public abstract class AbstractFTPClient {
      */
     protected boolean connect(FTPClient ftp, FTPFileInfoVO vo) throws IOException {
 
-        // When the port is not set, use the default value to connect FTP server.
-        if (vo.getPort() == null || vo.getPort().length() == 0) {
-            ftp.connect(vo.getIp());
+        // Fail fast when the circuit of FTP server is open.
+        CircuitBreaker breaker = circuitBreaker;
+        if (breaker != null && !breaker.allowRequest(vo.getHostKey())) {
+            throw new CircuitOpenException(vo.getHostKey());
+        }
+
+        // Record the round trip latency of FTP commands.
+        MetricsRegistry registry = metricsRegistry;
+        if (registry != null) {
+            addCommandListener(ftp, new FTPMetricsCommandListener(registry));
+        }
+
+        // Notify the events of FTP commands.
+        FTPEventListener events = eventListener;
+        if (events != null) {
+            addCommandListener(ftp, new FTPEventCommandListener(events, vo.getHostKey()));
+        }
+
+        AdaptiveConcurrencyLimiter limiter = concurrencyLimiter;
+        AdaptiveConcurrencyLimiter.Permit permit = null;
+        long connectStartTime = 0L;
+        boolean overloaded = false;
+        Object event = null;
+        int replyCode = 0;
+
+        boolean result = false;
+
+        try {
+
+            // Wait until the connections to FTP server are under the limit, unless the attempt holds a permit of it.
+            if (limiter != null && !sharePermit(ftp, vo.getHostKey())) {
+                permit = limiter.acquire(vo.getHostKey());
+            }
+            connectStartTime = System.currentTimeMillis();
+            event = events == null ? null : events.begin(FTPEventType.CONNECT, vo.getHostKey(), null);
+
+            // When the port is not set, use the default value to connect FTP server.
+            if (vo.getPort() == null || vo.getPort().length() == 0) {
+                ftp.connect(vo.getIp());
+
+            // Then use the specified port.
+            } else {
+                ftp.connect(vo.getIp(), Integer.parseInt(vo.getPort()));
+            }
+
+            if (logger.isDebugEnabled()) {
+                logger.debug("Connected to " + vo.getIp() + " on " + ftp.getRemotePort());
+            }
+
+            // Check the connection status.
+            replyCode = ftp.getReplyCode();
+            if (!FTPReply.isPositiveCompletion(replyCode)) {
+                logger.error("FTP server refused connection.");
+                overloaded = isOverloaded(replyCode);
+                return false;
+            }
+
+            result = true;
+
+        } catch (ConnectException e) {
+            overloaded = true;
+            throw e;
+        } finally {
+
+            // The success is recorded after login.
+            if (breaker != null && !result) {
+                breaker.recordFailure(vo.getHostKey());
+            }
+
+            // The permit is held until the attempt ends.
+            if (permit != null) {
+                holdPermit(limiter, permit, ftp, vo.getHostKey(), result, overloaded,
+                    System.currentTimeMillis() - connectStartTime);
+            }
+
+            if (event != null) {
+                events.end(event, 0L, replyCode, result);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Add the command listener to the FTP client, unless it has one of the same class.
+     *
+     * @param ftp The instance of FTP client.
+     * @param listener The command listener.
+     */
+    private void addCommandListener(FTPClient ftp, ProtocolCommandListener listener) {
+
+        synchronized (commandListeners) {
+
+            List<ProtocolCommandListener> listeners = commandListeners.get(ftp);
+            if (listeners == null) {
+                listeners = new ArrayList<ProtocolCommandListener>();
+                commandListeners.put(ftp, listeners);
+            }
+
+            for (ProtocolCommandListener added : listeners) {
+                if (added.getClass() == listener.getClass()) {
+                    return;
+                }
+            }
+
+            ftp.addProtocolCommandListener(listener);
+            listeners.add(listener);
+        }
+    }
+
+    /**
+     * Share the permit of FTP server held by the attempt with the connection, so that the
+     * connections of one attempt, like the segments or both ends on the same FTP server, do not
+     * wait for each other.
+     *
+     * @param ftp The instance of FTP client.
+     * @param hostKey The key of FTP server.
+     * @return The result of whether the attempt holds a permit of FTP server.
+     */
+    private boolean sharePermit(FTPClient ftp, String hostKey) {
+
+        synchronized (heldPermits) {
+
+            if (!heldPermits.containsKey(hostKey)) {
+                return false;
+            }
+
+            permitClients.put(ftp, hostKey);
+            return true;
+        }
+    }
+
+    /**
+     * Take a permit of FTP server for the logged-in connection borrowed from the connection pool,
+     * unless the attempt holds one of it, and hold it until the attempt ends. It waits like a new
+     * connection does, so that the pooled connections stay under the limit too.
+     *
+     * @param ftp The instance of FTP client.
+     * @param vo The value object with FTP information.
+     * @throws IOException
+     */
+    protected void acquirePermit(FTPClient ftp, FTPFileInfoVO vo) throws IOException {
+
+        AdaptiveConcurrencyLimiter limiter = concurrencyLimiter;
+        if (limiter == null || sharePermit(ftp, vo.getHostKey())) {
+            return;
+        }
+
+        keepPermit(limiter, limiter.acquire(vo.getHostKey()), ftp, vo.getHostKey());
+    }
+
+    /**
+     * Hold the permit of the connection until the attempt ends, or return it at once when the
+     * connection failed.
+     *
+     * @param limiter The concurrency limiter.
+     * @param permit The permit.
+     * @param ftp The instance of FTP client.
+     * @param hostKey The key of FTP server.
+     * @param connected The result of connection.
+     * @param overloaded The flag of whether FTP server is overloaded.
+     * @param latency The connect latency.(millisecond)
+     */
+    private void holdPermit(AdaptiveConcurrencyLimiter limiter, AdaptiveConcurrencyLimiter.Permit permit,
+        FTPClient ftp, String hostKey, boolean connected, boolean overloaded, long latency) {
 
-        // Then use the specified port.
+        if (overloaded) {
+            limiter.releaseOverloaded(permit);
+        } else if (!connected) {
+            limiter.release(permit, false);
         } else {
-            ftp.connect(vo.getIp(), Integer.parseInt(vo.getPort()));
+
+            limiter.recordLatency(permit, latency);
+            keepPermit(limiter, permit, ftp, hostKey);
+        }
+    }
+
+    /**
+     * Keep the permit of the connection until the attempt ends.
+     *
+     * @param limiter The concurrency limiter.
+     * @param permit The permit.
+     * @param ftp The instance of FTP client.
+     * @param hostKey The key of FTP server.
+     */
+    private void keepPermit(AdaptiveConcurrencyLimiter limiter, AdaptiveConcurrencyLimiter.Permit permit,
+        FTPClient ftp, String hostKey) {
+
+        boolean shared;
+        synchronized (heldPermits) {
+            shared = heldPermits.containsKey(hostKey);
+            if (!shared) {
+                heldPermits.put(hostKey, permit);
+            }
+            permitClients.put(ftp, hostKey);
         }
 
-        if (logger.isDebugEnabled()) {
-            logger.debug("Connected to " + vo.getIp() + " on " + ftp.getRemotePort());
+        // Another connection of the attempt took a permit of FTP server meanwhile.
+        if (shared) {
+            limiter.release(permit, false);
         }
+    }
 
-        // Check the connection status.
-        if (!FTPReply.isPositiveCompletion(ftp.getReplyCode())) {
-            logger.error("FTP server refused connection.");
-            return false;
+    /**
+     * Login to FTP server, and record the result to the circuit breaker.
+     *
+     * @param ftp The instance of FTP client.
+     * @param vo The value object with FTP information.
+     * @return The result of login.
+     * @throws IOException
+     */
+    protected boolean login(FTPClient ftp, FTPFileInfoVO vo) throws IOException {
+
+        boolean result = false;
+        FTPEventListener events = eventListener;
+        Object event = events == null ? null : events.begin(FTPEventType.LOGIN, vo.getHostKey(), null);
+
+        try {
+            result = ftp.login(vo.getUserName(), vo.getPassword());
+        } finally {
+
+            if (event != null) {
+                events.end(event, 0L, 0, result);
+            }
+
+            CircuitBreaker breaker = circuitBreaker;
+            if (breaker != null) {
+                if (result) {
+                    breaker.recordSuccess(vo.getHostKey());
+                } else {
+                    breaker.recordFailure(vo.getHostKey());
+                }
+            }
         }
 
-        return true;
+        // Record where the session starts, so that the pool returns it there after transfer.
+        FTPClientPool pool = connectionPool;
+        if (result && pool != null) {
+            pool.setLoginDirectory(ftp, ftp.printWorkingDirectory());
+        }
+
+        return result;
+    }
+
+    /**
+     * Get the remote file with the metadata probe, and record the time of probe.
+     *
+     * @param ftp The instance of FTP client.
+     * @param vo The value object with FTP information.
+     * @return The remote file, or null when it does not exist.
+     * @throws IOException
+     */
+    protected FTPFile probeFile(FTPClient ftp, FTPFileInfoVO vo) throws IOException {
+
+        long phaseStartTime = System.currentTimeMillis();
+        try {
+            return getMetadataProbe().getFile(ftp, vo);
+        } finally {
+            recordPhase(TransferPhase.PROBE, phaseStartTime);
+        }
+    }
+
+    /**
+     * Determine whether the control connection of the FTP client is still alive with NOOP.
+     *
+     * @param ftp The instance of FTP client.
+     * @return The result of whether the control connection is alive.
+     */
+    protected boolean isAlive(FTPClient ftp) {
+
+        try {
+            return ftp.isConnected() && ftp.sendNoOp();
+        } catch (IOException e) {
+            logger.debug("NOOP failed.", e);
+            return false;
+        }
     }
 
     /**
@@ -287,15 +1186,122 @@ public abstract class AbstractFTPClient {
                     continue;
                 }
 
-                // If failed to change the directory, create it.
+                // If failed to change the directory, create it. The creation fails when another
+                // client creates it at the same time, so change to it anyway.
+                if (!ftp.changeWorkingDirectory(dir)) {
+
+                    ftp.makeDirectory(dir);
+                    if (!ftp.changeWorkingDirectory(dir)) {
+                        return false;
+                    }
+                }
+            }
+
+        } catch (IOException e) {
+            logger.error("Failed to ChangeDir to " + path + " .", e);
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Change the working directory to the given path with the cache of existing directories.
+     * It changes to the deepest directory known to exist with one CWD, then changes or creates
+     * the rest step by step. When the cached directory is gone, it is forgotten and the path is
+     * changed from root.
+     *
+     * @param ftp The instance of FTP client.
+     * @param vo The value object with FTP information.
+     * @param path The absolute path on FTP server.
+     * @return The result of changing directory.
+     */
+    protected boolean changeDir(FTPClient ftp, FTPFileInfoVO vo, String path) {
+
+        long phaseStartTime = System.currentTimeMillis();
+        try {
+            return changeDirWithCache(ftp, vo, path);
+        } finally {
+            recordPhase(TransferPhase.CHANGE_DIR, phaseStartTime);
+        }
+    }
+
+    /**
+     * Change the working directory to the given path with the cache of existing directories.
+     *
+     * @param ftp The instance of FTP client.
+     * @param vo The value object with FTP information.
+     * @param path The absolute path on FTP server.
+     * @return The result of changing directory.
+     */
+    private boolean changeDirWithCache(FTPClient ftp, FTPFileInfoVO vo, String path) {
+
+        if (path == null || path.length() == 0) {
+            return true;
+        }
+
+        FTPDirectoryCache cache = directoryCache;
+        if (cache == null) {
+            return changeDir(ftp, path);
+        }
+
+        // The absolute paths of the directory and its parents, from the top.
+        List<String> dirs = new ArrayList<String>();
+        List<String> paths = new ArrayList<String>();
+        StringBuilder current = new StringBuilder();
+        for (String dir : path.split(STR_DIR_SEPARATOR)) {
+
+            // When the path begin with "/" or "//", after the split will get empty string,
+            // must be skipped.
+            if (dir.length() == 0) {
+                continue;
+            }
+
+            current.append(STR_DIR_SEPARATOR).append(dir);
+            dirs.add(dir);
+            paths.add(current.toString());
+        }
+
+        try {
+
+            // Find the deepest directory known to exist.
+            int depth = dirs.size();
+            while (depth > 0 && !cache.contains(vo, paths.get(depth - 1))) {
+                depth--;
+            }
+
+            if (depth > 0 && !ftp.changeWorkingDirectory(paths.get(depth - 1))) {
+
+                if (ftp.getReplyCode() != FTPReply.FILE_UNAVAILABLE) {
+                    return false;
+                }
+
+                // The directory has been removed, so change the path from root.
+                cache.remove(vo, paths.get(depth - 1));
+                depth = 0;
+            }
+
+            // Because of using the absolute path, change the working directory to root first.
+            if (depth == 0 && !ftp.changeWorkingDirectory(STR_DIR_SEPARATOR)) {
+                return false;
+            }
+
+            // Change the rest of the path step by step.
+            for (int i = depth; i < dirs.size(); i++) {
+
+                String dir = dirs.get(i);
+
+                // If failed to change the directory, create it. The creation fails when another
+                // client creates it at the same time, so change to it anyway.
                 if (!ftp.changeWorkingDirectory(dir)) {
 
-                    if (ftp.makeDirectory(dir) && ftp.changeWorkingDirectory(dir)) {
-                        continue;
-                    } else {
+                    ftp.makeDirectory(dir);
+                    if (!ftp.changeWorkingDirectory(dir)) {
                         return false;
                     }
                 }
+
+                cache.add(vo, paths.get(i));
             }
 
         } catch (IOException e) {
@@ -307,18 +1313,47 @@ public abstract class AbstractFTPClient {
     }
 
     /**
-     * Determine whether to retry.
+     * Determine whether to retry, and decide the wait time before it.
      *
      * @return The result of whether to retry.
      */
     protected boolean shouldRetry() {
 
-        if (currentRetryTimes < retryTimes) {
-            currentRetryTimes++;
-            return true;
-        } else {
+        // Do not retry when the circuit of FTP server is open.
+        if (circuitOpen) {
             return false;
         }
+
+        long delay = -1L;
+        if (retryPolicy != null) {
+            delay = retryPolicy.getRetryDelay(currentRetryTimes + 1, System.currentTimeMillis() - transferStartTime);
+        } else if (currentRetryTimes < retryTimes) {
+            delay = retryWaitTime;
+        }
+
+        if (delay < 0L) {
+            return false;
+        }
+
+        // Do not retry when the budget of retries to the FTP server is exhausted.
+        if (retryBudget != null && !retryBudget.tryAcquireRetry(getHostKey())) {
+            logger.warn("Retry budget of " + getHostKey() + " is exhausted.");
+            return false;
+        }
+
+        currentRetryTimes++;
+        nextRetryDelay = delay;
+
+        return true;
+    }
+
+    /**
+     * Get the wait time before the next retry.(millisecond)
+     *
+     * @return The wait time before the next retry.(millisecond)
+     */
+    protected long getRetryDelay() {
+        return nextRetryDelay;
     }
 
     /**
@@ -327,7 +1362,7 @@ public abstract class AbstractFTPClient {
     protected void waitForRetry() {
 
         try {
-            Thread.sleep(retryWaitTime);
+            Thread.sleep(getRetryDelay());
         } catch (InterruptedException e) {
             logger.error("WaitForRetry failed." ,e);
         }
@@ -0,0 +1,396 @@
+package com.venson.easyftp;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * AdaptiveConcurrencyLimiter limits the concurrent connections to each FTP server, and adapts
+ * the limit by AIMD. The limit grows by one after a limit's worth of successful transfers run
+ * at the full limit, and is cut by the backoff ratio when FTP server replies 421 or 425,
+ * refuses the connection, or connects much slower than usual. The connections started before
+ * a cut do not cut it again, so that one burst of failures backs off only once. A permit is
+ * taken by each transfer attempt, and shared by all of its connections to the same FTP server.
+ * It is shared by the FTP clients.
+ *
+ * @author venson
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    /**
+     * The connect latency which is taken as noise.(millisecond)
+     */
+    private static final long LATENCY_NOISE = 10L;
+
+    /**
+     * The limits grouped by FTP server.
+     */
+    private final ConcurrentMap<String, HostLimit> limits = new ConcurrentHashMap<String, HostLimit>();
+
+    /**
+     * The limit of a FTP server at first.
+     */
+    private int initialLimit = 4;
+
+    /**
+     * The min limit.
+     */
+    private int minLimit = 1;
+
+    /**
+     * The max limit.
+     */
+    private int maxLimit = 32;
+
+    /**
+     * The ratio which the limit is multiplied by when FTP server is overloaded.
+     */
+    private double backoffRatio = 0.5d;
+
+    /**
+     * The ratio of connect latency to the usual one, above which FTP server is taken as overloaded.
+     */
+    private double latencyTolerance = 2.0d;
+
+    /**
+     * The max time to wait for a permit.(millisecond)
+     */
+    private long acquireTimeout = 60000L;
+
+    /**
+     * Get the limit of a FTP server at first.
+     *
+     * @return The limit of a FTP server at first.
+     */
+    public int getInitialLimit() {
+        return initialLimit;
+    }
+
+    /**
+     * Set the limit of a FTP server at first.
+     *
+     * @param initialLimit The limit of a FTP server at first.
+     */
+    public void setInitialLimit(int initialLimit) {
+        this.initialLimit = initialLimit;
+    }
+
+    /**
+     * Get the min limit.
+     *
+     * @return The min limit.
+     */
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    /**
+     * Set the min limit.
+     *
+     * @param minLimit The min limit.
+     */
+    public void setMinLimit(int minLimit) {
+        this.minLimit = minLimit;
+    }
+
+    /**
+     * Get the max limit.
+     *
+     * @return The max limit.
+     */
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    /**
+     * Set the max limit.
+     *
+     * @param maxLimit The max limit.
+     */
+    public void setMaxLimit(int maxLimit) {
+        this.maxLimit = maxLimit;
+    }
+
+    /**
+     * Get the ratio which the limit is multiplied by when FTP server is overloaded.
+     *
+     * @return The ratio of backoff.
+     */
+    public double getBackoffRatio() {
+        return backoffRatio;
+    }
+
+    /**
+     * Set the ratio which the limit is multiplied by when FTP server is overloaded.
+     *
+     * @param backoffRatio The ratio of backoff.
+     */
+    public void setBackoffRatio(double backoffRatio) {
+        this.backoffRatio = backoffRatio;
+    }
+
+    /**
+     * Get the ratio of connect latency to the usual one, above which FTP server is taken as overloaded.
+     *
+     * @return The ratio of latency tolerance.
+     */
+    public double getLatencyTolerance() {
+        return latencyTolerance;
+    }
+
+    /**
+     * Set the ratio of connect latency to the usual one, above which FTP server is taken as overloaded.
+     *
+     * @param latencyTolerance The ratio of latency tolerance.
+     */
+    public void setLatencyTolerance(double latencyTolerance) {
+        this.latencyTolerance = latencyTolerance;
+    }
+
+    /**
+     * Get the max time to wait for a permit.
+     *
+     * @return The max time to wait for a permit.(second)
+     */
+    public int getAcquireTimeout() {
+        return (int) (acquireTimeout / 1000L);
+    }
+
+    /**
+     * Set the max time to wait for a permit, after which the attempt fails.
+     *
+     * @param acquireTimeout The max time to wait for a permit.(second)
+     */
+    public void setAcquireTimeout(int acquireTimeout) {
+        this.acquireTimeout = acquireTimeout * 1000L;
+    }
+
+    /**
+     * Get the current limit of the FTP server.
+     *
+     * @param hostKey The key of FTP server.
+     * @return The current limit.
+     */
+    public int getLimit(String hostKey) {
+
+        HostLimit host = getHostLimit(hostKey);
+        synchronized (host) {
+            return (int) host.limit;
+        }
+    }
+
+    /**
+     * Get the count of connections to the FTP server in use.
+     *
+     * @param hostKey The key of FTP server.
+     * @return The count of connections in use.
+     */
+    public int getInFlight(String hostKey) {
+
+        HostLimit host = getHostLimit(hostKey);
+        synchronized (host) {
+            return host.inFlight;
+        }
+    }
+
+    /**
+     * Wait until the count of connections to the FTP server is under its limit, and take a permit.
+     * It gives up when no permit is returned within the acquire timeout.
+     *
+     * @param hostKey The key of FTP server.
+     * @return The permit.
+     * @throws InterruptedIOException
+     */
+    Permit acquire(String hostKey) throws InterruptedIOException {
+
+        HostLimit host = getHostLimit(hostKey);
+        synchronized (host) {
+
+            long deadline = System.currentTimeMillis() + acquireTimeout;
+            while (host.inFlight >= (int) host.limit) {
+
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0L) {
+                    throw new InterruptedIOException("Timed out waiting for connection to " + hostKey + " .");
+                }
+
+                try {
+                    host.wait(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for connection to " + hostKey + " .");
+                }
+            }
+
+            host.inFlight++;
+            return new Permit(host, host.generation, host.inFlight >= (int) host.limit);
+        }
+    }
+
+    /**
+     * Record the connect latency, and back off when it is much slower than usual.
+     *
+     * @param permit The permit.
+     * @param latency The connect latency.(millisecond)
+     */
+    void recordLatency(Permit permit, long latency) {
+
+        HostLimit host = permit.host;
+        synchronized (host) {
+
+            if (host.baselineLatency == 0L || latency < host.baselineLatency) {
+                host.baselineLatency = Math.max(latency, 1L);
+                return;
+            }
+
+            if (latency > host.baselineLatency * latencyTolerance && latency - host.baselineLatency > LATENCY_NOISE) {
+                backoff(host, permit);
+            }
+
+            // Follow the latency slowly, so that a lasting change becomes the usual one.
+            host.baselineLatency += (latency - host.baselineLatency) / 16L;
+        }
+    }
+
+    /**
+     * Return the permit, and grow the limit when the transfer succeeded at the full limit.
+     *
+     * @param permit The permit.
+     * @param success The result of transfer.
+     */
+    void release(Permit permit, boolean success) {
+
+        HostLimit host = permit.host;
+        synchronized (host) {
+
+            if (success && permit.saturated && permit.generation == host.generation) {
+                host.limit = Math.min(maxLimit, host.limit + 1.0d / host.limit);
+            }
+
+            host.inFlight--;
+            host.notifyAll();
+        }
+    }
+
+    /**
+     * Return the permit, and back off because FTP server is overloaded.
+     *
+     * @param permit The permit.
+     */
+    void releaseOverloaded(Permit permit) {
+
+        HostLimit host = permit.host;
+        synchronized (host) {
+
+            backoff(host, permit);
+
+            host.inFlight--;
+            host.notifyAll();
+        }
+    }
+
+    /**
+     * Cut the limit by the backoff ratio, unless it has been cut since the permit was taken.
+     *
+     * @param host The limit of FTP server.
+     * @param permit The permit.
+     */
+    private void backoff(HostLimit host, Permit permit) {
+
+        if (permit.generation != host.generation) {
+            return;
+        }
+
+        host.limit = Math.max(minLimit, host.limit * backoffRatio);
+        host.generation++;
+    }
+
+    /**
+     * Get the limit of the FTP server, and create one with the initial limit when it does not exist.
+     *
+     * @param hostKey The key of FTP server.
+     * @return The limit.
+     */
+    private HostLimit getHostLimit(String hostKey) {
+
+        String key = String.valueOf(hostKey);
+        HostLimit host = limits.get(key);
+        if (host != null) {
+            return host;
+        }
+
+        host = new HostLimit(Math.max(minLimit, Math.min(maxLimit, initialLimit)));
+        HostLimit existing = limits.putIfAbsent(key, host);
+
+        return existing == null ? host : existing;
+    }
+
+    /**
+     * The limit of one FTP server.
+     */
+    private static class HostLimit {
+
+        /**
+         * The limit, which may be fractional.
+         */
+        private double limit;
+
+        /**
+         * The count of connections in use.
+         */
+        private int inFlight = 0;
+
+        /**
+         * The usual connect latency.(millisecond)
+         */
+        private long baselineLatency = 0L;
+
+        /**
+         * The count of backoff, which tells the permits taken before the last one.
+         */
+        private int generation = 0;
+
+        /**
+         * Constructor method.
+         *
+         * @param limit The limit.
+         */
+        HostLimit(double limit) {
+            this.limit = limit;
+        }
+    }
+
+    /**
+     * The permit of one connection.
+     */
+    static class Permit {
+
+        /**
+         * The limit of FTP server.
+         */
+        private final HostLimit host;
+
+        /**
+         * The count of backoff when the permit was taken.
+         */
+        private final int generation;
+
+        /**
+         * The flag of whether the permit was taken at the full limit.
+         */
+        private final boolean saturated;
+
+        /**
+         * Constructor method.
+         *
+         * @param host The limit of FTP server.
+         * @param generation The count of backoff.
+         * @param saturated The flag of whether the permit was taken at the full limit.
+         */
+        Permit(HostLimit host, int generation, boolean saturated) {
+            this.host = host;
+            this.generation = generation;
+            this.saturated = saturated;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.venson.easyftp;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * BandwidthLimiter caps the throughput of the data connections with token buckets, and is
+ * shared by the FTP clients. The limits apply to all transfers, to the transfers to each FTP
+ * server, and to each transfer, and a transfer waits for the strictest of them. The tokens
+ * left by an idle transfer are taken by the others, so that the total throughput stays under
+ * the limit without wasting it.
+ *
+ * @author venson
+ */
+public class BandwidthLimiter {
+
+    /**
+     * The token bucket of all transfers.
+     */
+    private final TokenBucket globalBucket = new TokenBucket(0L);
+
+    /**
+     * The token buckets grouped by FTP server.
+     */
+    private final ConcurrentMap<String, TokenBucket> hostBuckets = new ConcurrentHashMap<String, TokenBucket>();
+
+    /**
+     * The max throughput of each FTP server, 0 means no limit.(byte/second)
+     */
+    private volatile long hostRate = 0L;
+
+    /**
+     * The max throughput of each transfer, 0 means no limit.(byte/second)
+     */
+    private volatile long transferRate = 0L;
+
+    /**
+     * Get the max throughput of all transfers.(byte/second)
+     *
+     * @return The max throughput of all transfers.(byte/second)
+     */
+    public long getGlobalRate() {
+        return globalBucket.getRate();
+    }
+
+    /**
+     * Set the max throughput of all transfers, 0 means no limit.(byte/second)
+     *
+     * @param globalRate The max throughput of all transfers.(byte/second)
+     */
+    public void setGlobalRate(long globalRate) {
+        globalBucket.setRate(globalRate);
+    }
+
+    /**
+     * Get the max throughput of each FTP server.(byte/second)
+     *
+     * @return The max throughput of each FTP server.(byte/second)
+     */
+    public long getHostRate() {
+        return hostRate;
+    }
+
+    /**
+     * Set the max throughput of each FTP server, 0 means no limit.(byte/second)
+     *
+     * @param hostRate The max throughput of each FTP server.(byte/second)
+     */
+    public void setHostRate(long hostRate) {
+        this.hostRate = hostRate;
+        for (TokenBucket bucket : hostBuckets.values()) {
+            bucket.setRate(hostRate);
+        }
+    }
+
+    /**
+     * Get the max throughput of each transfer.(byte/second)
+     *
+     * @return The max throughput of each transfer.(byte/second)
+     */
+    public long getTransferRate() {
+        return transferRate;
+    }
+
+    /**
+     * Set the max throughput of each transfer, 0 means no limit. It applies to the transfers
+     * started afterwards.(byte/second)
+     *
+     * @param transferRate The max throughput of each transfer.(byte/second)
+     */
+    public void setTransferRate(long transferRate) {
+        this.transferRate = transferRate;
+    }
+
+    /**
+     * Create the throttle of a transfer to the FTP servers. A transfer through the client goes to
+     * two servers, and takes the tokens of both of them, but of all transfers only once.
+     *
+     * @param hostKeys The keys of FTP servers.
+     * @return The throttle, or null when there is no limit.
+     */
+    Throttle newThrottle(String... hostKeys) {
+
+        List<TokenBucket> buckets = new ArrayList<TokenBucket>(2 + hostKeys.length);
+        if (globalBucket.getRate() > 0) {
+            buckets.add(globalBucket);
+        }
+        if (hostRate > 0) {
+            for (String hostKey : hostKeys) {
+                TokenBucket bucket = getHostBucket(hostKey);
+                if (!buckets.contains(bucket)) {
+                    buckets.add(bucket);
+                }
+            }
+        }
+        if (transferRate > 0) {
+            buckets.add(new TokenBucket(transferRate));
+        }
+
+        return buckets.isEmpty() ? null : new Throttle(buckets);
+    }
+
+    /**
+     * Get the token bucket of the FTP server, and create a full one when it does not exist.
+     *
+     * @param hostKey The key of FTP server.
+     * @return The token bucket.
+     */
+    private TokenBucket getHostBucket(String hostKey) {
+
+        String key = String.valueOf(hostKey);
+        TokenBucket bucket = hostBuckets.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+
+        bucket = new TokenBucket(hostRate);
+        TokenBucket existing = hostBuckets.putIfAbsent(key, bucket);
+
+        return existing == null ? bucket : existing;
+    }
+
+    /**
+     * The throttle of one transfer, which takes the tokens from all its buckets.
+     */
+    static class Throttle {
+
+        /**
+         * The token buckets.
+         */
+        private final List<TokenBucket> buckets;
+
+        /**
+         * Constructor method.
+         *
+         * @param buckets The token buckets.
+         */
+        Throttle(List<TokenBucket> buckets) {
+            this.buckets = buckets;
+        }
+
+        /**
+         * Take the tokens of the bytes, and wait until all buckets allow them.
+         *
+         * @param bytes The count of bytes.
+         * @throws InterruptedIOException
+         */
+        void acquire(long bytes) throws InterruptedIOException {
+
+            long wait = 0L;
+            for (TokenBucket bucket : buckets) {
+                wait = Math.max(wait, bucket.reserve(bytes));
+            }
+
+            if (wait <= 0) {
+                return;
+            }
+
+            try {
+                Thread.sleep(wait / 1000000L, (int) (wait % 1000000L));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while throttling.");
+            }
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.venson.easyftp;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * BufferRing copies a stream to another through a fixed ring of reusable buffers. One thread
+ * reads into the free buffers while the caller writes the filled ones, and the reader waits when
+ * all the buffers are filled, so the memory stays the same however large the stream is.
+ *
+ * @author venson
+ */
+class BufferRing {
+
+    /**
+     * All the buffers of the ring.
+     */
+    private final Chunk[] chunks;
+
+    /**
+     * The buffers which can be read into.
+     */
+    private final BlockingQueue<Chunk> freeChunks;
+
+    /**
+     * The buffers which are read and wait to be written.
+     */
+    private final BlockingQueue<Chunk> filledChunks;
+
+    /**
+     * Constructor method.
+     *
+     * @param count The count of buffers.
+     * @param size The size of each buffer.(byte)
+     */
+    BufferRing(int count, int size) {
+
+        if (count <= 0 || size <= 0) {
+            throw new IllegalArgumentException("The count and size of buffers must be positive.");
+        }
+
+        chunks = new Chunk[count];
+        freeChunks = new ArrayBlockingQueue<Chunk>(count);
+        filledChunks = new ArrayBlockingQueue<Chunk>(count);
+
+        for (int i = 0; i < count; i++) {
+            chunks[i] = new Chunk(size);
+        }
+        reset();
+    }
+
+    /**
+     * Get the count of buffers.
+     *
+     * @return The count of buffers.
+     */
+    int getCount() {
+        return chunks.length;
+    }
+
+    /**
+     * Copy the input stream to the output stream until the end of input. The input stream is
+     * closed when the copy fails, so that the reader stops. Neither stream is closed otherwise.
+     *
+     * @param input The input stream.
+     * @param output The output stream.
+     * @return The count of copied bytes.
+     * @throws IOException
+     */
+    synchronized long copy(final InputStream input, OutputStream output) throws IOException {
+
+        Thread reader = new Thread(new Runnable() {
+            public void run() {
+                read(input);
+            }
+        }, "easyftp-buffer-ring");
+        reader.setDaemon(true);
+        reader.start();
+
+        long total = 0L;
+        boolean finished = false;
+        try {
+
+            while (true) {
+
+                Chunk chunk = filledChunks.take();
+                if (chunk.error != null) {
+                    throw chunk.error;
+                }
+                if (chunk.length < 0) {
+                    break;
+                }
+
+                output.write(chunk.data, 0, chunk.length);
+                total += chunk.length;
+
+                // Hand the buffer back to the reader.
+                freeChunks.put(chunk);
+            }
+
+            finished = true;
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Copy interrupted.");
+        } finally {
+
+            if (!finished) {
+                reader.interrupt();
+                closeQuietly(input);
+            }
+
+            join(reader);
+            reset();
+        }
+
+        return total;
+    }
+
+    /**
+     * Read the input stream into the free buffers until the end of input or an error.
+     *
+     * @param input The input stream.
+     */
+    private void read(InputStream input) {
+
+        try {
+
+            while (true) {
+
+                Chunk chunk = freeChunks.take();
+                try {
+                    chunk.length = input.read(chunk.data);
+                } catch (IOException e) {
+                    chunk.error = e;
+                }
+
+                filledChunks.put(chunk);
+                if (chunk.length < 0 || chunk.error != null) {
+                    return;
+                }
+            }
+
+        } catch (InterruptedException e) {
+            // The copy is stopped by the writer.
+        }
+    }
+
+    /**
+     * Wait for the reader to stop.
+     *
+     * @param reader The reader thread.
+     */
+    private static void join(Thread reader) {
+
+        boolean interrupted = false;
+        while (reader.isAlive()) {
+            try {
+                reader.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Make all the buffers free again.
+     */
+    private void reset() {
+
+        freeChunks.clear();
+        filledChunks.clear();
+
+        for (Chunk chunk : chunks) {
+            chunk.length = 0;
+            chunk.error = null;
+            freeChunks.add(chunk);
+        }
+    }
+
+    /**
+     * Close the stream and do not care the result.
+     *
+     * @param input The stream.
+     */
+    private static void closeQuietly(InputStream input) {
+
+        try {
+            input.close();
+        } catch (IOException e) {
+            // Ignore.
+        }
+    }
+
+    /**
+     * The buffer of the ring.
+     */
+    private static class Chunk {
+
+        /**
+         * The data of buffer.
+         */
+        private final byte[] data;
+
+        /**
+         * The count of read bytes, -1 means the end of input.
+         */
+        private int length = 0;
+
+        /**
+         * The error of reading.
+         */
+        private IOException error = null;
+
+        /**
+         * Constructor method.
+         *
+         * @param size The size of buffer.(byte)
+         */
+        Chunk(int size) {
+            this.data = new byte[size];
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.venson.easyftp;
+
+import java.util.zip.Checksum;
+
+/**
+ * The CRC32C (Castagnoli) checksum, which is computed with a lookup table.
+ *
+ * @author venson
+ */
+class CRC32C implements Checksum {
+
+    /**
+     * The reversed Castagnoli polynomial.
+     */
+    private static final int POLYNOMIAL = 0x82F63B78;
+
+    /**
+     * The lookup table of each byte.
+     */
+    private static final int[] TABLE = new int[256];
+
+    static {
+        for (int i = 0; i < TABLE.length; i++) {
+            int crc = i;
+            for (int j = 0; j < 8; j++) {
+                crc = (crc & 1) != 0 ? (crc >>> 1) ^ POLYNOMIAL : crc >>> 1;
+            }
+            TABLE[i] = crc;
+        }
+    }
+
+    /**
+     * The current checksum, which is inverted.
+     */
+    private int crc = 0xFFFFFFFF;
+
+    /**
+     * Update the checksum with the byte.
+     *
+     * @param b The byte.
+     */
+    public void update(int b) {
+        crc = (crc >>> 8) ^ TABLE[(crc ^ b) & 0xFF];
+    }
+
+    /**
+     * Update the checksum with the bytes.
+     *
+     * @param b The bytes.
+     * @param off The start offset of the bytes.
+     * @param len The count of the bytes.
+     */
+    public void update(byte[] b, int off, int len) {
+
+        int value = crc;
+        for (int i = off; i < off + len; i++) {
+            value = (value >>> 8) ^ TABLE[(value ^ b[i]) & 0xFF];
+        }
+        crc = value;
+    }
+
+    /**
+     * Get the checksum.
+     *
+     * @return The checksum.
+     */
+    public long getValue() {
+        return (~crc) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Reset the checksum.
+     */
+    public void reset() {
+        crc = 0xFFFFFFFF;
+    }
+}
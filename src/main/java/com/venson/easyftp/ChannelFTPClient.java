@@ -0,0 +1,138 @@
+package com.venson.easyftp;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.channels.SocketChannel;
+
+import javax.net.SocketFactory;
+
+import org.apache.commons.net.ftp.FTPClient;
+
+/**
+ * The FTP client whose sockets are created from socket channels, and which opens the data
+ * connection directly, so that the data can be transferred with channels and direct buffers.
+ *
+ * @author venson
+ */
+class ChannelFTPClient extends FTPClient {
+
+    /**
+     * The timeout of data connection.(millisecond)
+     */
+    private int dataTimeout = 0;
+
+    /**
+     * Constructor method.
+     */
+    ChannelFTPClient() {
+        setSocketFactory(new ChannelSocketFactory());
+    }
+
+    /**
+     * Set the timeout of data connection.(millisecond)
+     *
+     * @param timeout The timeout of data connection.(millisecond)
+     */
+    @Override
+    public void setDataTimeout(int timeout) {
+        super.setDataTimeout(timeout);
+        dataTimeout = timeout;
+    }
+
+    /**
+     * Get the timeout of data connection.(millisecond)
+     *
+     * @return The timeout of data connection.(millisecond)
+     */
+    int getDataTimeout() {
+        return dataTimeout;
+    }
+
+    /**
+     * Open the data connection for the command, and send REST before it when the restart
+     * offset is set. The caller must close the socket and complete the pending command.
+     *
+     * @param command The FTP command, such as FTPCommand.RETR.
+     * @param arg The argument of the command.
+     * @return The socket of data connection, or null when the command is refused.
+     * @throws IOException
+     */
+    Socket openDataSocket(int command, String arg) throws IOException {
+        return _openDataConnection_(command, arg);
+    }
+
+    /**
+     * The socket factory which creates unconnected sockets from socket channels. The sockets
+     * with the address are created as the default ones.
+     */
+    private static class ChannelSocketFactory extends SocketFactory {
+
+        /**
+         * Create an unconnected socket from a socket channel.
+         *
+         * @return The socket.
+         * @throws IOException
+         */
+        @Override
+        public Socket createSocket() throws IOException {
+            return SocketChannel.open().socket();
+        }
+
+        /**
+         * Create a socket connected to the host.
+         *
+         * @param host The host.
+         * @param port The port.
+         * @return The socket.
+         * @throws IOException
+         */
+        @Override
+        public Socket createSocket(String host, int port) throws IOException {
+            return new Socket(host, port);
+        }
+
+        /**
+         * Create a socket connected to the address.
+         *
+         * @param address The address.
+         * @param port The port.
+         * @return The socket.
+         * @throws IOException
+         */
+        @Override
+        public Socket createSocket(InetAddress address, int port) throws IOException {
+            return new Socket(address, port);
+        }
+
+        /**
+         * Create a socket connected to the host from the local address.
+         *
+         * @param host The host.
+         * @param port The port.
+         * @param localAddress The local address.
+         * @param localPort The local port.
+         * @return The socket.
+         * @throws IOException
+         */
+        @Override
+        public Socket createSocket(String host, int port, InetAddress localAddress, int localPort) throws IOException {
+            return new Socket(host, port, localAddress, localPort);
+        }
+
+        /**
+         * Create a socket connected to the address from the local address.
+         *
+         * @param address The address.
+         * @param port The port.
+         * @param localAddress The local address.
+         * @param localPort The local port.
+         * @return The socket.
+         * @throws IOException
+         */
+        @Override
+        public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+            return new Socket(address, port, localAddress, localPort);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.venson.easyftp;
+
+/**
+ * The algorithm of checksum computed during file transfer.
+ *
+ * @author venson
+ */
+public enum ChecksumAlgorithm {
+
+    /**
+     * CRC32, which can be verified with XCRC.
+     */
+    CRC32("CRC32", "XCRC"),
+
+    /**
+     * CRC32C (Castagnoli), which can be verified only with HASH.
+     */
+    CRC32C("CRC32C", null),
+
+    /**
+     * MD5, which can be verified with XMD5.
+     */
+    MD5("MD5", "XMD5"),
+
+    /**
+     * SHA-256, which can be verified with XSHA256.
+     */
+    SHA_256("SHA-256", "XSHA256");
+
+    /**
+     * The name of algorithm used by HASH command.
+     */
+    private final String hashName;
+
+    /**
+     * The command of FTP server which replies the checksum directly.
+     */
+    private final String command;
+
+    /**
+     * Constructor method.
+     *
+     * @param hashName The name of algorithm used by HASH command.
+     * @param command The command of FTP server which replies the checksum directly.
+     */
+    private ChecksumAlgorithm(String hashName, String command) {
+        this.hashName = hashName;
+        this.command = command;
+    }
+
+    /**
+     * Get the name of algorithm used by HASH command.
+     *
+     * @return The name of algorithm.
+     */
+    public String getHashName() {
+        return hashName;
+    }
+
+    /**
+     * Get the command of FTP server which replies the checksum directly.
+     *
+     * @return The command, or null when there is none.
+     */
+    public String getCommand() {
+        return command;
+    }
+
+    /**
+     * Determine whether the checksum computed during transfer matches the one replied by FTP
+     * server. The CRCs are compared as numbers, because some FTP servers reply them without
+     * leading zeros, and the others are compared ignoring case.
+     *
+     * @param checksum The checksum computed during transfer in lower case hex.
+     * @param remoteChecksum The checksum replied by FTP server.
+     * @return The result of whether the checksums match.
+     */
+    public boolean matches(String checksum, String remoteChecksum) {
+
+        if (this != CRC32 && this != CRC32C) {
+            return checksum.equalsIgnoreCase(remoteChecksum);
+        }
+
+        try {
+            return Long.parseLong(checksum, 16) == Long.parseLong(remoteChecksum.trim(), 16);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.venson.easyftp;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The input stream which updates the checksum with the bytes read or skipped.
+ *
+ * @author venson
+ */
+class ChecksumInputStream extends FilterInputStream {
+
+    /**
+     * The buffer size of skipping.(8KB)
+     */
+    private static final int SKIP_BUFFER_SIZE = 8 * 1024;
+
+    /**
+     * The checksum.
+     */
+    private final TransferChecksum checksum;
+
+    /**
+     * Constructor method.
+     *
+     * @param in The input stream.
+     * @param checksum The checksum.
+     */
+    ChecksumInputStream(InputStream in, TransferChecksum checksum) {
+        super(in);
+        this.checksum = checksum;
+    }
+
+    /**
+     * Read a byte and update the checksum with it.
+     *
+     * @return The byte, or -1 at the end of the stream.
+     * @throws IOException
+     */
+    @Override
+    public int read() throws IOException {
+
+        int b = in.read();
+        if (b != -1) {
+            checksum.update(new byte[] { (byte) b }, 0, 1);
+        }
+
+        return b;
+    }
+
+    /**
+     * Read the bytes and update the checksum with them.
+     *
+     * @param b The buffer.
+     * @param off The start offset of the buffer.
+     * @param len The max count of bytes to read.
+     * @return The count of bytes read, or -1 at the end of the stream.
+     * @throws IOException
+     */
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+
+        int read = in.read(b, off, len);
+        if (read > 0) {
+            checksum.update(b, off, read);
+        }
+
+        return read;
+    }
+
+    /**
+     * Skip the bytes by reading them, so that they are counted in the checksum.
+     *
+     * @param n The count of bytes to skip.
+     * @return The count of bytes skipped.
+     * @throws IOException
+     */
+    @Override
+    public long skip(long n) throws IOException {
+
+        byte[] buffer = new byte[SKIP_BUFFER_SIZE];
+        long skipped = 0L;
+        while (skipped < n) {
+
+            int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+            if (read == -1) {
+                break;
+            }
+            skipped += read;
+        }
+
+        return skipped;
+    }
+
+    /**
+     * Mark is not supported, because the checksum can not be reset.
+     *
+     * @return False.
+     */
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+}
@@ -0,0 +1,55 @@
+package com.venson.easyftp;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The output stream which updates the checksum with the bytes written.
+ *
+ * @author venson
+ */
+class ChecksumOutputStream extends FilterOutputStream {
+
+    /**
+     * The checksum.
+     */
+    private final TransferChecksum checksum;
+
+    /**
+     * Constructor method.
+     *
+     * @param out The output stream.
+     * @param checksum The checksum.
+     */
+    ChecksumOutputStream(OutputStream out, TransferChecksum checksum) {
+        super(out);
+        this.checksum = checksum;
+    }
+
+    /**
+     * Write a byte and update the checksum with it.
+     *
+     * @param b The byte.
+     * @throws IOException
+     */
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        checksum.update(new byte[] { (byte) b }, 0, 1);
+    }
+
+    /**
+     * Write the bytes and update the checksum with them.
+     *
+     * @param b The bytes.
+     * @param off The start offset of the bytes.
+     * @param len The count of the bytes.
+     * @throws IOException
+     */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        checksum.update(b, off, len);
+    }
+}
@@ -0,0 +1,224 @@
+package com.venson.easyftp;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * CircuitBreaker stops connecting to an FTP server after its consecutive connect or login
+ * failures, and is shared by the FTP clients. While the circuit is open the connections fail
+ * fast, and after the open time one probe connection is allowed. The circuit is closed when
+ * the probe succeeds, or opened again when it fails. When the result of the probe is not
+ * recorded within another open time, like when the transfer fails before login, the probe
+ * expires and the next caller becomes the probe.
+ *
+ * @author venson
+ */
+public class CircuitBreaker {
+
+    /**
+     * The logger of this class.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    /**
+     * The circuits grouped by FTP server.
+     */
+    private final ConcurrentMap<String, Circuit> circuits = new ConcurrentHashMap<String, Circuit>();
+
+    /**
+     * The count of consecutive failures which opens the circuit.
+     */
+    private int failureThreshold = 5;
+
+    /**
+     * The time the circuit stays open before the probe.(millisecond)
+     */
+    private long openTime = 30L * 1000L;
+
+    /**
+     * Get the count of consecutive failures which opens the circuit.
+     *
+     * @return The count of consecutive failures which opens the circuit.
+     */
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    /**
+     * Set the count of consecutive failures which opens the circuit.
+     *
+     * @param failureThreshold The count of consecutive failures which opens the circuit.
+     */
+    public void setFailureThreshold(int failureThreshold) {
+        this.failureThreshold = failureThreshold;
+    }
+
+    /**
+     * Get the time the circuit stays open before the probe.(second)
+     *
+     * @return The time the circuit stays open before the probe.(second)
+     */
+    public long getOpenTime() {
+        return openTime / 1000L;
+    }
+
+    /**
+     * Set the time the circuit stays open before the probe.(second)
+     *
+     * @param openTime The time the circuit stays open before the probe.(second)
+     */
+    public void setOpenTime(long openTime) {
+        this.openTime = openTime * 1000L;
+    }
+
+    /**
+     * Determine whether to connect to the FTP server. When the open time has passed, the
+     * circuit becomes half open and only the first caller is allowed as the probe, until the
+     * probe expires after another open time.
+     *
+     * @param hostKey The key of FTP server.
+     * @return The result of whether to connect.
+     */
+    public boolean allowRequest(String hostKey) {
+
+        Circuit circuit = getCircuit(hostKey);
+        synchronized (circuit) {
+
+            switch (circuit.state) {
+            case CLOSED:
+                return true;
+            case OPEN:
+                if (System.currentTimeMillis() - circuit.openedTime < openTime) {
+                    return false;
+                }
+                logger.info("Circuit breaker of " + hostKey + " is half open.");
+                circuit.state = CircuitState.HALF_OPEN;
+                circuit.probeTime = System.currentTimeMillis();
+                return true;
+            default:
+                // The probe is in flight.
+                if (System.currentTimeMillis() - circuit.probeTime <= openTime) {
+                    return false;
+                }
+                logger.info("Probe of circuit breaker of " + hostKey + " expired.");
+                circuit.probeTime = System.currentTimeMillis();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Record a successful connection to the FTP server, which closes the circuit.
+     *
+     * @param hostKey The key of FTP server.
+     */
+    public void recordSuccess(String hostKey) {
+
+        Circuit circuit = getCircuit(hostKey);
+        synchronized (circuit) {
+
+            if (circuit.state != CircuitState.CLOSED) {
+                logger.info("Circuit breaker of " + hostKey + " is closed.");
+            }
+
+            circuit.state = CircuitState.CLOSED;
+            circuit.failures = 0;
+        }
+    }
+
+    /**
+     * Record a failed connection to the FTP server, which opens the circuit when the count of
+     * consecutive failures reaches the threshold or the probe failed.
+     *
+     * @param hostKey The key of FTP server.
+     */
+    public void recordFailure(String hostKey) {
+
+        Circuit circuit = getCircuit(hostKey);
+        synchronized (circuit) {
+
+            circuit.failures++;
+
+            if (circuit.state == CircuitState.HALF_OPEN
+                    || (circuit.state == CircuitState.CLOSED && circuit.failures >= failureThreshold)) {
+                logger.warn("Circuit breaker of " + hostKey + " is open after " + circuit.failures + " failures.");
+                circuit.state = CircuitState.OPEN;
+                circuit.openedTime = System.currentTimeMillis();
+            }
+        }
+    }
+
+    /**
+     * Get the state of circuit for the FTP server.
+     *
+     * @param hostKey The key of FTP server.
+     * @return The state of circuit.
+     */
+    public CircuitState getState(String hostKey) {
+
+        Circuit circuit = getCircuit(hostKey);
+        synchronized (circuit) {
+            return circuit.state;
+        }
+    }
+
+    /**
+     * Get the keys of FTP servers which have a circuit.
+     *
+     * @return The keys of FTP servers.
+     */
+    public Set<String> getHostKeys() {
+        return Collections.unmodifiableSet(circuits.keySet());
+    }
+
+    /**
+     * Get the circuit of the FTP server, and create a closed one when it does not exist.
+     *
+     * @param hostKey The key of FTP server.
+     * @return The circuit.
+     */
+    private Circuit getCircuit(String hostKey) {
+
+        String key = String.valueOf(hostKey);
+        Circuit circuit = circuits.get(key);
+        if (circuit != null) {
+            return circuit;
+        }
+
+        circuit = new Circuit();
+        Circuit existing = circuits.putIfAbsent(key, circuit);
+
+        return existing == null ? circuit : existing;
+    }
+
+    /**
+     * The circuit of one FTP server.
+     */
+    private static class Circuit {
+
+        /**
+         * The state of circuit.
+         */
+        private CircuitState state = CircuitState.CLOSED;
+
+        /**
+         * The count of consecutive failures.
+         */
+        private int failures = 0;
+
+        /**
+         * The time when the circuit was opened.(millisecond)
+         */
+        private long openedTime = 0L;
+
+        /**
+         * The time when the probe was allowed.(millisecond)
+         */
+        private long probeTime = 0L;
+    }
+}
@@ -0,0 +1,26 @@
+package com.venson.easyftp;
+
+import java.io.IOException;
+
+/**
+ * The exception thrown when the circuit breaker of the FTP server is open, and the connection
+ * is not tried.
+ *
+ * @author venson
+ */
+public class CircuitOpenException extends IOException {
+
+    /**
+     * The serial version UID.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructor method.
+     *
+     * @param hostKey The key of FTP server.
+     */
+    public CircuitOpenException(String hostKey) {
+        super("Circuit breaker of " + hostKey + " is open.");
+    }
+}
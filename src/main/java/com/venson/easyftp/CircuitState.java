@@ -0,0 +1,24 @@
+package com.venson.easyftp;
+
+/**
+ * The state of circuit breaker for one FTP server.
+ *
+ * @author venson
+ */
+public enum CircuitState {
+
+    /**
+     * Closed state, the connections are allowed.
+     */
+    CLOSED,
+
+    /**
+     * Open state, the connections fail fast.
+     */
+    OPEN,
+
+    /**
+     * Half open state, only one probe connection is allowed.
+     */
+    HALF_OPEN;
+}
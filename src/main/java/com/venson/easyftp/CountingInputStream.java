@@ -0,0 +1,66 @@
+package com.venson.easyftp;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The input stream which counts the bytes read into the transfer metrics.
+ *
+ * @author venson
+ */
+class CountingInputStream extends FilterInputStream {
+
+    /**
+     * The transfer metrics.
+     */
+    private final TransferMetrics metrics;
+
+    /**
+     * Constructor method.
+     *
+     * @param in The input stream.
+     * @param metrics The transfer metrics.
+     */
+    CountingInputStream(InputStream in, TransferMetrics metrics) {
+        super(in);
+        this.metrics = metrics;
+    }
+
+    /**
+     * Read a byte and count it.
+     *
+     * @return The byte, or -1 at the end of the stream.
+     * @throws IOException
+     */
+    @Override
+    public int read() throws IOException {
+
+        int b = in.read();
+        if (b != -1) {
+            metrics.addBytes(1L);
+        }
+
+        return b;
+    }
+
+    /**
+     * Read the bytes and count them.
+     *
+     * @param b The buffer.
+     * @param off The start offset of the buffer.
+     * @param len The max count of bytes to read.
+     * @return The count of bytes read, or -1 at the end of the stream.
+     * @throws IOException
+     */
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+
+        int read = in.read(b, off, len);
+        if (read > 0) {
+            metrics.addBytes(read);
+        }
+
+        return read;
+    }
+}
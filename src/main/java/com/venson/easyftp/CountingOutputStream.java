@@ -0,0 +1,55 @@
+package com.venson.easyftp;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The output stream which counts the bytes written into the transfer metrics.
+ *
+ * @author venson
+ */
+class CountingOutputStream extends FilterOutputStream {
+
+    /**
+     * The transfer metrics.
+     */
+    private final TransferMetrics metrics;
+
+    /**
+     * Constructor method.
+     *
+     * @param out The output stream.
+     * @param metrics The transfer metrics.
+     */
+    CountingOutputStream(OutputStream out, TransferMetrics metrics) {
+        super(out);
+        this.metrics = metrics;
+    }
+
+    /**
+     * Write a byte and count it.
+     *
+     * @param b The byte.
+     * @throws IOException
+     */
+    @Override
+    public void write(int b) throws IOException {
+        out.write(b);
+        metrics.addBytes(1L);
+    }
+
+    /**
+     * Write the bytes and count them.
+     *
+     * @param b The bytes.
+     * @param off The start offset of the bytes.
+     * @param len The count of the bytes.
+     * @throws IOException
+     */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        out.write(b, off, len);
+        metrics.addBytes(len);
+    }
+}
@@ -0,0 +1,89 @@
+package com.venson.easyftp;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+/**
+ * DirectBufferPool keeps the released direct buffers for reuse, because allocating them is
+ * expensive and their memory is freed only by the garbage collector.
+ *
+ * @author venson
+ */
+class DirectBufferPool {
+
+    /**
+     * The max count of idle buffers for each capacity.
+     */
+    private final int maxIdlePerCapacity;
+
+    /**
+     * The idle buffers grouped by capacity.
+     */
+    private final Map<Integer, LinkedList<ByteBuffer>> idleBuffers = new HashMap<Integer, LinkedList<ByteBuffer>>();
+
+    /**
+     * Constructor method.
+     *
+     * @param maxIdlePerCapacity The max count of idle buffers for each capacity.
+     */
+    DirectBufferPool(int maxIdlePerCapacity) {
+        this.maxIdlePerCapacity = maxIdlePerCapacity;
+    }
+
+    /**
+     * Get a cleared direct buffer of the capacity, and allocate it when there is no idle one.
+     *
+     * @param capacity The capacity of buffer.(byte)
+     * @return The direct buffer.
+     */
+    ByteBuffer acquire(int capacity) {
+
+        synchronized (idleBuffers) {
+            LinkedList<ByteBuffer> buffers = idleBuffers.get(capacity);
+            if (buffers != null && !buffers.isEmpty()) {
+                ByteBuffer buffer = buffers.removeLast();
+                buffer.clear();
+                return buffer;
+            }
+        }
+
+        return ByteBuffer.allocateDirect(capacity);
+    }
+
+    /**
+     * Return the buffer for reuse, and drop it when there are enough idle ones.
+     *
+     * @param buffer The direct buffer.
+     */
+    void release(ByteBuffer buffer) {
+
+        synchronized (idleBuffers) {
+
+            LinkedList<ByteBuffer> buffers = idleBuffers.get(buffer.capacity());
+            if (buffers == null) {
+                buffers = new LinkedList<ByteBuffer>();
+                idleBuffers.put(buffer.capacity(), buffers);
+            }
+
+            if (buffers.size() < maxIdlePerCapacity) {
+                buffers.addLast(buffer);
+            }
+        }
+    }
+
+    /**
+     * Get the count of idle buffers of the capacity.
+     *
+     * @param capacity The capacity of buffer.(byte)
+     * @return The count of idle buffers.
+     */
+    int getIdleCount(int capacity) {
+
+        synchronized (idleBuffers) {
+            LinkedList<ByteBuffer> buffers = idleBuffers.get(capacity);
+            return buffers == null ? 0 : buffers.size();
+        }
+    }
+}
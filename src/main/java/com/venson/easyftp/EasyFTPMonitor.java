@@ -0,0 +1,290 @@
+package com.venson.easyftp;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * EasyFTPMonitor keeps the active file transfers of the FTP clients which it is set to, and
+ * exposes them with the connection pool, the circuit breaker and the metrics registry through
+ * JMX, so that a stuck or slow transfer can be found in a running JVM.
+ *
+ * @author venson
+ */
+public class EasyFTPMonitor implements EasyFTPMonitorMXBean {
+
+    /**
+     * The logger of this class.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(EasyFTPMonitor.class);
+
+    /**
+     * The domain and type of the object name.
+     */
+    private static final String OBJECT_NAME_PREFIX = "com.venson.easyftp:type=EasyFTPMonitor,name=";
+
+    /**
+     * The FTP clients with active file transfers.
+     */
+    private final Set<AbstractFTPClient> activeClients =
+        Collections.newSetFromMap(new ConcurrentHashMap<AbstractFTPClient, Boolean>());
+
+    /**
+     * The time without moving bytes, after which a transfer is taken as stalled.(60 seconds)
+     */
+    private volatile long stallTime = 60L * 1000L;
+
+    /**
+     * The connection pool which is shown, null means none.
+     */
+    private FTPClientPool connectionPool = null;
+
+    /**
+     * The circuit breaker which is shown, null means none.
+     */
+    private CircuitBreaker circuitBreaker = null;
+
+    /**
+     * The metrics registry which is shown, null means none.
+     */
+    private MetricsRegistry metricsRegistry = null;
+
+    /**
+     * The name which the monitor is registered with, null means not registered.
+     */
+    private ObjectName objectName = null;
+
+    /**
+     * Set the connection pool which is shown.
+     *
+     * @param connectionPool The connection pool.
+     */
+    public void setConnectionPool(FTPClientPool connectionPool) {
+        this.connectionPool = connectionPool;
+    }
+
+    /**
+     * Set the circuit breaker which is shown.
+     *
+     * @param circuitBreaker The circuit breaker.
+     */
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    /**
+     * Set the metrics registry which is shown.
+     *
+     * @param metricsRegistry The metrics registry.
+     */
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    /**
+     * Register the monitor to the platform MBean server.
+     *
+     * @param name The name of the monitor, which tells the monitors of a JVM apart.
+     * @return The result of registration.
+     */
+    public synchronized boolean register(String name) {
+
+        try {
+
+            ObjectName newName = new ObjectName(OBJECT_NAME_PREFIX + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, newName);
+            objectName = newName;
+            return true;
+
+        } catch (JMException e) {
+            logger.error("Failed to register monitor " + name + " .", e);
+            return false;
+        }
+    }
+
+    /**
+     * Unregister the monitor from the platform MBean server.
+     */
+    public synchronized void unregister() {
+
+        if (objectName == null) {
+            return;
+        }
+
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.unregisterMBean(objectName);
+        } catch (JMException e) {
+            logger.error("Failed to unregister monitor " + objectName + " .", e);
+        }
+
+        objectName = null;
+    }
+
+    /**
+     * Get the name which the monitor is registered with.
+     *
+     * @return The object name, or null when it is not registered.
+     */
+    public synchronized ObjectName getObjectName() {
+        return objectName;
+    }
+
+    /**
+     * Keep the FTP client whose file transfer started.
+     *
+     * @param client The FTP client.
+     */
+    void transferStarted(AbstractFTPClient client) {
+        activeClients.add(client);
+    }
+
+    /**
+     * Drop the FTP client whose file transfer finished.
+     *
+     * @param client The FTP client.
+     */
+    void transferFinished(AbstractFTPClient client) {
+        activeClients.remove(client);
+    }
+
+    /**
+     * Get the count of active file transfers.
+     *
+     * @return The count of active file transfers.
+     */
+    public int getActiveTransferCount() {
+        return activeClients.size();
+    }
+
+    /**
+     * Get the snapshots of active file transfers.
+     *
+     * @return The snapshots of active file transfers.
+     */
+    public List<TransferInfo> getActiveTransfers() {
+        return getTransfers(-1L);
+    }
+
+    /**
+     * Get the snapshots of active file transfers which have moved no bytes for the stall time.
+     *
+     * @return The snapshots of stalled file transfers.
+     */
+    public List<TransferInfo> getStalledTransfers() {
+        return getTransfers(stallTime);
+    }
+
+    /**
+     * Get the time without moving bytes, after which a transfer is taken as stalled.(second)
+     *
+     * @return The stall time.(second)
+     */
+    public long getStallTime() {
+        return stallTime / 1000L;
+    }
+
+    /**
+     * Set the time without moving bytes, after which a transfer is taken as stalled.(second)
+     *
+     * @param stallTime The stall time.(second)
+     */
+    public void setStallTime(long stallTime) {
+        this.stallTime = stallTime * 1000L;
+    }
+
+    /**
+     * Get the count of idle FTP clients in the connection pool grouped by user@host:port.
+     *
+     * @return The count of idle FTP clients by key.
+     */
+    public Map<String, Integer> getIdleConnectionCounts() {
+
+        FTPClientPool pool = connectionPool;
+        if (pool == null) {
+            return new HashMap<String, Integer>();
+        }
+
+        return pool.getIdleCounts();
+    }
+
+    /**
+     * Get the states of circuits grouped by FTP server.
+     *
+     * @return The states of circuits by FTP server.
+     */
+    public Map<String, String> getCircuitStates() {
+
+        Map<String, String> states = new HashMap<String, String>();
+        CircuitBreaker breaker = circuitBreaker;
+        if (breaker != null) {
+            for (String hostKey : breaker.getHostKeys()) {
+                states.put(hostKey, breaker.getState(hostKey).name());
+            }
+        }
+
+        return states;
+    }
+
+    /**
+     * Get the count of retries of finished transfers grouped by FTP server.
+     *
+     * @return The count of retries by FTP server.
+     */
+    public Map<String, Long> getRetryCounts() {
+
+        Map<String, Long> counts = new HashMap<String, Long>();
+        MetricsRegistry registry = metricsRegistry;
+        if (registry != null) {
+            for (String hostKey : registry.getHostKeys()) {
+                counts.put(hostKey, registry.getHostMetrics(hostKey).getRetryCount());
+            }
+        }
+
+        return counts;
+    }
+
+    /**
+     * Get the snapshots of active file transfers which have moved no bytes for the idle time.
+     *
+     * @param minIdleTime The min idle time, negative means all.(millisecond)
+     * @return The snapshots of file transfers.
+     */
+    private List<TransferInfo> getTransfers(long minIdleTime) {
+
+        long now = System.currentTimeMillis();
+        List<TransferInfo> transfers = new ArrayList<TransferInfo>();
+        for (AbstractFTPClient client : activeClients) {
+
+            TransferMetrics metrics = client.getMetrics();
+            if (metrics == null) {
+                continue;
+            }
+
+            long idleTime = now - metrics.getLastActivityTime();
+            if (idleTime < minIdleTime) {
+                continue;
+            }
+
+            long elapsedTime = now - metrics.getStartTime();
+            long bytes = metrics.getBytesTransferred();
+            transfers.add(new TransferInfo(client.getHostKey(), client.getTransferPath(), bytes,
+                bytes * 1000L / Math.max(elapsedTime, 1L), elapsedTime, idleTime,
+                client.getCurrentRetryTimes(), client.isResumeBroken()));
+        }
+
+        return transfers;
+    }
+}
@@ -0,0 +1,68 @@
+package com.venson.easyftp;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The management interface of EasyFTPMonitor, which is exposed through JMX.
+ *
+ * @author venson
+ */
+public interface EasyFTPMonitorMXBean {
+
+    /**
+     * Get the count of active file transfers.
+     *
+     * @return The count of active file transfers.
+     */
+    int getActiveTransferCount();
+
+    /**
+     * Get the snapshots of active file transfers.
+     *
+     * @return The snapshots of active file transfers.
+     */
+    List<TransferInfo> getActiveTransfers();
+
+    /**
+     * Get the snapshots of active file transfers which have moved no bytes for the stall time.
+     *
+     * @return The snapshots of stalled file transfers.
+     */
+    List<TransferInfo> getStalledTransfers();
+
+    /**
+     * Get the time without moving bytes, after which a transfer is taken as stalled.(second)
+     *
+     * @return The stall time.(second)
+     */
+    long getStallTime();
+
+    /**
+     * Set the time without moving bytes, after which a transfer is taken as stalled.(second)
+     *
+     * @param stallTime The stall time.(second)
+     */
+    void setStallTime(long stallTime);
+
+    /**
+     * Get the count of idle FTP clients in the connection pool grouped by user@host:port.
+     *
+     * @return The count of idle FTP clients by key.
+     */
+    Map<String, Integer> getIdleConnectionCounts();
+
+    /**
+     * Get the states of circuits grouped by FTP server.
+     *
+     * @return The states of circuits by FTP server.
+     */
+    Map<String, String> getCircuitStates();
+
+    /**
+     * Get the count of retries of finished transfers grouped by FTP server.
+     *
+     * @return The count of retries by FTP server.
+     */
+    Map<String, Long> getRetryCounts();
+}
@@ -0,0 +1,157 @@
+package com.venson.easyftp;
+
+import java.util.Random;
+
+/**
+ * ExponentialBackoffRetryPolicy doubles the wait time after each retry up to the max wait time,
+ * and waits a random time between zero and it (full jitter), so that the clients failed
+ * together do not retry together. It gives up when the max count of retry time is reached or
+ * the retry would start after the max elapsed time.
+ *
+ * @author venson
+ */
+public class ExponentialBackoffRetryPolicy implements RetryPolicy {
+
+    /**
+     * The random generator of jitter.
+     */
+    private final Random random;
+
+    /**
+     * The max count of retry time.
+     */
+    private int maxRetryTimes = 5;
+
+    /**
+     * The wait time before the first retry.(millisecond)
+     */
+    private long baseDelay = 1000L;
+
+    /**
+     * The max wait time between retries.(millisecond)
+     */
+    private long maxDelay = 60L * 1000L;
+
+    /**
+     * The max elapsed time since the file transfer started, 0 means no limit.(millisecond)
+     */
+    private long maxElapsedTime = 0L;
+
+    /**
+     * Constructor method.
+     */
+    public ExponentialBackoffRetryPolicy() {
+        this(new Random());
+    }
+
+    /**
+     * Constructor method with the given random generator.
+     *
+     * @param random The random generator of jitter.
+     */
+    public ExponentialBackoffRetryPolicy(Random random) {
+        this.random = random;
+    }
+
+    /**
+     * Get the max count of retry time.
+     *
+     * @return The max count of retry time.
+     */
+    public int getMaxRetryTimes() {
+        return maxRetryTimes;
+    }
+
+    /**
+     * Set the max count of retry time.
+     *
+     * @param maxRetryTimes The max count of retry time.
+     */
+    public void setMaxRetryTimes(int maxRetryTimes) {
+        this.maxRetryTimes = maxRetryTimes;
+    }
+
+    /**
+     * Get the wait time before the first retry.(second)
+     *
+     * @return The wait time before the first retry.(second)
+     */
+    public long getBaseDelay() {
+        return baseDelay / 1000L;
+    }
+
+    /**
+     * Set the wait time before the first retry.(second)
+     *
+     * @param baseDelay The wait time before the first retry.(second)
+     */
+    public void setBaseDelay(long baseDelay) {
+        this.baseDelay = baseDelay * 1000L;
+    }
+
+    /**
+     * Get the max wait time between retries.(second)
+     *
+     * @return The max wait time between retries.(second)
+     */
+    public long getMaxDelay() {
+        return maxDelay / 1000L;
+    }
+
+    /**
+     * Set the max wait time between retries.(second)
+     *
+     * @param maxDelay The max wait time between retries.(second)
+     */
+    public void setMaxDelay(long maxDelay) {
+        this.maxDelay = maxDelay * 1000L;
+    }
+
+    /**
+     * Get the max elapsed time since the file transfer started.(second)
+     *
+     * @return The max elapsed time since the file transfer started.(second)
+     */
+    public long getMaxElapsedTime() {
+        return maxElapsedTime / 1000L;
+    }
+
+    /**
+     * Set the max elapsed time since the file transfer started, 0 means no limit.(second)
+     *
+     * @param maxElapsedTime The max elapsed time since the file transfer started.(second)
+     */
+    public void setMaxElapsedTime(long maxElapsedTime) {
+        this.maxElapsedTime = maxElapsedTime * 1000L;
+    }
+
+    /**
+     * Get the wait time before the retry.(millisecond)
+     *
+     * @param retryTimes The count of retry time including this one, which starts from 1.
+     * @param elapsedTime The elapsed time since the file transfer started.(millisecond)
+     * @return The wait time before the retry, or a negative value to give up.(millisecond)
+     */
+    public long getRetryDelay(int retryTimes, long elapsedTime) {
+
+        if (retryTimes > maxRetryTimes) {
+            return -1L;
+        }
+
+        // Double the wait time for each retry, and stop doubling when it reaches the max.
+        long ceiling = baseDelay;
+        for (int i = 1; i < retryTimes && ceiling < maxDelay; i++) {
+            ceiling *= 2L;
+        }
+        ceiling = Math.min(ceiling, maxDelay);
+
+        // Wait a random time between zero and the ceiling.
+        long delay = (long) (random.nextDouble() * (ceiling + 1L));
+
+        if (maxElapsedTime > 0L && elapsedTime + delay > maxElapsedTime) {
+            return -1L;
+        }
+
+        return delay;
+    }
+}
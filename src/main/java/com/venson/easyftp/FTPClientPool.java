@@ -0,0 +1,408 @@
+package com.venson.easyftp;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.commons.net.ftp.FTPClient;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * FTPClientPool keeps the logged-in FTP clients which are idle, so that they can be
+ * reused by the following transfers to the same FTP server with the same user.
+ * The idle FTP clients are validated with NOOP when borrowed, and evicted when they
+ * have been idle too long.
+ *
+ * @author venson
+ */
+public class FTPClientPool {
+
+    /**
+     * The logger of this class.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(FTPClientPool.class);
+
+    /**
+     * The max count of idle FTP clients for each key.
+     */
+    private int maxIdlePerKey = 8;
+
+    /**
+     * The max idle time of FTP client.(60 seconds)
+     */
+    private long maxIdleTime = 60L * 1000L;
+
+    /**
+     * The idle FTP clients grouped by key.
+     */
+    private final Map<String, LinkedList<IdleFTPClient>> idleClients = new HashMap<String, LinkedList<IdleFTPClient>>();
+
+    /**
+     * The working directories of FTP clients right after login.
+     */
+    private final Map<FTPClient, String> loginDirectories = new WeakHashMap<FTPClient, String>();
+
+    /**
+     * The closed flag.
+     */
+    private boolean closed = false;
+
+    /**
+     * Get the max count of idle FTP clients for each key.
+     *
+     * @return The max count of idle FTP clients for each key.
+     */
+    public int getMaxIdlePerKey() {
+        return maxIdlePerKey;
+    }
+
+    /**
+     * Set the max count of idle FTP clients for each key.
+     *
+     * @param maxIdlePerKey The max count of idle FTP clients for each key.
+     */
+    public void setMaxIdlePerKey(int maxIdlePerKey) {
+        this.maxIdlePerKey = maxIdlePerKey;
+    }
+
+    /**
+     * Get the max idle time of FTP client.(second)
+     *
+     * @return The max idle time of FTP client.(second)
+     */
+    public long getMaxIdleTime() {
+        return maxIdleTime / 1000L;
+    }
+
+    /**
+     * Set the max idle time of FTP client.(second)
+     *
+     * @param maxIdleTime The max idle time of FTP client.(second)
+     */
+    public void setMaxIdleTime(long maxIdleTime) {
+        this.maxIdleTime = maxIdleTime * 1000L;
+    }
+
+    /**
+     * Set the working directory of the FTP client right after login. The FTP client is changed
+     * back to it when returned, so that the next transfer starts where a new login would.
+     *
+     * @param ftp The logged-in FTP client.
+     * @param directory The working directory after login, null means unknown.
+     */
+    public synchronized void setLoginDirectory(FTPClient ftp, String directory) {
+
+        if (directory == null) {
+            loginDirectories.remove(ftp);
+        } else {
+            loginDirectories.put(ftp, directory);
+        }
+    }
+
+    /**
+     * Borrow a logged-in FTP client from the pool.
+     *
+     * @param vo The value object with FTP information.
+     * @return The logged-in FTP client, or null when there is no valid idle one.
+     */
+    public FTPClient borrow(FTPFileInfoVO vo) {
+
+        String key = keyOf(vo);
+
+        while (true) {
+
+            IdleFTPClient idle = null;
+
+            synchronized (this) {
+
+                LinkedList<IdleFTPClient> clients = idleClients.get(key);
+                if (clients == null || clients.isEmpty()) {
+                    return null;
+                }
+
+                // The most recently used one is most likely to be alive.
+                idle = clients.removeLast();
+                if (clients.isEmpty()) {
+                    idleClients.remove(key);
+                }
+            }
+
+            // Drop the expired one.
+            if (isExpired(idle, System.currentTimeMillis())) {
+                destroy(idle.ftp);
+                continue;
+            }
+
+            // Validate the connection before handing it out.
+            if (validate(idle.ftp)) {
+                return idle.ftp;
+            }
+
+            destroy(idle.ftp);
+        }
+    }
+
+    /**
+     * Return a logged-in FTP client to the pool.
+     *
+     * @param vo The value object with FTP information.
+     * @param ftp The logged-in FTP client.
+     */
+    public void release(FTPFileInfoVO vo, FTPClient ftp) {
+
+        if (!ftp.isConnected()) {
+            return;
+        }
+
+        // Clear the resume broken point which may be left by a failed transfer.
+        ftp.setRestartOffset(0L);
+
+        // Go back to the login directory, where the paths without directory are resolved.
+        String directory;
+        synchronized (this) {
+            directory = loginDirectories.get(ftp);
+        }
+        if (directory != null && !resetDirectory(ftp, directory)) {
+            destroy(ftp);
+            return;
+        }
+
+        boolean pooled = false;
+
+        synchronized (this) {
+
+            if (!closed) {
+
+                String key = keyOf(vo);
+                LinkedList<IdleFTPClient> clients = idleClients.get(key);
+                if (clients == null) {
+                    clients = new LinkedList<IdleFTPClient>();
+                    idleClients.put(key, clients);
+                }
+
+                if (clients.size() < maxIdlePerKey) {
+                    clients.addLast(new IdleFTPClient(ftp, System.currentTimeMillis()));
+                    pooled = true;
+                }
+            }
+        }
+
+        if (!pooled) {
+            destroy(ftp);
+        }
+
+        evictIdle();
+    }
+
+    /**
+     * Logout and disconnect the FTP client which should not be reused.
+     *
+     * @param ftp The FTP client.
+     */
+    public void invalidate(FTPClient ftp) {
+        destroy(ftp);
+    }
+
+    /**
+     * Evict the FTP clients which have been idle too long.
+     *
+     * @return The count of evicted FTP clients.
+     */
+    public int evictIdle() {
+
+        List<FTPClient> evicted = new ArrayList<FTPClient>();
+        long now = System.currentTimeMillis();
+
+        synchronized (this) {
+
+            Iterator<LinkedList<IdleFTPClient>> it = idleClients.values().iterator();
+            while (it.hasNext()) {
+
+                LinkedList<IdleFTPClient> clients = it.next();
+
+                // The least recently used ones are at the head.
+                while (!clients.isEmpty() && isExpired(clients.getFirst(), now)) {
+                    evicted.add(clients.removeFirst().ftp);
+                }
+
+                if (clients.isEmpty()) {
+                    it.remove();
+                }
+            }
+        }
+
+        for (FTPClient ftp : evicted) {
+            destroy(ftp);
+        }
+
+        return evicted.size();
+    }
+
+    /**
+     * Get the count of idle FTP clients.
+     *
+     * @return The count of idle FTP clients.
+     */
+    public synchronized int getIdleCount() {
+
+        int count = 0;
+        for (LinkedList<IdleFTPClient> clients : idleClients.values()) {
+            count += clients.size();
+        }
+
+        return count;
+    }
+
+    /**
+     * Get the count of idle FTP clients grouped by key, which is user@host:port.
+     *
+     * @return The count of idle FTP clients by key.
+     */
+    public synchronized Map<String, Integer> getIdleCounts() {
+
+        Map<String, Integer> counts = new HashMap<String, Integer>();
+        for (Map.Entry<String, LinkedList<IdleFTPClient>> entry : idleClients.entrySet()) {
+            counts.put(entry.getKey(), entry.getValue().size());
+        }
+
+        return counts;
+    }
+
+    /**
+     * Close the pool and disconnect all idle FTP clients.
+     */
+    public void close() {
+
+        List<FTPClient> clients = new ArrayList<FTPClient>();
+
+        synchronized (this) {
+
+            closed = true;
+            for (LinkedList<IdleFTPClient> idles : idleClients.values()) {
+                for (IdleFTPClient idle : idles) {
+                    clients.add(idle.ftp);
+                }
+            }
+            idleClients.clear();
+        }
+
+        for (FTPClient ftp : clients) {
+            destroy(ftp);
+        }
+    }
+
+    /**
+     * Get the pool key of the FTP information.
+     *
+     * @param vo The value object with FTP information.
+     * @return The pool key.
+     */
+    private static String keyOf(FTPFileInfoVO vo) {
+        return vo.getUserName() + "@" + vo.getHostKey();
+    }
+
+    /**
+     * Determine whether the idle FTP client is expired.
+     *
+     * @param idle The idle FTP client.
+     * @param now The current time.
+     * @return The result of whether the idle FTP client is expired.
+     */
+    private boolean isExpired(IdleFTPClient idle, long now) {
+        return now - idle.idleSince >= maxIdleTime;
+    }
+
+    /**
+     * Validate the FTP client with NOOP.
+     *
+     * @param ftp The FTP client.
+     * @return The result of validation.
+     */
+    private boolean validate(FTPClient ftp) {
+
+        try {
+            return ftp.isConnected() && ftp.sendNoOp();
+        } catch (IOException e) {
+            logger.debug("Idle ftp validation failed.", e);
+            return false;
+        }
+    }
+
+    /**
+     * Change the FTP client back to its login directory.
+     *
+     * @param ftp The FTP client.
+     * @param directory The login directory.
+     * @return The result of changing directory.
+     */
+    private boolean resetDirectory(FTPClient ftp, String directory) {
+
+        try {
+            return ftp.changeWorkingDirectory(directory);
+        } catch (IOException e) {
+            logger.debug("Idle ftp failed to change to login directory.", e);
+            return false;
+        }
+    }
+
+    /**
+     * Logout and disconnect the FTP client.
+     *
+     * @param ftp The FTP client.
+     */
+    private void destroy(FTPClient ftp) {
+
+        synchronized (this) {
+            loginDirectories.remove(ftp);
+        }
+
+        try {
+            if (ftp.isConnected()) {
+                ftp.logout();
+            }
+        } catch (IOException e) {
+            logger.debug("ftp logout failed.", e);
+        }
+
+        try {
+            if (ftp.isConnected()) {
+                ftp.disconnect();
+            }
+        } catch (IOException e) {
+            logger.debug("ftp disconnect failed.", e);
+        }
+    }
+
+    /**
+     * The idle FTP client with the time it became idle.
+     */
+    private static class IdleFTPClient {
+
+        /**
+         * The FTP client.
+         */
+        private final FTPClient ftp;
+
+        /**
+         * The time it became idle.
+         */
+        private final long idleSince;
+
+        /**
+         * Constructor method.
+         *
+         * @param ftp The FTP client.
+         * @param idleSince The time it became idle.
+         */
+        IdleFTPClient(FTPClient ftp, long idleSince) {
+            this.ftp = ftp;
+            this.idleSince = idleSince;
+        }
+    }
+}
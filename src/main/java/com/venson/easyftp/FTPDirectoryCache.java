@@ -0,0 +1,126 @@
+package com.venson.easyftp;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * FTPDirectoryCache remembers the directories known to exist on each FTP server for each user,
+ * so that changing to them costs only one CWD. The least recently used directories are dropped
+ * when there are too many.
+ *
+ * @author venson
+ */
+public class FTPDirectoryCache {
+
+    /**
+     * The separator of directory.
+     */
+    private static final String STR_DIR_SEPARATOR = "/";
+
+    /**
+     * The max count of directories for each FTP server and user.
+     */
+    private int maxDirectoriesPerHost = 1024;
+
+    /**
+     * The directories grouped by FTP server and user.
+     */
+    private final Map<String, LinkedHashMap<String, Boolean>> directories = new HashMap<String, LinkedHashMap<String, Boolean>>();
+
+    /**
+     * Get the max count of directories for each FTP server and user.
+     *
+     * @return The max count of directories for each FTP server and user.
+     */
+    public int getMaxDirectoriesPerHost() {
+        return maxDirectoriesPerHost;
+    }
+
+    /**
+     * Set the max count of directories for each FTP server and user.
+     *
+     * @param maxDirectoriesPerHost The max count of directories for each FTP server and user.
+     */
+    public void setMaxDirectoriesPerHost(int maxDirectoriesPerHost) {
+        this.maxDirectoriesPerHost = maxDirectoriesPerHost;
+    }
+
+    /**
+     * Determine whether the directory is known to exist.
+     *
+     * @param vo The value object with FTP information.
+     * @param dir The absolute path of the directory.
+     * @return The result of whether the directory is known to exist.
+     */
+    public synchronized boolean contains(FTPFileInfoVO vo, String dir) {
+
+        LinkedHashMap<String, Boolean> dirs = directories.get(keyOf(vo));
+
+        return dirs != null && dirs.get(dir) != null;
+    }
+
+    /**
+     * Remember the directory which exists.
+     *
+     * @param vo The value object with FTP information.
+     * @param dir The absolute path of the directory.
+     */
+    public synchronized void add(FTPFileInfoVO vo, String dir) {
+
+        String key = keyOf(vo);
+        LinkedHashMap<String, Boolean> dirs = directories.get(key);
+        if (dirs == null) {
+            dirs = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                    return size() > maxDirectoriesPerHost;
+                }
+            };
+            directories.put(key, dirs);
+        }
+
+        dirs.put(dir, Boolean.TRUE);
+    }
+
+    /**
+     * Forget the directory and its sub directories.
+     *
+     * @param vo The value object with FTP information.
+     * @param dir The absolute path of the directory.
+     */
+    public synchronized void remove(FTPFileInfoVO vo, String dir) {
+
+        LinkedHashMap<String, Boolean> dirs = directories.get(keyOf(vo));
+        if (dirs == null) {
+            return;
+        }
+
+        Iterator<String> it = dirs.keySet().iterator();
+        while (it.hasNext()) {
+            String known = it.next();
+            if (known.equals(dir) || known.startsWith(dir + STR_DIR_SEPARATOR)) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Forget all directories.
+     */
+    public synchronized void clear() {
+        directories.clear();
+    }
+
+    /**
+     * Get the cache key of the FTP information.
+     *
+     * @param vo The value object with FTP information.
+     * @return The cache key.
+     */
+    private static String keyOf(FTPFileInfoVO vo) {
+        return vo.getUserName() + "@" + vo.getHostKey();
+    }
+}
@@ -0,0 +1,95 @@
+package com.venson.easyftp;
+
+import java.net.InetAddress;
+
+import org.apache.commons.net.ProtocolCommandEvent;
+import org.apache.commons.net.ProtocolCommandListener;
+import org.apache.commons.net.SocketClient;
+import org.apache.commons.net.ftp.FTPReply;
+
+/**
+ * The FTP client command listener which notifies the FTP event listener of each command sent,
+ * and ends the event with its first reply. It keeps the command in flight, so each FTP client
+ * has its own listener. The key of FTP server is taken from the FTP client when the command is
+ * sent, because the FTP client may connect to another FTP server later.
+ *
+ * @author venson
+ */
+public class FTPEventCommandListener implements ProtocolCommandListener {
+
+    /**
+     * The FTP event listener.
+     */
+    private final FTPEventListener listener;
+
+    /**
+     * The key of FTP server when it is unknown from the FTP client.
+     */
+    private final String hostKey;
+
+    /**
+     * The event of the command waiting for its reply, null means none.
+     */
+    private volatile Object pendingEvent = null;
+
+    /**
+     * Constructor method.
+     *
+     * @param listener The FTP event listener.
+     * @param hostKey The key of FTP server when it is unknown from the FTP client.
+     */
+    public FTPEventCommandListener(FTPEventListener listener, String hostKey) {
+        this.listener = listener;
+        this.hostKey = hostKey;
+    }
+
+    /**
+     * Begin the event of the command when it is sent.
+     *
+     * @param event The event of FTP client.
+     */
+    public void protocolCommandSent(ProtocolCommandEvent event) {
+
+        if (event == null || event.getCommand() == null) {
+            return;
+        }
+
+        String key = getHostKey(event.getSource());
+        pendingEvent = listener.begin(FTPEventType.COMMAND, key == null ? hostKey : key, event.getCommand());
+    }
+
+    /**
+     * End the event of the pending command when its first reply is received.
+     *
+     * @param event The event of FTP client.
+     */
+    public void protocolReplyReceived(ProtocolCommandEvent event) {
+
+        Object pending = pendingEvent;
+        if (pending == null) {
+            return;
+        }
+
+        pendingEvent = null;
+        int replyCode = event.getReplyCode();
+        listener.end(pending, 0L, replyCode, !FTPReply.isNegativePermanent(replyCode) && !FTPReply.isNegativeTransient(replyCode));
+    }
+
+    /**
+     * Get the key of FTP server which the FTP client is connected to.
+     *
+     * @param source The FTP client.
+     * @return The key of FTP server, or null when it is unknown.
+     */
+    private static String getHostKey(Object source) {
+
+        if (!(source instanceof SocketClient) || !((SocketClient) source).isConnected()) {
+            return null;
+        }
+
+        SocketClient client = (SocketClient) source;
+        InetAddress address = client.getRemoteAddress();
+
+        return address == null ? null : address.getHostAddress() + ":" + client.getRemotePort();
+    }
+}
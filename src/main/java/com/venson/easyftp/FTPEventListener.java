@@ -0,0 +1,31 @@
+package com.venson.easyftp;
+
+/**
+ * The listener which is notified when an event of FTP client begins and ends, so that the
+ * FTP activity can be recorded by a profiler, like the events of Java Flight Recorder. The
+ * listener is called on the thread of the event, and should return quickly.
+ *
+ * @author venson
+ */
+public interface FTPEventListener {
+
+    /**
+     * Notify that an event begins.
+     *
+     * @param type The type of event.
+     * @param hostKey The key of FTP server.
+     * @param name The FTP command of COMMAND event, the path of DATA_TRANSFER event, or null.
+     * @return The event which is passed to end, or null when it is not recorded.
+     */
+    Object begin(FTPEventType type, String hostKey, String name);
+
+    /**
+     * Notify that the event ends.
+     *
+     * @param event The event returned by begin.
+     * @param bytes The count of bytes moved by DATA_TRANSFER event, or 0.
+     * @param replyCode The reply code of COMMAND event, the reply code of greeting of CONNECT event, or 0.
+     * @param success The result of the event.
+     */
+    void end(Object event, long bytes, int replyCode, boolean success);
+}
@@ -0,0 +1,29 @@
+package com.venson.easyftp;
+
+/**
+ * The type of event which is notified to FTPEventListener.
+ *
+ * @author venson
+ */
+public enum FTPEventType {
+
+    /**
+     * Connect to FTP server.
+     */
+    CONNECT,
+
+    /**
+     * Login to FTP server.
+     */
+    LOGIN,
+
+    /**
+     * A control command and its first reply.
+     */
+    COMMAND,
+
+    /**
+     * Transfer the data of a file.
+     */
+    DATA_TRANSFER;
+}
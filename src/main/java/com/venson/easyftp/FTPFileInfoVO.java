@@ -1,5 +1,7 @@
 package com.venson.easyftp;
 
+import org.apache.commons.net.ftp.FTP;
+
 /**
  * The value object with FTP information.
  *
@@ -110,4 +112,18 @@ public class FTPFileInfoVO {
     public void setFileName(String fileName) {
         this.fileName = fileName;
     }
+
+    /**
+     * Get the key of the FTP server, which consists of IP address and port.
+     *
+     * @return The key of the FTP server.
+     */
+    public String getHostKey() {
+
+        if (port == null || port.length() == 0) {
+            return ip + ":" + FTP.DEFAULT_PORT;
+        }
+
+        return ip + ":" + port;
+    }
 }
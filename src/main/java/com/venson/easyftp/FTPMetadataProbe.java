@@ -0,0 +1,340 @@
+package com.venson.easyftp;
+
+import java.io.IOException;
+import java.util.Calendar;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPCommand;
+import org.apache.commons.net.ftp.FTPFile;
+import org.apache.commons.net.ftp.FTPReply;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * FTPMetadataProbe gets the metadata of the remote file over the control connection.
+ * It prefers MLST, then SIZE and MDTM, which are advertised by FEAT, and falls back to LIST
+ * when none of them is supported. The FEAT capabilities are cached for each FTP server.
+ *
+ * @author venson
+ */
+public class FTPMetadataProbe {
+
+    /**
+     * The logger of this class.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(FTPMetadataProbe.class);
+
+    /**
+     * The command to get the file size.
+     */
+    private static final String CMD_SIZE = "SIZE";
+
+    /**
+     * The command to get the checksum with the selected algorithm.
+     */
+    private static final String CMD_HASH = "HASH";
+
+    /**
+     * The command to select the algorithm of HASH.
+     */
+    private static final String CMD_OPTS = "OPTS";
+
+    /**
+     * The length of reply code and the following separator.
+     */
+    private static final int REPLY_TEXT_OFFSET = 4;
+
+    /**
+     * The FEAT capabilities grouped by FTP server.
+     */
+    private final ConcurrentMap<String, Capabilities> capabilities = new ConcurrentHashMap<String, Capabilities>();
+
+    /**
+     * The flag of whether to get the modification time with MDTM.
+     */
+    private boolean fetchModificationTime = false;
+
+    /**
+     * Get the flag of whether to get the modification time with MDTM.
+     *
+     * @return The flag of whether to get the modification time with MDTM.
+     */
+    public boolean isFetchModificationTime() {
+        return fetchModificationTime;
+    }
+
+    /**
+     * Set the flag of whether to get the modification time with MDTM, which costs one more
+     * command when MLST is not supported. Defaults to off.
+     *
+     * @param fetchModificationTime The flag of whether to get the modification time with MDTM.
+     */
+    public void setFetchModificationTime(boolean fetchModificationTime) {
+        this.fetchModificationTime = fetchModificationTime;
+    }
+
+    /**
+     * Get the metadata of the remote file.
+     *
+     * @param ftp The logged-in FTP client.
+     * @param vo The value object with FTP information.
+     * @return The remote file, or null when it does not exist.
+     * @throws IOException
+     */
+    public FTPFile getFile(FTPClient ftp, FTPFileInfoVO vo) throws IOException {
+
+        String path = vo.getFileFullPath();
+        Capabilities caps = getCapabilities(ftp, vo);
+
+        // Use MLST.
+        if (caps.mlst) {
+
+            FTPFile file = ftp.mlistFile(path);
+            if (file != null) {
+                return file;
+            }
+
+            if (ftp.getReplyCode() == FTPReply.FILE_UNAVAILABLE) {
+                return null;
+            }
+
+            logger.debug("MLST is not usable on " + vo.getHostKey() + " .");
+            caps.mlst = false;
+        }
+
+        // Use SIZE and MDTM.
+        if (caps.size) {
+
+            int reply = ftp.sendCommand(CMD_SIZE, path);
+            long size = reply == FTPReply.FILE_STATUS ? parseSize(getReplyText(ftp)) : -1L;
+            if (size >= 0L) {
+
+                FTPFile file = new FTPFile();
+                file.setName(vo.getFileName());
+                file.setType(FTPFile.FILE_TYPE);
+                file.setSize(size);
+
+                if (fetchModificationTime && caps.mdtm
+                        && ftp.sendCommand(FTPCommand.MDTM, path) == FTPReply.FILE_STATUS) {
+
+                    Calendar timestamp = parseModificationTime(getReplyText(ftp));
+                    if (timestamp != null) {
+                        file.setTimestamp(timestamp);
+                    } else {
+                        logger.debug("MDTM is not usable on " + vo.getHostKey() + " .");
+                        caps.mdtm = false;
+                    }
+                }
+
+                return file;
+            }
+
+            if (reply == FTPReply.FILE_UNAVAILABLE) {
+                return null;
+            }
+
+            logger.debug("SIZE is not usable on " + vo.getHostKey() + " .");
+            caps.size = false;
+        }
+
+        // Use LIST.
+        FTPFile[] files = ftp.listFiles(path);
+        if (files.length == 0) {
+            return null;
+        }
+
+        return files[0];
+    }
+
+    /**
+     * Get the checksum of the remote file computed by the FTP server. It prefers HASH when the
+     * algorithm is advertised for it, then the command of the algorithm such as XMD5.
+     *
+     * @param ftp The logged-in FTP client.
+     * @param vo The value object with FTP information.
+     * @param algorithm The algorithm of checksum.
+     * @return The checksum in the reply, or null when the FTP server does not support it.
+     * @throws IOException
+     */
+    public String getChecksum(FTPClient ftp, FTPFileInfoVO vo, ChecksumAlgorithm algorithm) throws IOException {
+
+        String path = vo.getFileFullPath();
+        Capabilities caps = getCapabilities(ftp, vo);
+
+        // Use HASH, which replies "213 <algorithm> <range> <checksum> <file>".
+        if (caps.hashAlgorithms.contains(algorithm.getHashName())) {
+
+            if (FTPReply.isPositiveCompletion(ftp.sendCommand(CMD_OPTS, CMD_HASH + " " + algorithm.getHashName()))
+                    && FTPReply.isPositiveCompletion(ftp.sendCommand(CMD_HASH, path))) {
+
+                String[] tokens = getReplyText(ftp).split(" ");
+                if (tokens.length > 2) {
+                    return tokens[2];
+                }
+            }
+
+            logger.debug("HASH " + algorithm.getHashName() + " is not usable on " + vo.getHostKey() + " .");
+        }
+
+        // Use the command of the algorithm, which replies the checksum first.
+        String command = algorithm.getCommand();
+        if (command != null && caps.features.contains(command)) {
+
+            if (FTPReply.isPositiveCompletion(ftp.sendCommand(command, path))) {
+                return getReplyText(ftp).split(" ")[0];
+            }
+
+            logger.debug(command + " is not usable on " + vo.getHostKey() + " .");
+        }
+
+        return null;
+    }
+
+    /**
+     * Get the FEAT capabilities of the FTP server, and send FEAT when they are not cached.
+     *
+     * @param ftp The logged-in FTP client.
+     * @param vo The value object with FTP information.
+     * @return The FEAT capabilities.
+     * @throws IOException
+     */
+    private Capabilities getCapabilities(FTPClient ftp, FTPFileInfoVO vo) throws IOException {
+
+        Capabilities caps = capabilities.get(vo.getHostKey());
+        if (caps != null) {
+            return caps;
+        }
+
+        caps = new Capabilities();
+
+        if (ftp.features()) {
+
+            // The features are listed one per line between the first and the last line.
+            for (String line : ftp.getReplyStrings()) {
+
+                if (!line.startsWith(" ")) {
+                    continue;
+                }
+
+                String feature = line.trim().toUpperCase();
+                caps.features.add(feature.split(" ")[0]);
+
+                if (feature.startsWith(CMD_HASH + " ")) {
+
+                    // The algorithms are separated by ";", and the selected one is marked by "*".
+                    for (String name : feature.substring(CMD_HASH.length() + 1).split(";")) {
+                        caps.hashAlgorithms.add(name.replace("*", "").trim());
+                    }
+                } else if (feature.startsWith("MLST")) {
+                    caps.mlst = true;
+                } else if (feature.startsWith(CMD_SIZE)) {
+                    caps.size = true;
+                } else if (feature.startsWith("MDTM")) {
+                    caps.mdtm = true;
+                }
+            }
+        }
+
+        Capabilities cached = capabilities.putIfAbsent(vo.getHostKey(), caps);
+
+        return cached == null ? caps : cached;
+    }
+
+    /**
+     * Get the text of the last reply without reply code.
+     *
+     * @param ftp The FTP client.
+     * @return The text of the last reply.
+     */
+    private static String getReplyText(FTPClient ftp) {
+
+        String reply = ftp.getReplyString();
+        if (reply == null || reply.length() < REPLY_TEXT_OFFSET) {
+            return "";
+        }
+
+        return reply.substring(REPLY_TEXT_OFFSET).trim();
+    }
+
+    /**
+     * Parse the file size in the reply of SIZE.
+     *
+     * @param size The file size.
+     * @return The file size, or -1 when it is malformed.
+     */
+    private static long parseSize(String size) {
+
+        try {
+            return Long.parseLong(size);
+        } catch (NumberFormatException e) {
+            logger.debug("Malformed file size: " + size);
+            return -1L;
+        }
+    }
+
+    /**
+     * Parse the modification time in the format of "YYYYMMDDHHMMSS[.sss]" in UTC.
+     *
+     * @param time The modification time.
+     * @return The calendar of the modification time, or null when it is malformed.
+     */
+    private static Calendar parseModificationTime(String time) {
+
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("GMT"));
+        calendar.clear();
+
+        try {
+            calendar.set(Integer.parseInt(time.substring(0, 4)),
+                Integer.parseInt(time.substring(4, 6)) - 1,
+                Integer.parseInt(time.substring(6, 8)),
+                Integer.parseInt(time.substring(8, 10)),
+                Integer.parseInt(time.substring(10, 12)),
+                Integer.parseInt(time.substring(12, 14)));
+        } catch (NumberFormatException e) {
+            logger.debug("Malformed modification time: " + time);
+            return null;
+        } catch (IndexOutOfBoundsException e) {
+            logger.debug("Malformed modification time: " + time);
+            return null;
+        }
+
+        return calendar;
+    }
+
+    /**
+     * The FEAT capabilities of one FTP server. They are turned off when the FTP server replies
+     * unexpectedly to the commands.
+     */
+    private static class Capabilities {
+
+        /**
+         * The flag of whether MLST is supported.
+         */
+        private volatile boolean mlst = false;
+
+        /**
+         * The flag of whether SIZE is supported.
+         */
+        private volatile boolean size = false;
+
+        /**
+         * The flag of whether MDTM is supported.
+         */
+        private volatile boolean mdtm = false;
+
+        /**
+         * The names of advertised features.
+         */
+        private final Set<String> features = new HashSet<String>();
+
+        /**
+         * The names of algorithms supported by HASH.
+         */
+        private final Set<String> hashAlgorithms = new HashSet<String>();
+    }
+}
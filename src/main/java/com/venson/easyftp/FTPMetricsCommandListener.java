@@ -0,0 +1,97 @@
+package com.venson.easyftp;
+
+import java.net.InetAddress;
+
+import org.apache.commons.net.ProtocolCommandEvent;
+import org.apache.commons.net.ProtocolCommandListener;
+import org.apache.commons.net.SocketClient;
+
+/**
+ * The FTP client command listener which pairs each command sent with its first reply, and
+ * records the round trip latency into the metrics registry by FTP server and command. The
+ * later replies of the command, like 226 after 150 of RETR, are ignored. It keeps the
+ * command in flight, so each FTP client has its own listener.
+ *
+ * @author venson
+ */
+public class FTPMetricsCommandListener implements ProtocolCommandListener {
+
+    /**
+     * The registry which the latencies are recorded in.
+     */
+    private final MetricsRegistry registry;
+
+    /**
+     * The command waiting for its reply, null means none.
+     */
+    private volatile String pendingCommand = null;
+
+    /**
+     * The key of FTP server which the pending command was sent to.
+     */
+    private volatile String pendingHostKey = null;
+
+    /**
+     * The time when the pending command was sent.(nanosecond)
+     */
+    private volatile long sentTime = 0L;
+
+    /**
+     * Constructor method.
+     *
+     * @param registry The registry which the latencies are recorded in.
+     */
+    public FTPMetricsCommandListener(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Keep the command and the time when it is sent.
+     *
+     * @param event The event of FTP client.
+     */
+    public void protocolCommandSent(ProtocolCommandEvent event) {
+
+        if (event == null || event.getCommand() == null) {
+            return;
+        }
+
+        sentTime = System.nanoTime();
+        pendingHostKey = getHostKey(event.getSource());
+        pendingCommand = event.getCommand();
+    }
+
+    /**
+     * Record the latency of the pending command when its first reply is received.
+     *
+     * @param event The event of FTP client.
+     */
+    public void protocolReplyReceived(ProtocolCommandEvent event) {
+
+        String command = pendingCommand;
+        if (command == null) {
+            return;
+        }
+
+        pendingCommand = null;
+        registry.recordCommand(pendingHostKey, command, (System.nanoTime() - sentTime) / 1000L);
+    }
+
+    /**
+     * Get the key of FTP server which the FTP client is connected to.
+     *
+     * @param source The FTP client.
+     * @return The key of FTP server, or null when it is unknown.
+     */
+    private static String getHostKey(Object source) {
+
+        if (!(source instanceof SocketClient) || !((SocketClient) source).isConnected()) {
+            return null;
+        }
+
+        SocketClient client = (SocketClient) source;
+        InetAddress address = client.getRemoteAddress();
+
+        return address == null ? null : address.getHostAddress() + ":" + client.getRemotePort();
+    }
+}
@@ -0,0 +1,167 @@
+package com.venson.easyftp;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * LatencyHistogram counts the latencies into log-linear buckets like HdrHistogram: each power
+ * of 2 is split into 8 linear sub buckets, so that the percentiles are known within 12.5% at
+ * a fixed size. It is thread safe without lock, and the unit of latency is the one recorded.
+ *
+ * @author venson
+ */
+public class LatencyHistogram {
+
+    /**
+     * The bits of sub buckets in each power of 2.
+     */
+    private static final int SUB_BUCKET_BITS = 3;
+
+    /**
+     * The count of sub buckets in each power of 2.
+     */
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * The count of buckets, which covers all positive long values.
+     */
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    /**
+     * The counts of latencies in each bucket.
+     */
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+
+    /**
+     * The count of latencies.
+     */
+    private final AtomicLong count = new AtomicLong();
+
+    /**
+     * The sum of latencies.
+     */
+    private final AtomicLong sum = new AtomicLong();
+
+    /**
+     * The max latency.
+     */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Record the latency.
+     *
+     * @param latency The latency.
+     */
+    public void record(long latency) {
+
+        long value = Math.max(latency, 0L);
+        buckets.incrementAndGet(getBucketIndex(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+
+        long current;
+        while ((current = max.get()) < value && !max.compareAndSet(current, value)) {
+            // Retry until the max is updated by this or a larger latency.
+        }
+    }
+
+    /**
+     * Get the count of latencies.
+     *
+     * @return The count of latencies.
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * Get the sum of latencies.
+     *
+     * @return The sum of latencies.
+     */
+    public long getSum() {
+        return sum.get();
+    }
+
+    /**
+     * Get the max latency.
+     *
+     * @return The max latency.
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * Get the mean latency.
+     *
+     * @return The mean latency, or 0 when nothing is recorded.
+     */
+    public double getMean() {
+        long n = count.get();
+        return n == 0 ? 0.0d : (double) sum.get() / n;
+    }
+
+    /**
+     * Get the upper bound of the bucket which the percentile falls in.
+     *
+     * @param percentile The percentile, between 0 and 100.
+     * @return The upper bound of the percentile, or 0 when nothing is recorded.
+     */
+    public long getPercentile(double percentile) {
+
+        long n = count.get();
+        if (n == 0) {
+            return 0L;
+        }
+
+        long rank = Math.max((long) Math.ceil(n * percentile / 100.0d), 1L);
+        long seen = 0L;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(getBucketUpperBound(i), max.get());
+            }
+        }
+
+        return max.get();
+    }
+
+    /**
+     * Get the index of the bucket which the value falls in. The values under the count of sub
+     * buckets have their own buckets, and the others fall in the sub bucket of their highest bits.
+     *
+     * @param value The value, not negative.
+     * @return The index of the bucket.
+     */
+    static int getBucketIndex(long value) {
+
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + sub;
+    }
+
+    /**
+     * Get the largest value which falls in the bucket.
+     *
+     * @param index The index of the bucket.
+     * @return The upper bound of the bucket.
+     */
+    static long getBucketUpperBound(int index) {
+
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long sub = index % SUB_BUCKET_COUNT;
+
+        return ((SUB_BUCKET_COUNT + sub + 1) << shift) - 1;
+    }
+}
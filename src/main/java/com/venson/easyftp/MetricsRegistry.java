@@ -0,0 +1,255 @@
+package com.venson.easyftp;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * MetricsRegistry aggregates the metrics of file transfers by FTP server, with the counters of
+ * transfers, bytes and retries, the latency histograms of each phase, and the latency
+ * histograms of each FTP command. It is shared by the FTP clients.
+ *
+ * @author venson
+ */
+public class MetricsRegistry {
+
+    /**
+     * The metrics grouped by FTP server.
+     */
+    private final ConcurrentMap<String, HostMetrics> hosts = new ConcurrentHashMap<String, HostMetrics>();
+
+    /**
+     * Record the metrics of a finished file transfer.
+     *
+     * @param hostKey The key of FTP server.
+     * @param metrics The metrics of file transfer.
+     * @param success The result of transfer.
+     */
+    public void record(String hostKey, TransferMetrics metrics, boolean success) {
+
+        HostMetrics host = getHostMetrics(hostKey);
+        host.transferCount.incrementAndGet();
+        if (success) {
+            host.successCount.incrementAndGet();
+        } else {
+            host.failureCount.incrementAndGet();
+        }
+        host.retryCount.addAndGet(metrics.getRetryTimes());
+        host.byteCount.addAndGet(metrics.getBytesTransferred());
+        host.elapsedTime.record(metrics.getElapsedTime());
+        for (TransferPhase phase : TransferPhase.values()) {
+            host.phaseTimes.get(phase).record(metrics.getPhaseTime(phase));
+        }
+    }
+
+    /**
+     * Record the round trip latency of a FTP command.
+     *
+     * @param hostKey The key of FTP server.
+     * @param command The FTP command, like RETR.
+     * @param latency The latency from the command sent to its first reply.(microsecond)
+     */
+    public void recordCommand(String hostKey, String command, long latency) {
+        getHostMetrics(hostKey).getCommandTime(command).record(latency);
+    }
+
+    /**
+     * Get the keys of FTP servers which have been recorded.
+     *
+     * @return The keys of FTP servers.
+     */
+    public Set<String> getHostKeys() {
+        return Collections.unmodifiableSet(hosts.keySet());
+    }
+
+    /**
+     * Get the metrics of the FTP server, and create an empty one when it does not exist.
+     *
+     * @param hostKey The key of FTP server.
+     * @return The metrics of FTP server.
+     */
+    public HostMetrics getHostMetrics(String hostKey) {
+
+        String key = String.valueOf(hostKey);
+        HostMetrics host = hosts.get(key);
+        if (host != null) {
+            return host;
+        }
+
+        host = new HostMetrics();
+        HostMetrics existing = hosts.putIfAbsent(key, host);
+
+        return existing == null ? host : existing;
+    }
+
+    /**
+     * Clear the metrics of all FTP servers.
+     */
+    public void clear() {
+        hosts.clear();
+    }
+
+    /**
+     * The metrics of one FTP server.
+     */
+    public static class HostMetrics {
+
+        /**
+         * The count of file transfers.
+         */
+        private final AtomicLong transferCount = new AtomicLong();
+
+        /**
+         * The count of succeeded file transfers.
+         */
+        private final AtomicLong successCount = new AtomicLong();
+
+        /**
+         * The count of failed file transfers.
+         */
+        private final AtomicLong failureCount = new AtomicLong();
+
+        /**
+         * The count of retries.
+         */
+        private final AtomicLong retryCount = new AtomicLong();
+
+        /**
+         * The count of bytes moved.
+         */
+        private final AtomicLong byteCount = new AtomicLong();
+
+        /**
+         * The histogram of elapsed time of file transfers.
+         */
+        private final LatencyHistogram elapsedTime = new LatencyHistogram();
+
+        /**
+         * The histograms of time of each phase.
+         */
+        private final Map<TransferPhase, LatencyHistogram> phaseTimes =
+            new EnumMap<TransferPhase, LatencyHistogram>(TransferPhase.class);
+
+        /**
+         * The histograms of round trip latency of each FTP command.
+         */
+        private final ConcurrentMap<String, LatencyHistogram> commandTimes =
+            new ConcurrentHashMap<String, LatencyHistogram>();
+
+        /**
+         * Constructor method.
+         */
+        HostMetrics() {
+            for (TransferPhase phase : TransferPhase.values()) {
+                phaseTimes.put(phase, new LatencyHistogram());
+            }
+        }
+
+        /**
+         * Get the count of file transfers.
+         *
+         * @return The count of file transfers.
+         */
+        public long getTransferCount() {
+            return transferCount.get();
+        }
+
+        /**
+         * Get the count of succeeded file transfers.
+         *
+         * @return The count of succeeded file transfers.
+         */
+        public long getSuccessCount() {
+            return successCount.get();
+        }
+
+        /**
+         * Get the count of failed file transfers.
+         *
+         * @return The count of failed file transfers.
+         */
+        public long getFailureCount() {
+            return failureCount.get();
+        }
+
+        /**
+         * Get the count of retries.
+         *
+         * @return The count of retries.
+         */
+        public long getRetryCount() {
+            return retryCount.get();
+        }
+
+        /**
+         * Get the count of bytes moved.
+         *
+         * @return The count of bytes moved.
+         */
+        public long getByteCount() {
+            return byteCount.get();
+        }
+
+        /**
+         * Get the throughput of the data transfer phase.(byte/second)
+         *
+         * @return The throughput of the data transfer phase.(byte/second)
+         */
+        public long getThroughput() {
+            return byteCount.get() * 1000L / Math.max(phaseTimes.get(TransferPhase.TRANSFER).getSum(), 1L);
+        }
+
+        /**
+         * Get the histogram of elapsed time of file transfers.
+         *
+         * @return The histogram of elapsed time.
+         */
+        public LatencyHistogram getElapsedTime() {
+            return elapsedTime;
+        }
+
+        /**
+         * Get the histogram of time of the phase.
+         *
+         * @param phase The phase of file transfer.
+         * @return The histogram of time of the phase.
+         */
+        public LatencyHistogram getPhaseTime(TransferPhase phase) {
+            return phaseTimes.get(phase);
+        }
+
+        /**
+         * Get the FTP commands which have been recorded.
+         *
+         * @return The FTP commands.
+         */
+        public Set<String> getCommands() {
+            return Collections.unmodifiableSet(commandTimes.keySet());
+        }
+
+        /**
+         * Get the histogram of round trip latency of the FTP command, and create an empty one
+         * when it does not exist.(microsecond)
+         *
+         * @param command The FTP command, like RETR.
+         * @return The histogram of round trip latency.
+         */
+        public LatencyHistogram getCommandTime(String command) {
+
+            String key = String.valueOf(command).toUpperCase();
+            LatencyHistogram histogram = commandTimes.get(key);
+            if (histogram != null) {
+                return histogram;
+            }
+
+            histogram = new LatencyHistogram();
+            LatencyHistogram existing = commandTimes.putIfAbsent(key, histogram);
+
+            return existing == null ? histogram : existing;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.venson.easyftp;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * RetryBudget caps the retries to each FTP server to a ratio of its file transfers, and is
+ * shared by the FTP clients. Each file transfer deposits the ratio into the budget of its FTP
+ * server, and each retry withdraws one. The budget starts full and is capped to the max
+ * count of retries in a burst, so that an outage can not drain more than that.
+ *
+ * @author venson
+ */
+public class RetryBudget {
+
+    /**
+     * The budgets grouped by FTP server.
+     */
+    private final ConcurrentMap<String, Budget> budgets = new ConcurrentHashMap<String, Budget>();
+
+    /**
+     * The ratio of retries to file transfers.
+     */
+    private double retryRatio = 0.1d;
+
+    /**
+     * The max count of retries in a burst.
+     */
+    private int maxBurst = 10;
+
+    /**
+     * Get the ratio of retries to file transfers.
+     *
+     * @return The ratio of retries to file transfers.
+     */
+    public double getRetryRatio() {
+        return retryRatio;
+    }
+
+    /**
+     * Set the ratio of retries to file transfers.
+     *
+     * @param retryRatio The ratio of retries to file transfers.
+     */
+    public void setRetryRatio(double retryRatio) {
+        this.retryRatio = retryRatio;
+    }
+
+    /**
+     * Get the max count of retries in a burst.
+     *
+     * @return The max count of retries in a burst.
+     */
+    public int getMaxBurst() {
+        return maxBurst;
+    }
+
+    /**
+     * Set the max count of retries in a burst.
+     *
+     * @param maxBurst The max count of retries in a burst.
+     */
+    public void setMaxBurst(int maxBurst) {
+        this.maxBurst = maxBurst;
+    }
+
+    /**
+     * Record a file transfer to the FTP server.
+     *
+     * @param hostKey The key of FTP server.
+     */
+    public void recordTransfer(String hostKey) {
+
+        Budget budget = getBudget(hostKey);
+        synchronized (budget) {
+            budget.balance = Math.min(budget.balance + retryRatio, maxBurst);
+        }
+    }
+
+    /**
+     * Withdraw a retry to the FTP server from the budget.
+     *
+     * @param hostKey The key of FTP server.
+     * @return False when the budget is exhausted.
+     */
+    public boolean tryAcquireRetry(String hostKey) {
+
+        Budget budget = getBudget(hostKey);
+        synchronized (budget) {
+
+            if (budget.balance < 1.0d) {
+                return false;
+            }
+
+            budget.balance -= 1.0d;
+            return true;
+        }
+    }
+
+    /**
+     * Get the count of retries left to the FTP server.
+     *
+     * @param hostKey The key of FTP server.
+     * @return The count of retries left.
+     */
+    public int getAvailableRetries(String hostKey) {
+
+        Budget budget = getBudget(hostKey);
+        synchronized (budget) {
+            return (int) budget.balance;
+        }
+    }
+
+    /**
+     * Get the budget of the FTP server, and create a full one when it does not exist.
+     *
+     * @param hostKey The key of FTP server.
+     * @return The budget.
+     */
+    private Budget getBudget(String hostKey) {
+
+        String key = String.valueOf(hostKey);
+        Budget budget = budgets.get(key);
+        if (budget != null) {
+            return budget;
+        }
+
+        budget = new Budget(maxBurst);
+        Budget existing = budgets.putIfAbsent(key, budget);
+
+        return existing == null ? budget : existing;
+    }
+
+    /**
+     * The budget of one FTP server.
+     */
+    private static class Budget {
+
+        /**
+         * The count of retries left, which may be fractional.
+         */
+        private double balance;
+
+        /**
+         * Constructor method.
+         *
+         * @param balance The count of retries left.
+         */
+        Budget(double balance) {
+            this.balance = balance;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.venson.easyftp;
+
+/**
+ * The policy which decides whether and when to retry a failed file transfer.
+ *
+ * @author venson
+ */
+public interface RetryPolicy {
+
+    /**
+     * Get the wait time before the retry.(millisecond)
+     *
+     * @param retryTimes The count of retry time including this one, which starts from 1.
+     * @param elapsedTime The elapsed time since the file transfer started.(millisecond)
+     * @return The wait time before the retry, or a negative value to give up.(millisecond)
+     */
+    long getRetryDelay(int retryTimes, long elapsedTime);
+}
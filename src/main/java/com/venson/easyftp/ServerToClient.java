@@ -7,9 +7,24 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.net.ftp.FTP;
 import org.apache.commons.net.ftp.FTPClient;
+import org.apache.commons.net.ftp.FTPCommand;
 import org.apache.commons.net.ftp.FTPFile;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -27,6 +42,16 @@ public class ServerToClient extends AbstractFTPClient {
      */
     private static final Logger logger = LoggerFactory.getLogger(ServerToClient.class);
 
+    /**
+     * The buffer size of segmented download.(64KB)
+     */
+    private static final int SEGMENT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The pool of direct buffers shared by downloads.
+     */
+    private static final DirectBufferPool BUFFER_POOL = new DirectBufferPool(16);
+
     /**
      * The FTP client.
      */
@@ -47,6 +72,66 @@ public class ServerToClient extends AbstractFTPClient {
      */
     private FTPTransferMode transferMode = FTPTransferMode.DOWNLOAD;
 
+    /**
+     * The flag of whether the FTP client is borrowed from the connection pool and has logged in.
+     */
+    private boolean pooledSession = false;
+
+    /**
+     * The count of segments downloaded in parallel.(1)
+     */
+    private int downloadSegments = 1;
+
+    /**
+     * The min size of each download segment.(1MB)
+     */
+    private long minSegmentSize = 1024L * 1024L;
+
+    /**
+     * The size of direct buffer to download through file channel, 0 means download through stream.
+     */
+    private int downloadBufferSize = 0;
+
+    /**
+     * The flag of whether to preallocate the local file to the remote size.
+     */
+    private boolean preallocate = false;
+
+    /**
+     * The flag of whether to upload with FileChannel.transferTo.
+     */
+    private boolean zeroCopyUpload = false;
+
+    /**
+     * The size of the tail of the local file verified before resume, 0 means no verification.
+     */
+    private long resumeVerifyWindow = 0L;
+
+    /**
+     * The algorithm of checksum computed during transfer, null means no checksum.
+     */
+    private ChecksumAlgorithm checksumAlgorithm = null;
+
+    /**
+     * The flag of whether to verify the checksum with the one computed by FTP server.
+     */
+    private boolean verifyChecksum = false;
+
+    /**
+     * The checksum of the last transferred file.
+     */
+    private String checksum = null;
+
+    /**
+     * The bandwidth limiter shared by FTP clients, null means no limit.
+     */
+    private BandwidthLimiter bandwidthLimiter = null;
+
+    /**
+     * The throttle of the current transfer, null means no limit.
+     */
+    private BandwidthLimiter.Throttle throttle = null;
+
     /**
      * Set the FTP transfer mode.(download or upload)
      */
@@ -61,12 +146,218 @@ public class ServerToClient extends AbstractFTPClient {
         return transferMode;
     }
 
+    /**
+     * Get the count of segments downloaded in parallel.
+     *
+     * @return The count of segments downloaded in parallel.
+     */
+    public int getDownloadSegments() {
+        return downloadSegments;
+    }
+
+    /**
+     * Set the count of segments downloaded in parallel, each segment uses its own
+     * connection to FTP server. Defaults to 1, which means no segment.
+     *
+     * @param downloadSegments The count of segments downloaded in parallel.
+     */
+    public void setDownloadSegments(int downloadSegments) {
+        this.downloadSegments = downloadSegments;
+    }
+
+    /**
+     * Get the min size of each download segment.(byte)
+     *
+     * @return The min size of each download segment.(byte)
+     */
+    public long getMinSegmentSize() {
+        return minSegmentSize;
+    }
+
+    /**
+     * Set the min size of each download segment.(byte)
+     *
+     * @param minSegmentSize The min size of each download segment.(byte)
+     */
+    public void setMinSegmentSize(long minSegmentSize) {
+        this.minSegmentSize = minSegmentSize;
+    }
+
+    /**
+     * Get the size of direct buffer to download through file channel.(byte)
+     *
+     * @return The size of direct buffer.(byte)
+     */
+    public int getDownloadBufferSize() {
+        return downloadBufferSize;
+    }
+
+    /**
+     * Set the size of direct buffer to download through file channel, which reads the data
+     * connection into a pooled direct buffer and writes it to the local file without copying
+     * through byte arrays. Defaults to 0, which means download through stream.(byte)
+     *
+     * @param downloadBufferSize The size of direct buffer.(byte)
+     */
+    public void setDownloadBufferSize(int downloadBufferSize) {
+        this.downloadBufferSize = downloadBufferSize;
+    }
+
+    /**
+     * Get the flag of whether to preallocate the local file to the remote size.
+     *
+     * @return The flag of whether to preallocate the local file.
+     */
+    public boolean isPreallocate() {
+        return preallocate;
+    }
+
+    /**
+     * Set the flag of whether to preallocate the local file to the remote size when download
+     * through file channel. It is skipped in resume broken transfer mode, where the size of the
+     * local file tells how much has been downloaded. Defaults to off.
+     *
+     * @param preallocate The flag of whether to preallocate the local file.
+     */
+    public void setPreallocate(boolean preallocate) {
+        this.preallocate = preallocate;
+    }
+
+    /**
+     * Get the flag of whether to upload with FileChannel.transferTo.
+     *
+     * @return The flag of whether to upload with FileChannel.transferTo.
+     */
+    public boolean isZeroCopyUpload() {
+        return zeroCopyUpload;
+    }
+
+    /**
+     * Set the flag of whether to upload with FileChannel.transferTo, which lets the operating
+     * system send the local file to the data connection from the resume broken point without
+     * copying it through the heap. It falls back to stream when the checksum is computed.
+     * Defaults to off.
+     *
+     * @param zeroCopyUpload The flag of whether to upload with FileChannel.transferTo.
+     */
+    public void setZeroCopyUpload(boolean zeroCopyUpload) {
+        this.zeroCopyUpload = zeroCopyUpload;
+    }
+
+    /**
+     * Get the size of the tail of the local file verified before resume.(byte)
+     *
+     * @return The size of the tail of the local file verified before resume.(byte)
+     */
+    public long getResumeVerifyWindow() {
+        return resumeVerifyWindow;
+    }
+
+    /**
+     * Set the size of the tail of the local file verified before resume. The tail is compared
+     * with the same range read again from FTP server, and the local file is cut at the first
+     * different byte, so that a corrupted tail left by a crash is downloaded again. Defaults to
+     * 0, which means no verification.(byte)
+     *
+     * @param resumeVerifyWindow The size of the tail of the local file verified before resume.(byte)
+     */
+    public void setResumeVerifyWindow(long resumeVerifyWindow) {
+        this.resumeVerifyWindow = resumeVerifyWindow;
+    }
+
+    /**
+     * Get the bandwidth limiter shared by FTP clients.
+     *
+     * @return The bandwidth limiter.
+     */
+    public BandwidthLimiter getBandwidthLimiter() {
+        return bandwidthLimiter;
+    }
+
+    /**
+     * Set the bandwidth limiter shared by FTP clients. Defaults to null, which means no limit.
+     *
+     * @param bandwidthLimiter The bandwidth limiter.
+     */
+    public void setBandwidthLimiter(BandwidthLimiter bandwidthLimiter) {
+        this.bandwidthLimiter = bandwidthLimiter;
+    }
+
+    /**
+     * Get the algorithm of checksum computed during transfer.
+     *
+     * @return The algorithm of checksum.
+     */
+    public ChecksumAlgorithm getChecksumAlgorithm() {
+        return checksumAlgorithm;
+    }
+
+    /**
+     * Set the algorithm of checksum computed during transfer. The checksum covers the whole
+     * file, and only the part already transferred is read again when resume broken transfer.
+     * Defaults to null, which means no checksum.
+     *
+     * @param checksumAlgorithm The algorithm of checksum.
+     */
+    public void setChecksumAlgorithm(ChecksumAlgorithm checksumAlgorithm) {
+        this.checksumAlgorithm = checksumAlgorithm;
+    }
+
+    /**
+     * Get the flag of whether to verify the checksum with the one computed by FTP server.
+     *
+     * @return The flag of whether to verify the checksum.
+     */
+    public boolean isVerifyChecksum() {
+        return verifyChecksum;
+    }
+
+    /**
+     * Set the flag of whether to verify the checksum with the one computed by FTP server,
+     * which is skipped when FEAT advertises neither HASH nor the command of the algorithm.
+     * The transferred file is deleted when they do not match. Defaults to off.
+     *
+     * @param verifyChecksum The flag of whether to verify the checksum.
+     */
+    public void setVerifyChecksum(boolean verifyChecksum) {
+        this.verifyChecksum = verifyChecksum;
+    }
+
+    /**
+     * Get the checksum of the last transferred file in lower case hex.
+     *
+     * @return The checksum, or null when it is not computed.
+     */
+    public String getChecksum() {
+        return checksum;
+    }
+
     /**
      * Constructor method to initial the FTP client and command listener logger.
      */
     public ServerToClient() {
-        ftp = new FTPClient();
-        ftp.addProtocolCommandListener(new FTPLogCommandListener(logger));
+        ftp = createFTPClient();
+    }
+
+    /**
+     * Create the FTP client with command listener logger. ChannelFTPClient is created only
+     * when download through file channel or zero copy upload is enabled.
+     *
+     * @return The FTP client.
+     */
+    private FTPClient createFTPClient() {
+        FTPClient client = isChannelEnabled() ? new ChannelFTPClient() : new FTPClient();
+        client.addProtocolCommandListener(new FTPLogCommandListener(logger));
+        return client;
+    }
+
+    /**
+     * Determine whether download through file channel or zero copy upload is enabled.
+     *
+     * @return The result of whether the data connection is used through channel.
+     */
+    private boolean isChannelEnabled() {
+        return downloadBufferSize > 0 || zeroCopyUpload;
     }
 
     /**
@@ -78,14 +369,45 @@ public class ServerToClient extends AbstractFTPClient {
      */
     public boolean transfer(String remote, String local) {
 
+        prepare(remote, local);
+
+        // Do transfer flow.
+        return doTransferFlow();
+    }
+
+    /**
+     * Prepare the FTP information and local file for transfer.
+     *
+     * @param remote The FTP file URL.
+     * @param local The local file URL.
+     */
+    void prepare(String remote, String local) {
+
         // Convert FTP file URL to value object.
         ftpVO = convertFTPUrlToVO(remote);
 
         // Create local file.
         localFile = new File(local);
+    }
 
-        // Do transfer flow.
-        return doTransferFlow();
+    /**
+     * Get the key of FTP server which the retries are counted to.
+     *
+     * @return The key of FTP server.
+     */
+    @Override
+    protected String getHostKey() {
+        return ftpVO == null ? null : ftpVO.getHostKey();
+    }
+
+    /**
+     * Get the path of the remote file, which is shown by the monitor.
+     *
+     * @return The path of the remote file.
+     */
+    @Override
+    protected String getTransferPath() {
+        return ftpVO == null ? null : ftpVO.getFileFullPath();
     }
 
     /**
@@ -97,6 +419,23 @@ public class ServerToClient extends AbstractFTPClient {
     @Override
     protected boolean connect() throws IOException {
 
+        // Reuse the logged-in FTP client from the connection pool.
+        FTPClientPool pool = getConnectionPool();
+        if (pool != null) {
+            FTPClient pooled = pool.borrow(ftpVO);
+            if (pooled != null) {
+                ftp = pooled;
+                pooledSession = true;
+                acquirePermit(ftp, ftpVO);
+                return true;
+            }
+        }
+
+        // The settings may be changed after the FTP client was created.
+        if (isChannelEnabled() != (ftp instanceof ChannelFTPClient) && !ftp.isConnected()) {
+            ftp = createFTPClient();
+        }
+
         if (!connect(ftp, ftpVO)) {
             logger.error("Failed to connect to server.");
             return false;
@@ -114,7 +453,12 @@ public class ServerToClient extends AbstractFTPClient {
     @Override
     protected boolean login() throws IOException {
 
-        if (!ftp.login(ftpVO.getUserName(), ftpVO.getPassword())) {
+        // The FTP client from the connection pool has logged in.
+        if (pooledSession) {
+            return true;
+        }
+
+        if (!login(ftp, ftpVO)) {
             logger.error("Cannot login to server1.");
             return false;
         }
@@ -131,6 +475,12 @@ public class ServerToClient extends AbstractFTPClient {
     @Override
     protected boolean doTransfer() throws IOException {
 
+        checksum = null;
+
+        // The throttle is shared by the segments of the transfer.
+        BandwidthLimiter limiter = bandwidthLimiter;
+        throttle = limiter == null ? null : limiter.newThrottle(getHostKey());
+
         if (transferMode == FTPTransferMode.DOWNLOAD) {
 
             return download();
@@ -161,8 +511,8 @@ public class ServerToClient extends AbstractFTPClient {
             ftp.enterLocalPassiveMode();
 
             // Check whether the remote file exists.
-            FTPFile[] files = ftp.listFiles(ftpVO.getFileFullPath());
-            if (files.length == 0) {
+            FTPFile remoteFile = probeFile(ftp, ftpVO);
+            if (remoteFile == null) {
                 logger.error("Remote file does not exist.");
                 return false;
             }
@@ -174,7 +524,7 @@ public class ServerToClient extends AbstractFTPClient {
                 if (isResumeBroken()) {
 
                     long localSize = localFile.length();
-                    long remoteSize = files[0].getSize();
+                    long remoteSize = remoteFile.getSize();
 
                     // When file size unreasonable.
                     if (localSize >= remoteSize) {
@@ -183,6 +533,14 @@ public class ServerToClient extends AbstractFTPClient {
 
                     } else {
 
+                        // Verify the tail of the local file, and cut the different part.
+                        if (resumeVerifyWindow > 0) {
+                            localSize = verifyResumeTail(localSize);
+                            if (localSize < 0) {
+                                return false;
+                            }
+                        }
+
                         // Set resume broken point.
                         ftp.setRestartOffset(localSize);
                     }
@@ -211,15 +569,431 @@ public class ServerToClient extends AbstractFTPClient {
                 }
             }
 
+            // Do segmented download process when the rest of the file is large enough.
+            if (downloadSegments > 1 && minSegmentSize > 0) {
+
+                long localSize = localFile.length();
+                long remoteSize = remoteFile.getSize();
+
+                if (remoteSize - localSize >= minSegmentSize * 2) {
+
+                    if (!downloadSegmented(localSize, remoteSize)) {
+                        return false;
+                    }
+
+                    // The segments arrive out of order, so the checksum is computed afterwards.
+                    return verifyDownload(createChecksum(true));
+                }
+            }
+
+            // Do download process through file channel.
+            if (downloadBufferSize > 0 && ftp instanceof ChannelFTPClient) {
+
+                TransferChecksum digest = createChecksum(true);
+                if (!downloadWithChannel(localFile.length(), remoteFile.getSize(), digest)) {
+                    return false;
+                }
+
+                return verifyDownload(digest);
+            }
+
             // Do download process.
+            TransferChecksum digest = createChecksum(true);
             output = new FileOutputStream(localFile, true);
-            return ftp.retrieveFile(ftpVO.getFileFullPath(), output);
+            if (digest != null) {
+                output = new ChecksumOutputStream(output, digest);
+            }
+            if (throttle != null) {
+                output = new ThrottledOutputStream(output, throttle);
+            }
+            if (getMetrics() != null) {
+                output = new CountingOutputStream(output, getMetrics());
+            }
+            if (!ftp.retrieveFile(ftpVO.getFileFullPath(), output)) {
+                return false;
+            }
+
+            closeQuietly(output);
+            output = null;
+
+            return verifyDownload(digest);
 
         } finally {
             closeQuietly(output);
         }
     }
 
+    /**
+     * The download process through file channel, which reads the data connection into a
+     * pooled direct buffer and writes it at the position of the local file.
+     *
+     * @param offset The size of the local file.
+     * @param remoteSize The size of the remote file.
+     * @param digest The checksum updated with the downloaded data, or null.
+     * @return The result of download.
+     * @throws IOException
+     */
+    private boolean downloadWithChannel(long offset, long remoteSize, TransferChecksum digest) throws IOException {
+
+        ChannelFTPClient client = (ChannelFTPClient) ftp;
+        RandomAccessFile file = new RandomAccessFile(localFile, "rw");
+        ByteBuffer buffer = BUFFER_POOL.acquire(downloadBufferSize);
+        Socket socket = null;
+        long position = offset;
+        boolean preallocated = false;
+        TransferMetrics metrics = getMetrics();
+
+        try {
+
+            FileChannel channel = file.getChannel();
+
+            // Reserve the disk space at once, the rest is cut when the download ends.
+            if (preallocate && !isResumeBroken() && remoteSize > offset) {
+                file.setLength(remoteSize);
+                preallocated = true;
+            }
+
+            socket = client.openDataSocket(FTPCommand.RETR, ftpVO.getFileFullPath());
+            if (socket == null) {
+                logger.error("Cannot retrieve remote file.");
+                return false;
+            }
+
+            // The socket channel ignores the timeout, so read through stream when it is set.
+            ReadableByteChannel source = socket.getChannel();
+            if (source == null || client.getDataTimeout() > 0) {
+                source = Channels.newChannel(socket.getInputStream());
+            }
+
+            while (source.read(buffer) != -1) {
+
+                buffer.flip();
+                if (throttle != null) {
+                    throttle.acquire(buffer.remaining());
+                }
+                if (metrics != null) {
+                    metrics.addBytes(buffer.remaining());
+                }
+                if (digest != null) {
+                    digest.update(buffer.duplicate());
+                }
+
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+                buffer.clear();
+            }
+
+            socket.close();
+            socket = null;
+
+            return client.completePendingCommand();
+
+        } finally {
+
+            closeQuietly(socket);
+
+            // Keep only the downloaded part, so that it can be resumed correctly.
+            if (preallocated) {
+                file.setLength(position);
+            }
+
+            BUFFER_POOL.release(buffer);
+            closeQuietly(file);
+        }
+    }
+
+    /**
+     * Verify the tail of the local file with the same range of the remote file, and cut the
+     * local file at the first different byte.
+     *
+     * @param localSize The size of the local file.
+     * @return The size of the verified local file, or -1 when the remote file cannot be read.
+     * @throws IOException
+     */
+    private long verifyResumeTail(long localSize) throws IOException {
+
+        long start = localSize - Math.min(resumeVerifyWindow, localSize);
+        long verified = start;
+
+        RandomAccessFile file = new RandomAccessFile(localFile, "rw");
+        try {
+
+            FileChannel channel = file.getChannel();
+
+            // Read the same range from FTP server.
+            ftp.setRestartOffset(start);
+            InputStream input = ftp.retrieveFileStream(ftpVO.getFileFullPath());
+            if (input == null) {
+                logger.error("Cannot retrieve remote file to verify local file.");
+                return -1L;
+            }
+
+            try {
+
+                byte[] buffer = new byte[SEGMENT_BUFFER_SIZE];
+                ByteBuffer tail = ByteBuffer.allocate(SEGMENT_BUFFER_SIZE);
+                boolean same = true;
+                while (same && verified < localSize) {
+
+                    int read = input.read(buffer, 0, (int) Math.min(buffer.length, localSize - verified));
+                    if (read == -1) {
+                        break;
+                    }
+
+                    // Read the same range of the local file without changing the file position.
+                    tail.clear();
+                    tail.limit(read);
+                    while (tail.hasRemaining()) {
+                        if (channel.read(tail, verified + tail.position()) == -1) {
+                            break;
+                        }
+                    }
+                    tail.flip();
+
+                    for (int i = 0; i < tail.limit() && same; i++) {
+                        same = buffer[i] == tail.get(i);
+                        if (same) {
+                            verified++;
+                        }
+                    }
+                }
+
+            } finally {
+
+                // Abort the rest of the file by closing the data connection.
+                closeQuietly(input);
+            }
+
+            // The server replies the failure of transfer when it is aborted, so ignore the reply.
+            ftp.completePendingCommand();
+
+            if (verified < localSize) {
+                logger.warn("Local file differs from remote file at " + verified + " , and is cut there.");
+                channel.truncate(verified);
+            }
+
+        } finally {
+            closeQuietly(file);
+        }
+
+        return verified;
+    }
+
+    /**
+     * The segmented download process, which splits the rest of the file into segments and
+     * downloads them in parallel. The first segment uses the current connection, and the
+     * others use their own connections.
+     *
+     * @param offset The size of the local file.
+     * @param remoteSize The size of the remote file.
+     * @return The result of download.
+     * @throws IOException
+     */
+    private boolean downloadSegmented(long offset, long remoteSize) throws IOException {
+
+        // Split the rest of the file.
+        long remaining = remoteSize - offset;
+        int count = (int) Math.min(downloadSegments, remaining / minSegmentSize);
+        long segmentSize = remaining / count;
+
+        List<DownloadSegment> segments = new ArrayList<DownloadSegment>();
+        for (int i = 0; i < count; i++) {
+            long start = offset + i * segmentSize;
+            long end = (i == count - 1) ? remoteSize : start + segmentSize;
+            segments.add(new DownloadSegment(start, end, end < remoteSize));
+        }
+
+        RandomAccessFile file = null;
+        ExecutorService executor = Executors.newFixedThreadPool(count - 1);
+        try {
+
+            file = new RandomAccessFile(localFile, "rw");
+            final FileChannel channel = file.getChannel();
+
+            // Download the other segments with their own connections.
+            List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+            for (final DownloadSegment segment : segments.subList(1, count)) {
+                futures.add(executor.submit(new Callable<Boolean>() {
+                    public Boolean call() throws IOException {
+                        return downloadSegmentWithNewConnection(segment, channel);
+                    }
+                }));
+            }
+
+            // Download the first segment with the current connection.
+            boolean result = false;
+            try {
+                result = downloadSegment(ftp, segments.get(0), channel);
+            } catch (IOException e) {
+                logger.error("Failed to download segment at " + segments.get(0).start + " .", e);
+            }
+
+            for (Future<Boolean> future : futures) {
+                try {
+                    result &= future.get();
+                } catch (ExecutionException e) {
+                    logger.error("Failed to download segment.", e.getCause());
+                    result = false;
+                } catch (InterruptedException e) {
+                    logger.error("Segmented download interrupted.", e);
+                    Thread.currentThread().interrupt();
+                    result = false;
+                    break;
+                }
+            }
+
+            // Keep only the contiguous downloaded part, so that it can be resumed correctly.
+            if (!result) {
+                channel.truncate(getContiguousEnd(offset, segments));
+            }
+
+            return result;
+
+        } finally {
+            executor.shutdownNow();
+            closeQuietly(file);
+        }
+    }
+
+    /**
+     * Download the segment with a new connection, or the one from the connection pool.
+     *
+     * @param segment The download segment.
+     * @param channel The channel of the local file.
+     * @return The result of download.
+     * @throws IOException
+     */
+    private boolean downloadSegmentWithNewConnection(DownloadSegment segment, FileChannel channel) throws IOException {
+
+        FTPClientPool pool = getConnectionPool();
+        FTPClient client = pool == null ? null : pool.borrow(ftpVO);
+        boolean result = false;
+
+        try {
+
+            if (client != null) {
+
+                acquirePermit(client, ftpVO);
+
+            } else {
+
+                client = createFTPClient();
+
+                if (!connect(client, ftpVO)) {
+                    logger.error("Failed to connect to server for segment at " + segment.start + " .");
+                    return false;
+                }
+
+                if (!login(client, ftpVO)) {
+                    logger.error("Cannot login to server for segment at " + segment.start + " .");
+                    return false;
+                }
+            }
+
+            // Set file type to binary.
+            client.setFileType(FTP.BINARY_FILE_TYPE);
+
+            // Set FTP mode to passive.
+            client.enterLocalPassiveMode();
+
+            result = downloadSegment(client, segment, channel);
+            return result;
+
+        } finally {
+
+            if (pool != null && result) {
+                pool.release(ftpVO, client);
+            } else if (client != null) {
+                disconnectQuietly(client);
+            }
+        }
+    }
+
+    /**
+     * Download the segment from its start offset, and stop once it has read its byte range.
+     *
+     * @param client The FTP client.
+     * @param segment The download segment.
+     * @param channel The channel of the local file.
+     * @return The result of download.
+     * @throws IOException
+     */
+    private boolean downloadSegment(FTPClient client, DownloadSegment segment, FileChannel channel) throws IOException {
+
+        // Set resume broken point.
+        client.setRestartOffset(segment.start);
+
+        InputStream input = client.retrieveFileStream(ftpVO.getFileFullPath());
+        if (input == null) {
+            logger.error("Cannot retrieve segment at " + segment.start + " .");
+            return false;
+        }
+
+        long position = segment.start;
+        TransferMetrics metrics = getMetrics();
+        try {
+
+            byte[] buffer = new byte[SEGMENT_BUFFER_SIZE];
+            while (position < segment.end) {
+
+                int read = input.read(buffer, 0, (int) Math.min(buffer.length, segment.end - position));
+                if (read == -1) {
+                    break;
+                }
+                if (throttle != null) {
+                    throttle.acquire(read);
+                }
+                if (metrics != null) {
+                    metrics.addBytes(read);
+                }
+
+                // Write the data into its position of the local file.
+                ByteBuffer data = ByteBuffer.wrap(buffer, 0, read);
+                while (data.hasRemaining()) {
+                    position += channel.write(data, position);
+                }
+                segment.downloaded = position - segment.start;
+            }
+
+        } finally {
+
+            // Abort the rest of the file by closing the data connection.
+            closeQuietly(input);
+        }
+
+        // The server replies the failure of transfer when it is aborted, so ignore the reply.
+        boolean completed = client.completePendingCommand();
+
+        if (position < segment.end) {
+            logger.error("Segment at " + segment.start + " ended at " + position + " .");
+            return false;
+        }
+
+        return completed || segment.aborted;
+    }
+
+    /**
+     * Get the end of the contiguous downloaded part from the offset.
+     *
+     * @param offset The offset of the first segment.
+     * @param segments The download segments.
+     * @return The end of the contiguous downloaded part.
+     */
+    private static long getContiguousEnd(long offset, List<DownloadSegment> segments) {
+
+        long end = offset;
+        for (DownloadSegment segment : segments) {
+
+            end = segment.start + segment.downloaded;
+            if (end < segment.end) {
+                break;
+            }
+        }
+
+        return end;
+    }
+
     /**
      * The upload process.
      *
@@ -244,19 +1018,19 @@ public class ServerToClient extends AbstractFTPClient {
             }
 
             // The remote file.
-            FTPFile[] files = ftp.listFiles(ftpVO.getFileFullPath());
+            FTPFile remoteFile = probeFile(ftp, ftpVO);
 
             // The file size to skip when resume broken transfer.
             long localSkip = 0L;
 
             // When the remote exists.
-            if (files.length != 0) {
+            if (remoteFile != null) {
 
                 // When it is resume broken transfer mode.
                 if (isResumeBroken()) {
 
                     long localSize = localFile.length();
-                    long remoteSize = files[0].getSize();
+                    long remoteSize = remoteFile.getSize();
 
                     // When file size unreasonable.
                     if (localSize <= remoteSize) {
@@ -281,24 +1055,229 @@ public class ServerToClient extends AbstractFTPClient {
             }
 
             // Change the working directory to the parent directory of the remote file.
-            if (!changeDir(ftp, ftpVO.getFileDirectory())) {
+            if (!changeDir(ftp, ftpVO, ftpVO.getFileDirectory())) {
                 logger.error("Change directory failed.");
                 return false;
             }
 
-            // Do upload process.
+            // Do upload process with FileChannel.transferTo.
+            if (zeroCopyUpload && checksumAlgorithm == null && ftp instanceof ChannelFTPClient) {
+                return uploadWithTransferTo(localSkip);
+            }
+
+            // Do upload process, and the skipped part is read into the checksum.
+            TransferChecksum digest = createChecksum(false);
             input = new FileInputStream(localFile);
+            if (digest != null) {
+                input = new ChecksumInputStream(input, digest);
+            }
+            if (throttle != null) {
+                input = new ThrottledInputStream(input, throttle);
+            }
+            if (getMetrics() != null) {
+                input = new CountingInputStream(input, getMetrics());
+            }
             if (localSkip != input.skip(localSkip)) {
                 logger.error("Skip uploaded file size failed.");
                 return false;
             }
-            return ftp.storeFile(ftpVO.getFileName(), input);
+            if (!ftp.storeFile(ftpVO.getFileName(), input)) {
+                return false;
+            }
+
+            return verifyUpload(digest);
 
         } finally {
             closeQuietly(input);
         }
     }
 
+    /**
+     * The upload process with FileChannel.transferTo, which sends the local file from the offset
+     * to the data connection.
+     *
+     * @param offset The resume broken point of the local file.
+     * @return The result of upload.
+     * @throws IOException
+     */
+    private boolean uploadWithTransferTo(long offset) throws IOException {
+
+        ChannelFTPClient client = (ChannelFTPClient) ftp;
+        FileInputStream input = new FileInputStream(localFile);
+        Socket socket = null;
+        TransferMetrics metrics = getMetrics();
+
+        try {
+
+            socket = client.openDataSocket(FTPCommand.STOR, ftpVO.getFileName());
+            if (socket == null) {
+                logger.error("Cannot store remote file.");
+                return false;
+            }
+
+            // The socket channel ignores the timeout, so write through stream when it is set.
+            WritableByteChannel target = socket.getChannel();
+            if (target == null || client.getDataTimeout() > 0) {
+                target = Channels.newChannel(socket.getOutputStream());
+            }
+
+            FileChannel channel = input.getChannel();
+            long position = offset;
+            long size = channel.size();
+            while (position < size) {
+
+                // Send the file in pieces when it is throttled.
+                long count = size - position;
+                if (throttle != null) {
+                    count = Math.min(count, SEGMENT_BUFFER_SIZE);
+                }
+
+                count = channel.transferTo(position, count, target);
+                if (throttle != null) {
+                    throttle.acquire(count);
+                }
+                if (metrics != null) {
+                    metrics.addBytes(count);
+                }
+                position += count;
+            }
+
+            socket.close();
+            socket = null;
+
+            return client.completePendingCommand();
+
+        } finally {
+            closeQuietly(socket);
+            closeQuietly(input);
+        }
+    }
+
+    /**
+     * Create the checksum, which is updated with the present local file when it is required.
+     *
+     * @param withLocalFile The flag of whether to update the checksum with the present local file.
+     * @return The checksum, or null when it is not computed.
+     * @throws IOException
+     */
+    private TransferChecksum createChecksum(boolean withLocalFile) throws IOException {
+
+        if (checksumAlgorithm == null) {
+            return null;
+        }
+
+        TransferChecksum digest = new TransferChecksum(checksumAlgorithm);
+        if (withLocalFile) {
+            digest.update(localFile, localFile.length());
+        }
+
+        return digest;
+    }
+
+    /**
+     * Verify the downloaded file with the checksum, and delete it when they do not match.
+     *
+     * @param digest The checksum of the downloaded file.
+     * @return The result of verification.
+     * @throws IOException
+     */
+    private boolean verifyDownload(TransferChecksum digest) throws IOException {
+
+        if (!verifyChecksum(digest)) {
+
+            if (!localFile.delete()) {
+                logger.error("Cannot delete local file with wrong checksum.");
+            }
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Verify the uploaded file with the checksum, and delete it when they do not match.
+     *
+     * @param digest The checksum of the uploaded file.
+     * @return The result of verification.
+     * @throws IOException
+     */
+    private boolean verifyUpload(TransferChecksum digest) throws IOException {
+
+        if (!verifyChecksum(digest)) {
+
+            if (!ftp.deleteFile(ftpVO.getFileFullPath())) {
+                logger.error("Cannot delete remote file with wrong checksum.");
+            }
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Keep the checksum of the transferred file, and compare it with the one computed by
+     * FTP server when it is required.
+     *
+     * @param digest The checksum of the transferred file.
+     * @return False when the checksums do not match.
+     * @throws IOException
+     */
+    private boolean verifyChecksum(TransferChecksum digest) throws IOException {
+
+        if (digest == null) {
+            return true;
+        }
+
+        checksum = digest.getValue();
+
+        if (!verifyChecksum) {
+            return true;
+        }
+
+        String remoteChecksum = getMetadataProbe().getChecksum(ftp, ftpVO, checksumAlgorithm);
+        if (remoteChecksum == null) {
+            logger.debug("FTP server does not support checksum " + checksumAlgorithm + " .");
+            return true;
+        }
+
+        if (!checksumAlgorithm.matches(checksum, remoteChecksum)) {
+            logger.error("Checksum " + checksum + " does not match " + remoteChecksum + " of FTP server.");
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Return the FTP client to the connection pool when the transfer succeeded,
+     * otherwise logout and disconnect from FTP server.
+     *
+     * @param result The result of transfer.
+     */
+    @Override
+    protected void releaseConnection(boolean result) {
+
+        FTPClientPool pool = getConnectionPool();
+        if (pool != null && result && ftp.isConnected()) {
+            pool.release(ftpVO, ftp);
+            ftp = createFTPClient();
+        } else {
+            logoutAndDisconnect();
+        }
+
+        pooledSession = false;
+    }
+
+    /**
+     * Determine whether the control connection is still alive with NOOP.
+     *
+     * @return The result of whether the control connection is alive.
+     */
+    @Override
+    protected boolean isSessionAlive() {
+        return isAlive(ftp);
+    }
+
     /**
      * Logout and disconnect from FTP server.
      */
@@ -322,6 +1301,30 @@ public class ServerToClient extends AbstractFTPClient {
         }
     }
 
+    /**
+     * Logout and disconnect the FTP client and do not care the result.
+     *
+     * @param client The FTP client.
+     */
+    private void disconnectQuietly(FTPClient client) {
+
+        try {
+            if (client.isConnected()) {
+                client.logout();
+            }
+        } catch (IOException e) {
+            logger.debug("disconnectQuietly", e);
+        }
+
+        try {
+            if (client.isConnected()) {
+                client.disconnect();
+            }
+        } catch (IOException e) {
+            logger.debug("disconnectQuietly", e);
+        }
+    }
+
     /**
      * Close the stream and do not care the result.
      *
@@ -336,4 +1339,58 @@ public class ServerToClient extends AbstractFTPClient {
             logger.debug("closeQuietly", e);
         }
     }
+
+    /**
+     * Close the socket and do not care the result.
+     *
+     * @param socket The socket.
+     */
+    private void closeQuietly(Socket socket) {
+        try {
+            if (socket != null) {
+                socket.close();
+            }
+        } catch (IOException e) {
+            logger.debug("closeQuietly", e);
+        }
+    }
+
+    /**
+     * The byte range of the remote file downloaded by one connection.
+     */
+    private static class DownloadSegment {
+
+        /**
+         * The start offset.(inclusive)
+         */
+        private final long start;
+
+        /**
+         * The end offset.(exclusive)
+         */
+        private final long end;
+
+        /**
+         * The flag of whether the transfer is aborted before the end of the file.
+         */
+        private final boolean aborted;
+
+        /**
+         * The downloaded size.
+         */
+        private volatile long downloaded = 0L;
+
+        /**
+         * Constructor method.
+         *
+         * @param start The start offset.
+         * @param end The end offset.
+         * @param aborted The flag of whether the transfer is aborted before the end of the file.
+         */
+        DownloadSegment(long start, long end, boolean aborted) {
+            this.start = start;
+            this.end = end;
+            this.aborted = aborted;
+        }
+    }
 }
@@ -1,17 +1,39 @@
 package com.venson.easyftp;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.net.ftp.FTP;
 import org.apache.commons.net.ftp.FTPClient;
 import org.apache.commons.net.ftp.FTPFile;
+import org.apache.commons.net.ftp.FTPReply;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * The Subclass of AbstractFTPClient that implements a server to server file transfer
- * that transfers a file from server1 to server2.
+ * that transfers a file from server1 to server2. The data goes between the servers directly,
+ * so it is not throttled by BandwidthLimiter. When the servers refuse FXP, the data can go through
+ * the client instead, which is throttled like ServerToClient. A batch of files is transferred over one or more pairs of logged-in sessions.
  *
  * @author venson
  */
@@ -22,6 +44,47 @@ public class ServerToServer extends AbstractFTPClient {
      */
     private static final Logger logger = LoggerFactory.getLogger(ServerToServer.class);
 
+    /**
+     * The count of failed files in a row, after which a session pair stops taking files.
+     */
+    private static final int MAX_PAIR_FAILURES = 3;
+
+    /**
+     * The count of buffers for the transfer through the client.
+     */
+    private static final int PROXY_BUFFER_COUNT = 8;
+
+    /**
+     * The size of each buffer for the transfer through the client.(byte)
+     */
+    private static final int PROXY_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The pairs of FTP servers which refused FXP, from server1 to server2.
+     */
+    private static final Set<String> REFUSED_PAIRS = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /**
+     * The FTP servers which refused PASV, whose data connections are opened by the servers instead.
+     */
+    private static final Set<String> PASSIVE_REFUSED_HOSTS = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /**
+     * The max interval of checking the completion of FXP.(millisecond)
+     */
+    private static final long WATCHDOG_INTERVAL = 1000L;
+
+    /**
+     * The threads which wait for the replies of both of FTP servers after FXP.
+     */
+    private static final ExecutorService COMPLETION_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "easyftp-fxp-completion");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
     /**
      * The FTP client of server1.
      */
@@ -42,6 +105,46 @@ public class ServerToServer extends AbstractFTPClient {
      */
     private FTPFileInfoVO ftp2VO = null;
 
+    /**
+     * The working directory of server2 right after login, recorded only when the session is kept.
+     */
+    private String ftp2LoginDirectory = null;
+
+    /**
+     * The count of session pairs which transfer a batch concurrently.(1)
+     */
+    private int parallelPairs = 1;
+
+    /**
+     * The flag of whether to transfer through the client when the servers refuse FXP.(false)
+     */
+    private boolean proxyFallback = false;
+
+    /**
+     * The buffers for the transfer through the client, which are allocated at the first use.
+     */
+    private BufferRing bufferRing = null;
+
+    /**
+     * The max time to wait for both of FTP servers to complete FXP, 0 means no limit.(millisecond)(0)
+     */
+    private long completionTimeout = 0L;
+
+    /**
+     * The max time without growth of the file of server2 during FXP, 0 means not to watch it.(millisecond)(0)
+     */
+    private long stallTimeout = 0L;
+
+    /**
+     * The bandwidth limiter of the transfer through the client, null means no limit.
+     */
+    private BandwidthLimiter bandwidthLimiter = null;
+
+    /**
+     * The FTP client of server2 which polls the size of the file during FXP, which is created at the first use.
+     */
+    private FTPClient watcher = null;
+
     /**
      * Constructor method to initial the FTP client and command listener logger.
      */
@@ -82,6 +185,287 @@ public class ServerToServer extends AbstractFTPClient {
         return doTransferFlow();
     }
 
+    /**
+     * Get the count of session pairs which transfer a batch concurrently.
+     *
+     * @return The count of session pairs.
+     */
+    public int getParallelPairs() {
+        return parallelPairs;
+    }
+
+    /**
+     * Set the count of session pairs which transfer a batch concurrently. Each pair takes the
+     * next file from the batch in turn, and has its own sessions and retries, so a failed pair
+     * does not break the others. Defaults to 1.
+     *
+     * @param parallelPairs The count of session pairs.
+     */
+    public void setParallelPairs(int parallelPairs) {
+        this.parallelPairs = parallelPairs;
+    }
+
+    /**
+     * Get the flag of whether to transfer through the client when the servers refuse FXP.
+     *
+     * @return The flag of whether to transfer through the client.
+     */
+    public boolean isProxyFallback() {
+        return proxyFallback;
+    }
+
+    /**
+     * Set the flag of whether to transfer through the client when the servers refuse FXP. The
+     * client then retrieves from server1 and stores to server2 at once through a few fixed buffers,
+     * and resumes from the size of the file of server2 like FXP. The refusal is remembered for the
+     * pair of servers, so FXP is not tried again between them. Defaults to off.
+     *
+     * @param proxyFallback The flag of whether to transfer through the client.
+     */
+    public void setProxyFallback(boolean proxyFallback) {
+        this.proxyFallback = proxyFallback;
+    }
+
+    /**
+     * Get the max time to wait for both of FTP servers to complete FXP.
+     *
+     * @return The max time to wait.(second)
+     */
+    public long getCompletionTimeout() {
+        return completionTimeout / 1000L;
+    }
+
+    /**
+     * Set the max time to wait for both of FTP servers to complete FXP, after which the transfer
+     * is aborted and fails. Defaults to 0, which means no limit.
+     *
+     * @param completionTimeout The max time to wait.(second)
+     */
+    public void setCompletionTimeout(long completionTimeout) {
+        this.completionTimeout = completionTimeout * 1000L;
+    }
+
+    /**
+     * Get the max time without growth of the file of server2 during FXP.
+     *
+     * @return The max time without growth.(second)
+     */
+    public long getStallTimeout() {
+        return stallTimeout / 1000L;
+    }
+
+    /**
+     * Set the max time without growth of the file of server2 during FXP, after which the transfer
+     * is aborted and fails. The size is polled with SIZE over another session to server2.
+     * Defaults to 0, which means not to watch it.
+     *
+     * @param stallTimeout The max time without growth.(second)
+     */
+    public void setStallTimeout(long stallTimeout) {
+        this.stallTimeout = stallTimeout * 1000L;
+    }
+
+    /**
+     * Get the bandwidth limiter of the transfer through the client.
+     *
+     * @return The bandwidth limiter.
+     */
+    public BandwidthLimiter getBandwidthLimiter() {
+        return bandwidthLimiter;
+    }
+
+    /**
+     * Set the bandwidth limiter of the transfer through the client, which takes the tokens of both
+     * of FTP servers. FXP is not throttled, since the data does not go through the client.
+     * Defaults to null, which means no limit.
+     *
+     * @param bandwidthLimiter The bandwidth limiter.
+     */
+    public void setBandwidthLimiter(BandwidthLimiter bandwidthLimiter) {
+        this.bandwidthLimiter = bandwidthLimiter;
+    }
+
+    /**
+     * Copy the transfer settings of the given FTP client, including the ones of FXP when it is
+     * also a ServerToServer.
+     *
+     * @param source The FTP client whose settings are copied.
+     */
+    @Override
+    protected void copySettings(AbstractFTPClient source) {
+
+        super.copySettings(source);
+
+        if (source instanceof ServerToServer) {
+            ServerToServer client = (ServerToServer) source;
+            proxyFallback = client.proxyFallback;
+            completionTimeout = client.completionTimeout;
+            stallTimeout = client.stallTimeout;
+            bandwidthLimiter = client.bandwidthLimiter;
+        }
+    }
+
+    /**
+     * Transfer the files from FTP server1 to server2 over the logged-in session pairs, which are
+     * kept between the files and opened again only when a file goes to other servers or accounts,
+     * or the sessions are lost. Each file is retried and resumed like a single transfer. A pair
+     * which fails several files in a row stops taking files, unless it is the last one.
+     *
+     * @param server1Urls The FTP file URLs of server1.
+     * @param server2Urls The FTP file URLs of server2, in the order of server1's.
+     * @return The results in the order of the files.
+     */
+    public TransferBatchResult transfer(List<String> server1Urls, List<String> server2Urls) {
+
+        if (server1Urls.size() != server2Urls.size()) {
+            throw new IllegalArgumentException("The count of server1 URLs and server2 URLs must be the same.");
+        }
+
+        long startTime = System.currentTimeMillis();
+        TransferResult[] results = new TransferResult[server1Urls.size()];
+        int pairs = Math.max(1, Math.min(parallelPairs, server1Urls.size()));
+        PairQueue queue = new PairQueue(server1Urls, server2Urls, results, pairs);
+
+        // The other pairs run in their own threads, and this one runs in the current thread.
+        ExecutorService executor = null;
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        if (pairs > 1) {
+            executor = Executors.newFixedThreadPool(pairs - 1);
+            for (int i = 1; i < pairs; i++) {
+                futures.add(executor.submit(new PairWorker(createPair(), queue)));
+            }
+        }
+
+        new PairWorker(this, queue).run();
+
+        // Wait for the other pairs.
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                logger.error("Transfer pair failed.", e.getCause());
+            } catch (InterruptedException e) {
+                logger.error("Transfer batch interrupted.", e);
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        if (executor != null) {
+            executor.shutdown();
+        }
+
+        // The files which are not transferred.
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == null) {
+                results[i] = createResult(server1Urls.get(i), server2Urls.get(i));
+            }
+        }
+
+        return new TransferBatchResult(Arrays.asList(results), System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * Transfer one file of the batch over the kept session pair.
+     *
+     * @param server1Url The FTP file URL of server1.
+     * @param server2Url The FTP file URL of server2.
+     * @return The result of transfer.
+     */
+    private TransferResult transferKept(String server1Url, String server2Url) {
+
+        TransferResult result = createResult(server1Url, server2Url);
+        long startTime = System.currentTimeMillis();
+
+        try {
+
+            FTPFileInfoVO vo1 = convertFTPUrlToVO(server1Url);
+            FTPFileInfoVO vo2 = convertFTPUrlToVO(server2Url);
+
+            // The kept sessions cannot be used for other servers or accounts.
+            if (ftp1VO != null && (!isSameAccount(ftp1VO, vo1) || !isSameAccount(ftp2VO, vo2))) {
+                releaseRetainedSession();
+            }
+
+            ftp1VO = vo1;
+            ftp2VO = vo2;
+
+            result.setSuccess(doTransferFlow());
+            result.setMetrics(getMetrics());
+            result.setRetryTimes(getCurrentRetryTimes());
+
+        } catch (RuntimeException e) {
+            logger.error("Transfer " + server1Url + " failed.", e);
+            result.setCause(e);
+        } finally {
+            result.setElapsedTime(System.currentTimeMillis() - startTime);
+        }
+
+        return result;
+    }
+
+    /**
+     * Create the client of another session pair with the same settings.
+     *
+     * @return The client of the session pair.
+     */
+    private ServerToServer createPair() {
+
+        ServerToServer client = new ServerToServer();
+        client.setControlEncoding(ftp1.getControlEncoding(), ftp2.getControlEncoding());
+        client.copySettings(this);
+
+        return client;
+    }
+
+    /**
+     * Create the failed result of the file.
+     *
+     * @param server1Url The FTP file URL of server1.
+     * @param server2Url The FTP file URL of server2.
+     * @return The failed result.
+     */
+    private static TransferResult createResult(String server1Url, String server2Url) {
+
+        TransferResult result = new TransferResult();
+        result.setSource(server1Url);
+        result.setDestination(server2Url);
+        result.setSuccess(false);
+
+        return result;
+    }
+
+    /**
+     * Determine whether the FTP files are on the same server and account.
+     *
+     * @param vo1 The value object with FTP information.
+     * @param vo2 The other value object with FTP information.
+     * @return The result of whether they are on the same server and account.
+     */
+    private static boolean isSameAccount(FTPFileInfoVO vo1, FTPFileInfoVO vo2) {
+        return vo1.getHostKey().equals(vo2.getHostKey()) && String.valueOf(vo1.getUserName()).equals(vo2.getUserName());
+    }
+
+    /**
+     * Get the key of FTP server1 which the retries are counted to.
+     *
+     * @return The key of FTP server.
+     */
+    @Override
+    protected String getHostKey() {
+        return ftp1VO == null ? null : ftp1VO.getHostKey();
+    }
+
+    /**
+     * Get the path of the file of server1, which is shown by the monitor.
+     *
+     * @return The path of the file of server1.
+     */
+    @Override
+    protected String getTransferPath() {
+        return ftp1VO == null ? null : ftp1VO.getFileFullPath();
+    }
+
     /**
      * Connect to both of FTP server.
      *
@@ -113,16 +497,19 @@ public class ServerToServer extends AbstractFTPClient {
     @Override
     protected boolean login() throws IOException {
 
-        if (!ftp1.login(ftp1VO.getUserName(), ftp1VO.getPassword())) {
+        if (!login(ftp1, ftp1VO)) {
             logger.error("Cannot login to server1.");
             return false;
         }
 
-        if (!ftp2.login(ftp2VO.getUserName(), ftp2VO.getPassword())) {
+        if (!login(ftp2, ftp2VO)) {
             logger.error("Cannot login to server2.");
             return false;
         }
 
+        // The kept session goes back here for the files without directory.
+        ftp2LoginDirectory = isKeepSession() ? ftp2.printWorkingDirectory() : null;
+
         return true;
     }
 
@@ -135,25 +522,32 @@ public class ServerToServer extends AbstractFTPClient {
     @Override
     protected boolean doTransfer() throws IOException {
 
+        // Set file type to binary.
+        ftp1.setFileType(FTP.BINARY_FILE_TYPE);
+        ftp2.setFileType(FTP.BINARY_FILE_TYPE);
+
+        // The offset which the transfer resumes from.
+        long offset = 0L;
+
         // The remote file.
-        FTPFile[] files1 = ftp1.listFiles(ftp1VO.getFileFullPath());
-        FTPFile[] files2 = ftp2.listFiles(ftp2VO.getFileFullPath());
+        FTPFile file1 = probeFile(ftp1, ftp1VO);
+        FTPFile file2 = probeFile(ftp2, ftp2VO);
 
         // When the FTP file of server1 dose not exist.
-        if (files1.length == 0) {
+        if (file1 == null) {
             logger.error("Specified file does not exist in ftp1.");
             return false;
 
         } else {
 
             // When the FTP file of server2 exists.
-            if (files2.length != 0) {
+            if (file2 != null) {
 
                 // When it is resume broken transfer mode.
                 if (isResumeBroken()) {
 
-                    long ftp1Size = files1[0].getSize();
-                    long ftp2Size = files2[0].getSize();
+                    long ftp1Size = file1.getSize();
+                    long ftp2Size = file2.getSize();
 
                     // When file size unreasonable.
                     if (ftp1Size <= ftp2Size) {
@@ -164,6 +558,7 @@ public class ServerToServer extends AbstractFTPClient {
                         // Set resume broken point.
                         ftp1.setRestartOffset(ftp2Size);
                         ftp2.setRestartOffset(ftp2Size);
+                        offset = ftp2Size;
                     }
 
                 } else {
@@ -178,32 +573,403 @@ public class ServerToServer extends AbstractFTPClient {
         }
 
         // Change the working directory to the parent directory of the FTP file of server2.
-        if (!changeDir(ftp2, ftp2VO.getFileDirectory())) {
+        if (!changeServer2Dir()) {
             logger.error("Change directory failed.");
             return false;
         }
 
-        // Set file type to binary.
-        ftp1.setFileType(FTP.BINARY_FILE_TYPE);
-        ftp2.setFileType(FTP.BINARY_FILE_TYPE);
+        // Go through the client at once when the servers refused FXP before.
+        String pairKey = ftp1VO.getHostKey() + ">" + ftp2VO.getHostKey();
+        if (proxyFallback && REFUSED_PAIRS.contains(pairKey)) {
+            return proxyTransfer(offset);
+        }
+
+        // Set FTP mode. The server which refuses PASV is remembered, so that the transfer through
+        // the client lets it open the data connection instead.
+        boolean passiveSet = ftp2.enterRemotePassiveMode();
+        if (!passiveSet && FTPReply.isNegativePermanent(ftp2.getReplyCode())) {
+            PASSIVE_REFUSED_HOSTS.add(ftp2VO.getHostKey());
+        }
+        boolean modeSet = passiveSet
+            && ftp1.enterRemoteActiveMode(InetAddress.getByName(ftp2.getPassiveHost()), ftp2.getPassivePort());
 
-        // Set FTP mode.
-        ftp2.enterRemotePassiveMode();
-        ftp1.enterRemoteActiveMode(InetAddress.getByName(ftp2.getPassiveHost()),
-            ftp2.getPassivePort());
+        // When server2 refuses PASV, server1 refuses PORT to server2, or cannot open the data connection to it.
+        if (!modeSet || !ftp1.remoteRetrieve(ftp1VO.getFileFullPath())) {
+
+            if (proxyFallback && (!modeSet || ftp1.getReplyCode() == FTPReply.CANNOT_OPEN_DATA_CONNECTION)) {
+                logger.warn("FXP from " + ftp1VO.getHostKey() + " to " + ftp2VO.getHostKey() + " is refused, transfer through the client.");
+                REFUSED_PAIRS.add(pairKey);
+                return proxyTransfer(offset);
+            }
+
+            logger.error("Couldn't initiate transfer. Check that filenames are valid.");
+            return false;
+        }
 
         // Do transfer process.
-        if (ftp1.remoteRetrieve(ftp1VO.getFileFullPath()) && ftp2.remoteStore(ftp2VO.getFileName())) {
+        boolean stored = ftp2.remoteStore(ftp2VO.getFileName());
 
-            ftp1.completePendingCommand();
-            ftp2.completePendingCommand();
-            return true;
+        // When server2 refuses the data connection from server1, for example from the other address
+        // than the client's. Server1 is still sending, so both sessions are opened again.
+        if (!stored && proxyFallback && ftp2.getReplyCode() == FTPReply.CANNOT_OPEN_DATA_CONNECTION) {
+            logger.warn("FXP from " + ftp1VO.getHostKey() + " to " + ftp2VO.getHostKey() + " is refused, transfer through the client.");
+            REFUSED_PAIRS.add(pairKey);
+            abortRemoteTransfer();
+
+            if (!connect() || !login()) {
+                return false;
+            }
+            ftp1.setFileType(FTP.BINARY_FILE_TYPE);
+            ftp2.setFileType(FTP.BINARY_FILE_TYPE);
+            if (!changeServer2Dir()) {
+                logger.error("Change directory failed.");
+                return false;
+            }
+            return proxyTransfer(offset);
+        }
+
+        if (stored) {
+            return completeRemoteTransfer(offset, file1);
         } else {
             logger.error("Couldn't initiate transfer. Check that filenames are valid.");
             return false;
         }
     }
 
+    /**
+     * Change the working directory of server2 to the parent directory of its FTP file. The kept
+     * session may be left in the directory of the previous file, so the file without directory
+     * goes back to the login directory.
+     *
+     * @return The result of changing directory.
+     * @throws IOException
+     */
+    private boolean changeServer2Dir() throws IOException {
+
+        String directory = ftp2VO.getFileDirectory();
+        if (directory == null && ftp2LoginDirectory != null) {
+            return ftp2.changeWorkingDirectory(ftp2LoginDirectory);
+        }
+        return changeDir(ftp2, ftp2VO, directory);
+    }
+
+    /**
+     * Wait for the replies of both of FTP servers after FXP at the same time, and abort the
+     * transfer when it exceeds the completion timeout or the file of server2 stops growing.
+     * The data goes between the servers, so the growth of the file of server2 is counted as
+     * moved while it is watched, and the rest of the file when the transfer completes.
+     *
+     * @param offset The offset which the transfer resumes from.
+     * @param file1 The FTP file of server1.
+     * @return The result of whether both of FTP servers completed the transfer.
+     * @throws IOException
+     */
+    private boolean completeRemoteTransfer(long offset, FTPFile file1) throws IOException {
+
+        CountDownLatch latch = new CountDownLatch(2);
+        Future<Boolean> completion1 = COMPLETION_EXECUTOR.submit(new Completion(ftp1, latch));
+        Future<Boolean> completion2 = COMPLETION_EXECUTOR.submit(new Completion(ftp2, latch));
+
+        long startTime = System.currentTimeMillis();
+        long progressTime = startTime;
+        long size = -1L;
+        long counted = 0L;
+        boolean watching = stallTimeout > 0;
+        TransferMetrics metrics = getMetrics();
+
+        try {
+
+            while (!latch.await(getWaitTime(startTime, watching), TimeUnit.MILLISECONDS)) {
+
+                long now = System.currentTimeMillis();
+                if (completionTimeout > 0 && now - startTime >= completionTimeout) {
+                    logger.error("FXP is not completed in " + completionTimeout + " ms, abort it.");
+                    abortRemoteTransfer();
+                    return false;
+                }
+
+                if (!watching) {
+                    continue;
+                }
+
+                // Watch the growth of the file of server2.
+                long current = pollSize();
+                if (current < 0) {
+                    logger.warn("Cannot get the size of ftp2 file, stop watching it.");
+                    watching = false;
+                } else if (current != size) {
+                    size = current;
+                    progressTime = now;
+
+                    if (metrics != null) {
+                        long moved = Math.min(current, file1.getSize()) - offset;
+                        if (moved > counted) {
+                            metrics.addBytes(moved - counted);
+                            counted = moved;
+                        }
+                    }
+                } else if (now - progressTime >= stallTimeout) {
+                    logger.error("Ftp2 file does not grow in " + stallTimeout + " ms, abort FXP.");
+                    abortRemoteTransfer();
+                    return false;
+                }
+            }
+
+        } catch (InterruptedException e) {
+            abortRemoteTransfer();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("FXP interrupted.");
+        } finally {
+            closeWatcher();
+        }
+
+        boolean completed1 = getCompletion(completion1);
+        boolean completed2 = getCompletion(completion2);
+        if (!completed1 || !completed2) {
+            logger.error("FXP failed, ftp1 completed: " + completed1 + ", ftp2 completed: " + completed2 + ".");
+            return false;
+        }
+
+        if (metrics != null) {
+            metrics.addBytes(file1.getSize() - offset - counted);
+        }
+        return true;
+    }
+
+    /**
+     * Get the time to wait for the completion of FXP before checking it again.
+     *
+     * @param startTime The time when the waiting started.(millisecond)
+     * @param watching The flag of whether the file of server2 is watched.
+     * @return The time to wait.(millisecond)
+     */
+    private long getWaitTime(long startTime, boolean watching) {
+
+        long waitTime = WATCHDOG_INTERVAL;
+        if (watching) {
+            waitTime = Math.min(waitTime, stallTimeout);
+        }
+        if (completionTimeout > 0) {
+            waitTime = Math.min(waitTime, startTime + completionTimeout - System.currentTimeMillis());
+        }
+
+        return Math.max(1L, waitTime);
+    }
+
+    /**
+     * Get the result of the completion of a side of FXP.
+     *
+     * @param completion The completion.
+     * @return The result of whether FTP server completed the transfer.
+     * @throws IOException
+     */
+    private static boolean getCompletion(Future<Boolean> completion) throws IOException {
+
+        try {
+            return completion.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("FXP interrupted.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Get the size of the file of server2 with SIZE over the session of the watcher, which is
+     * opened at the first poll.
+     *
+     * @return The size of the file, or -1 when it is unknown.
+     */
+    private long pollSize() {
+
+        if (watcher == null) {
+            watcher = new FTPClient();
+            watcher.setControlEncoding(ftp2.getControlEncoding());
+            watcher.addProtocolCommandListener(new FTPLogCommandListener(logger));
+        }
+
+        try {
+
+            if (!watcher.isConnected() && (!connect(watcher, ftp2VO) || !login(watcher, ftp2VO))) {
+                return -1L;
+            }
+
+            if (!FTPReply.isPositiveCompletion(watcher.sendCommand("SIZE", ftp2VO.getFileFullPath()))) {
+                return -1L;
+            }
+
+            return Long.parseLong(watcher.getReplyString().substring(4).trim());
+
+        } catch (IOException e) {
+            logger.debug("SIZE failed.", e);
+            return -1L;
+        } catch (NumberFormatException e) {
+            logger.debug("SIZE failed.", e);
+            return -1L;
+        }
+    }
+
+    /**
+     * Logout and disconnect the session of the watcher.
+     */
+    private void closeWatcher() {
+
+        if (watcher == null || !watcher.isConnected()) {
+            return;
+        }
+
+        try {
+            watcher.logout();
+        } catch (IOException e) {
+            logger.debug("watcher logout failed.", e);
+        }
+
+        try {
+            watcher.disconnect();
+        } catch (IOException e) {
+            logger.debug("watcher disconnect failed.", e);
+        }
+    }
+
+    /**
+     * Abort the transfer by closing the control connections to both of FTP servers, which makes
+     * them abort the transfer and fails the waiting for their replies at once.
+     */
+    private void abortRemoteTransfer() {
+
+        try {
+            ftp1.disconnect();
+        } catch (IOException e) {
+            logger.error("ftp1 disconnect failed.", e);
+        }
+
+        try {
+            ftp2.disconnect();
+        } catch (IOException e) {
+            logger.error("ftp2 disconnect failed.", e);
+        }
+    }
+
+    /**
+     * Transfer the file through the client, which retrieves from server1 and stores to server2 at once.
+     *
+     * @param offset The offset which the transfer resumes from.
+     * @return The result of transfer.
+     * @throws IOException
+     */
+    private boolean proxyTransfer(long offset) throws IOException {
+
+        // The data connections are opened by the client, unless the server refused PASV.
+        setProxyMode(ftp1, ftp1VO);
+        setProxyMode(ftp2, ftp2VO);
+        ftp1.setRestartOffset(offset);
+        ftp2.setRestartOffset(offset);
+
+        InputStream input = ftp1.retrieveFileStream(ftp1VO.getFileFullPath());
+        if (input == null) {
+            logger.error("Couldn't initiate transfer. Check that filenames are valid.");
+            return false;
+        }
+
+        // The data goes through the client once, so it takes the tokens of both servers on the way in.
+        BandwidthLimiter limiter = bandwidthLimiter;
+        BandwidthLimiter.Throttle throttle = limiter == null ? null : limiter.newThrottle(ftp1VO.getHostKey(), ftp2VO.getHostKey());
+        if (throttle != null) {
+            input = new ThrottledInputStream(input, throttle);
+        }
+
+        OutputStream output = ftp2.storeFileStream(ftp2VO.getFileName());
+        if (output == null) {
+            closeQuietly(input);
+            ftp1.completePendingCommand();
+            logger.error("Couldn't initiate transfer. Check that filenames are valid.");
+            return false;
+        }
+
+        if (bufferRing == null) {
+            bufferRing = new BufferRing(PROXY_BUFFER_COUNT, PROXY_BUFFER_SIZE);
+        }
+
+        long bytes = 0L;
+        boolean copied = false;
+        try {
+            bytes = bufferRing.copy(input, output);
+            copied = true;
+        } finally {
+            closeQuietly(input);
+            closeQuietly(output);
+
+            // The replies of both servers are unknown when the copy failed, so the sessions cannot be used again.
+            if (!copied) {
+                abortRemoteTransfer();
+            }
+        }
+
+        // Read the replies of both servers, so that the sessions can be used again.
+        boolean completed1 = ftp1.completePendingCommand();
+        boolean completed2 = ftp2.completePendingCommand();
+
+        TransferMetrics metrics = getMetrics();
+        if (metrics != null) {
+            metrics.addBytes(bytes);
+        }
+
+        if (!completed1 || !completed2) {
+            logger.error("Transfer through the client failed.");
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Set the data connection mode of the transfer through the client, which is passive unless the
+     * FTP server refused PASV.
+     *
+     * @param ftp The instance of FTP client.
+     * @param vo The value object with FTP information.
+     */
+    private void setProxyMode(FTPClient ftp, FTPFileInfoVO vo) {
+
+        if (PASSIVE_REFUSED_HOSTS.contains(vo.getHostKey())) {
+            ftp.enterLocalActiveMode();
+        } else {
+            ftp.enterLocalPassiveMode();
+        }
+    }
+
+    /**
+     * Close the stream and do not care the result.
+     *
+     * @param closeable The stream.
+     */
+    private void closeQuietly(Closeable closeable) {
+        try {
+            if (closeable != null) {
+                closeable.close();
+            }
+        } catch (IOException e) {
+            logger.debug("closeQuietly", e);
+        }
+    }
+
+    /**
+     * Determine whether the control connections to both of FTP server are still alive with NOOP.
+     *
+     * @return The result of whether the control connections are alive.
+     */
+    @Override
+    protected boolean isSessionAlive() {
+        return isAlive(ftp1) && isAlive(ftp2);
+    }
+
     /**
      * Logout and disconnect from both of FTP server.
      */
@@ -242,4 +1008,174 @@ public class ServerToServer extends AbstractFTPClient {
             logger.error("ftp2 disconnect failed.", e);
         }
     }
+
+    /**
+     * The waiting for the reply of a FTP server after FXP.
+     */
+    private static class Completion implements Callable<Boolean> {
+
+        /**
+         * The FTP client of the server.
+         */
+        private final FTPClient ftp;
+
+        /**
+         * The latch which is counted down when the reply arrives.
+         */
+        private final CountDownLatch latch;
+
+        /**
+         * Constructor method.
+         *
+         * @param ftp The FTP client of the server.
+         * @param latch The latch which is counted down when the reply arrives.
+         */
+        Completion(FTPClient ftp, CountDownLatch latch) {
+            this.ftp = ftp;
+            this.latch = latch;
+        }
+
+        /**
+         * Wait for the reply of the FTP server.
+         *
+         * @return The result of whether the FTP server completed the transfer.
+         * @throws IOException
+         */
+        public Boolean call() throws IOException {
+            try {
+                return ftp.completePendingCommand();
+            } finally {
+                latch.countDown();
+            }
+        }
+    }
+
+    /**
+     * The queue of the files of a batch shared by the session pairs.
+     */
+    private static class PairQueue {
+
+        /**
+         * The FTP file URLs of server1.
+         */
+        private final List<String> server1Urls;
+
+        /**
+         * The FTP file URLs of server2.
+         */
+        private final List<String> server2Urls;
+
+        /**
+         * The results of the batch.
+         */
+        private final TransferResult[] results;
+
+        /**
+         * The index of the next file.
+         */
+        private final AtomicInteger next = new AtomicInteger();
+
+        /**
+         * The count of session pairs which take files.
+         */
+        private final AtomicInteger activePairs;
+
+        /**
+         * Constructor method.
+         *
+         * @param server1Urls The FTP file URLs of server1.
+         * @param server2Urls The FTP file URLs of server2.
+         * @param results The results of the batch.
+         * @param pairs The count of session pairs.
+         */
+        PairQueue(List<String> server1Urls, List<String> server2Urls, TransferResult[] results, int pairs) {
+            this.server1Urls = server1Urls;
+            this.server2Urls = server2Urls;
+            this.results = results;
+            this.activePairs = new AtomicInteger(pairs);
+        }
+
+        /**
+         * Take the next file.
+         *
+         * @return The index of the file, or -1 when there is no more.
+         */
+        int take() {
+            int index = next.getAndIncrement();
+            return index < results.length ? index : -1;
+        }
+
+        /**
+         * Stop a session pair taking files, unless it is the last one.
+         *
+         * @return The result of whether the session pair is stopped.
+         */
+        boolean retire() {
+
+            int count;
+            do {
+                count = activePairs.get();
+                if (count <= 1) {
+                    return false;
+                }
+            } while (!activePairs.compareAndSet(count, count - 1));
+
+            return true;
+        }
+    }
+
+    /**
+     * The worker that transfers the files taken from the queue over one session pair.
+     */
+    private static class PairWorker implements Runnable {
+
+        /**
+         * The client of the session pair.
+         */
+        private final ServerToServer client;
+
+        /**
+         * The queue of the files.
+         */
+        private final PairQueue queue;
+
+        /**
+         * Constructor method.
+         *
+         * @param client The client of the session pair.
+         * @param queue The queue of the files.
+         */
+        PairWorker(ServerToServer client, PairQueue queue) {
+            this.client = client;
+            this.queue = queue;
+        }
+
+        /**
+         * Transfer the files until the queue has no more, or the session pair fails too many.
+         */
+        public void run() {
+
+            client.setKeepSession(true);
+            try {
+
+                int failures = 0;
+                int index;
+                while ((index = queue.take()) != -1) {
+
+                    TransferResult result = client.transferKept(queue.server1Urls.get(index), queue.server2Urls.get(index));
+                    queue.results[index] = result;
+
+                    failures = result.isSuccess() ? 0 : failures + 1;
+                    if (failures >= MAX_PAIR_FAILURES && queue.retire()) {
+                        logger.warn("Transfer pair stops after " + failures + " failed files in a row.");
+                        break;
+                    }
+                }
+
+            } finally {
+                client.setKeepSession(false);
+                client.releaseRetainedSession();
+            }
+        }
+    }
 }
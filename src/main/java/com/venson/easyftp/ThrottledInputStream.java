@@ -0,0 +1,66 @@
+package com.venson.easyftp;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The input stream which waits for the throttle after the bytes are read.
+ *
+ * @author venson
+ */
+class ThrottledInputStream extends FilterInputStream {
+
+    /**
+     * The throttle.
+     */
+    private final BandwidthLimiter.Throttle throttle;
+
+    /**
+     * Constructor method.
+     *
+     * @param in The input stream.
+     * @param throttle The throttle.
+     */
+    ThrottledInputStream(InputStream in, BandwidthLimiter.Throttle throttle) {
+        super(in);
+        this.throttle = throttle;
+    }
+
+    /**
+     * Read a byte and wait for the throttle.
+     *
+     * @return The byte, or -1 at the end of the stream.
+     * @throws IOException
+     */
+    @Override
+    public int read() throws IOException {
+
+        int b = in.read();
+        if (b != -1) {
+            throttle.acquire(1L);
+        }
+
+        return b;
+    }
+
+    /**
+     * Read the bytes and wait for the throttle.
+     *
+     * @param b The buffer.
+     * @param off The start offset of the buffer.
+     * @param len The max count of bytes to read.
+     * @return The count of bytes read, or -1 at the end of the stream.
+     * @throws IOException
+     */
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+
+        int read = in.read(b, off, len);
+        if (read > 0) {
+            throttle.acquire(read);
+        }
+
+        return read;
+    }
+}
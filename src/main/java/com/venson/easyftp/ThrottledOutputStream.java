@@ -0,0 +1,55 @@
+package com.venson.easyftp;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The output stream which waits for the throttle before the bytes are written.
+ *
+ * @author venson
+ */
+class ThrottledOutputStream extends FilterOutputStream {
+
+    /**
+     * The throttle.
+     */
+    private final BandwidthLimiter.Throttle throttle;
+
+    /**
+     * Constructor method.
+     *
+     * @param out The output stream.
+     * @param throttle The throttle.
+     */
+    ThrottledOutputStream(OutputStream out, BandwidthLimiter.Throttle throttle) {
+        super(out);
+        this.throttle = throttle;
+    }
+
+    /**
+     * Wait for the throttle and write a byte.
+     *
+     * @param b The byte.
+     * @throws IOException
+     */
+    @Override
+    public void write(int b) throws IOException {
+        throttle.acquire(1L);
+        out.write(b);
+    }
+
+    /**
+     * Wait for the throttle and write the bytes.
+     *
+     * @param b The buffer.
+     * @param off The start offset of the buffer.
+     * @param len The count of bytes to write.
+     * @throws IOException
+     */
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        throttle.acquire(len);
+        out.write(b, off, len);
+    }
+}
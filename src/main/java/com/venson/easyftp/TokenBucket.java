@@ -0,0 +1,87 @@
+package com.venson.easyftp;
+
+/**
+ * The token bucket which refills at its rate, and holds at most the tokens of one second.
+ * The bytes are taken at once even when the tokens are not enough, and the debt tells the
+ * caller how long to wait, so that the concurrent callers share the rate in turn.
+ *
+ * @author venson
+ */
+class TokenBucket {
+
+    /**
+     * The count of nanoseconds in a second.
+     */
+    private static final double NANOS_PER_SECOND = 1000000000.0d;
+
+    /**
+     * The rate of refill, 0 means no limit.(byte/second)
+     */
+    private volatile long rate;
+
+    /**
+     * The count of tokens, which is negative when it is in debt.
+     */
+    private double tokens;
+
+    /**
+     * The time of last refill.(nanosecond)
+     */
+    private long lastRefillTime;
+
+    /**
+     * Constructor method, and the bucket starts full.
+     *
+     * @param rate The rate of refill.(byte/second)
+     */
+    TokenBucket(long rate) {
+        this.rate = rate;
+        this.tokens = rate;
+        this.lastRefillTime = System.nanoTime();
+    }
+
+    /**
+     * Get the rate of refill.(byte/second)
+     *
+     * @return The rate of refill.(byte/second)
+     */
+    long getRate() {
+        return rate;
+    }
+
+    /**
+     * Set the rate of refill, 0 means no limit.(byte/second)
+     *
+     * @param rate The rate of refill.(byte/second)
+     */
+    void setRate(long rate) {
+        this.rate = rate;
+    }
+
+    /**
+     * Take the tokens of the bytes from the bucket.
+     *
+     * @param bytes The count of bytes.
+     * @return The time to wait until the debt is paid off.(nanosecond)
+     */
+    synchronized long reserve(long bytes) {
+
+        long now = System.nanoTime();
+        long currentRate = rate;
+        if (currentRate <= 0) {
+            lastRefillTime = now;
+            return 0L;
+        }
+
+        // Refill the tokens since last time, up to the tokens of one second.
+        tokens = Math.min(currentRate, tokens + (now - lastRefillTime) / NANOS_PER_SECOND * currentRate);
+        lastRefillTime = now;
+
+        tokens -= bytes;
+        if (tokens >= 0) {
+            return 0L;
+        }
+
+        return (long) (-tokens / currentRate * NANOS_PER_SECOND);
+    }
+}
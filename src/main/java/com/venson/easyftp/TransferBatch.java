@@ -0,0 +1,468 @@
+package com.venson.easyftp;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A batch of file transfers between FTP servers and local, which are executed by
+ * TransferExecutor with the same transfer settings.
+ *
+ * @author venson
+ */
+public class TransferBatch {
+
+    /**
+     * The transfer items.
+     */
+    private final List<Item> items = new ArrayList<Item>();
+
+    /**
+     * The transfer settings, copied to each FTP client of the batch.
+     */
+    private final TransferSettings settings = new TransferSettings();
+
+    /**
+     * Add a file transfer to the batch.
+     *
+     * @param remote The FTP file URL.
+     * @param local The local file URL.
+     */
+    public void add(String remote, String local) {
+        items.add(new Item(remote, local));
+    }
+
+    /**
+     * Get the count of file transfers.
+     *
+     * @return The count of file transfers.
+     */
+    public int size() {
+        return items.size();
+    }
+
+    /**
+     * Get the transfer settings of the batch.
+     *
+     * @return The transfer settings.
+     */
+    TransferSettings getSettings() {
+        return settings;
+    }
+
+    /**
+     * Get the FTP transfer mode.
+     *
+     * @return The FTP transfer mode.
+     */
+    public FTPTransferMode getTransferMode() {
+        return settings.getTransferMode();
+    }
+
+    /**
+     * Set the FTP transfer mode.(download or upload)
+     *
+     * @param transferMode The FTP transfer mode.
+     */
+    public void setTransferMode(FTPTransferMode transferMode) {
+        settings.setTransferMode(transferMode);
+    }
+
+    /**
+     * Get the resume broken flag.
+     *
+     * @return The resume broken flag.
+     */
+    public boolean isResumeBroken() {
+        return settings.isResumeBroken();
+    }
+
+    /**
+     * Set the resume broken flag.
+     *
+     * @param resumeBroken The resume broken flag.
+     */
+    public void setResumeBroken(boolean resumeBroken) {
+        settings.setResumeBroken(resumeBroken);
+    }
+
+    /**
+     * Get the max count of retry time.
+     *
+     * @return The max count of retry time.
+     */
+    public int getRetryTimes() {
+        return settings.getRetryTimes();
+    }
+
+    /**
+     * Set the max count of retry time.
+     *
+     * @param retryTimes The max count of retry time.
+     */
+    public void setRetryTimes(int retryTimes) {
+        settings.setRetryTimes(retryTimes);
+    }
+
+    /**
+     * Get the interval wait time between retries.(second)
+     *
+     * @return The interval wait time between retries.(second)
+     */
+    public long getRetryWaitTime() {
+        return settings.getRetryWaitTime();
+    }
+
+    /**
+     * Set the interval wait time between retries.(second)
+     *
+     * @param retryWaitTime The interval wait time between retries.(second)
+     */
+    public void setRetryWaitTime(long retryWaitTime) {
+        settings.setRetryWaitTime(retryWaitTime);
+    }
+
+    /**
+     * Get the policy of retry.
+     *
+     * @return The policy of retry.
+     */
+    public RetryPolicy getRetryPolicy() {
+        return settings.getRetryPolicy();
+    }
+
+    /**
+     * Set the policy of retry, which replaces the max count of retry time and the interval
+     * wait time.
+     *
+     * @param retryPolicy The policy of retry.
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        settings.setRetryPolicy(retryPolicy);
+    }
+
+    /**
+     * Get the budget of retries.
+     *
+     * @return The budget of retries.
+     */
+    public RetryBudget getRetryBudget() {
+        return settings.getRetryBudget();
+    }
+
+    /**
+     * Set the budget of retries shared by FTP clients.
+     *
+     * @param retryBudget The budget of retries.
+     */
+    public void setRetryBudget(RetryBudget retryBudget) {
+        settings.setRetryBudget(retryBudget);
+    }
+
+    /**
+     * Get the circuit breaker.
+     *
+     * @return The circuit breaker.
+     */
+    public CircuitBreaker getCircuitBreaker() {
+        return settings.getCircuitBreaker();
+    }
+
+    /**
+     * Set the circuit breaker shared by FTP clients.
+     *
+     * @param circuitBreaker The circuit breaker.
+     */
+    public void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        settings.setCircuitBreaker(circuitBreaker);
+    }
+
+    /**
+     * Get the algorithm of checksum computed during transfer.
+     *
+     * @return The algorithm of checksum.
+     */
+    public ChecksumAlgorithm getChecksumAlgorithm() {
+        return settings.getChecksumAlgorithm();
+    }
+
+    /**
+     * Set the algorithm of checksum computed during transfer.
+     *
+     * @param checksumAlgorithm The algorithm of checksum.
+     */
+    public void setChecksumAlgorithm(ChecksumAlgorithm checksumAlgorithm) {
+        settings.setChecksumAlgorithm(checksumAlgorithm);
+    }
+
+    /**
+     * Get the flag of whether to verify the checksum with the one computed by FTP server.
+     *
+     * @return The flag of whether to verify the checksum.
+     */
+    public boolean isVerifyChecksum() {
+        return settings.isVerifyChecksum();
+    }
+
+    /**
+     * Set the flag of whether to verify the checksum with the one computed by FTP server.
+     *
+     * @param verifyChecksum The flag of whether to verify the checksum.
+     */
+    public void setVerifyChecksum(boolean verifyChecksum) {
+        settings.setVerifyChecksum(verifyChecksum);
+    }
+
+    /**
+     * Get the bandwidth limiter shared by FTP clients.
+     *
+     * @return The bandwidth limiter.
+     */
+    public BandwidthLimiter getBandwidthLimiter() {
+        return settings.getBandwidthLimiter();
+    }
+
+    /**
+     * Set the bandwidth limiter shared by FTP clients.
+     *
+     * @param bandwidthLimiter The bandwidth limiter.
+     */
+    public void setBandwidthLimiter(BandwidthLimiter bandwidthLimiter) {
+        settings.setBandwidthLimiter(bandwidthLimiter);
+    }
+
+    /**
+     * Get the adaptive limiter of concurrent connections shared by FTP clients.
+     *
+     * @return The adaptive limiter of concurrent connections.
+     */
+    public AdaptiveConcurrencyLimiter getConcurrencyLimiter() {
+        return settings.getConcurrencyLimiter();
+    }
+
+    /**
+     * Set the adaptive limiter of concurrent connections shared by FTP clients.
+     *
+     * @param concurrencyLimiter The adaptive limiter of concurrent connections.
+     */
+    public void setConcurrencyLimiter(AdaptiveConcurrencyLimiter concurrencyLimiter) {
+        settings.setConcurrencyLimiter(concurrencyLimiter);
+    }
+
+    /**
+     * Get the registry which the metrics of transfers are aggregated in.
+     *
+     * @return The metrics registry.
+     */
+    public MetricsRegistry getMetricsRegistry() {
+        return settings.getMetricsRegistry();
+    }
+
+    /**
+     * Set the registry which the metrics of transfers are aggregated in.
+     *
+     * @param metricsRegistry The metrics registry.
+     */
+    public void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        settings.setMetricsRegistry(metricsRegistry);
+    }
+
+    /**
+     * Get the monitor which the active transfers are registered to.
+     *
+     * @return The monitor.
+     */
+    public EasyFTPMonitor getMonitor() {
+        return settings.getMonitor();
+    }
+
+    /**
+     * Set the monitor which the active transfers are registered to.
+     *
+     * @param monitor The monitor.
+     */
+    public void setMonitor(EasyFTPMonitor monitor) {
+        settings.setMonitor(monitor);
+    }
+
+    /**
+     * Get the listener which is notified of the events of FTP clients.
+     *
+     * @return The FTP event listener.
+     */
+    public FTPEventListener getEventListener() {
+        return settings.getEventListener();
+    }
+
+    /**
+     * Set the listener which is notified of the events of FTP clients.
+     *
+     * @param eventListener The FTP event listener.
+     */
+    public void setEventListener(FTPEventListener eventListener) {
+        settings.setEventListener(eventListener);
+    }
+
+    /**
+     * Get the count of segments downloaded in parallel.
+     *
+     * @return The count of segments downloaded in parallel.
+     */
+    public int getDownloadSegments() {
+        return settings.getDownloadSegments();
+    }
+
+    /**
+     * Set the count of segments downloaded in parallel, each segment uses its own
+     * connection to FTP server. Defaults to 1, which means no segment.
+     *
+     * @param downloadSegments The count of segments downloaded in parallel.
+     */
+    public void setDownloadSegments(int downloadSegments) {
+        settings.setDownloadSegments(downloadSegments);
+    }
+
+    /**
+     * Get the min size of each download segment.(byte)
+     *
+     * @return The min size of each download segment.(byte)
+     */
+    public long getMinSegmentSize() {
+        return settings.getMinSegmentSize();
+    }
+
+    /**
+     * Set the min size of each download segment.(byte)
+     *
+     * @param minSegmentSize The min size of each download segment.(byte)
+     */
+    public void setMinSegmentSize(long minSegmentSize) {
+        settings.setMinSegmentSize(minSegmentSize);
+    }
+
+    /**
+     * Get the size of direct buffer to download through file channel.(byte)
+     *
+     * @return The size of direct buffer.(byte)
+     */
+    public int getDownloadBufferSize() {
+        return settings.getDownloadBufferSize();
+    }
+
+    /**
+     * Set the size of direct buffer to download through file channel, which reads the data
+     * connection into a pooled direct buffer and writes it to the local file without copying
+     * through byte arrays. Defaults to 0, which means download through stream.(byte)
+     *
+     * @param downloadBufferSize The size of direct buffer.(byte)
+     */
+    public void setDownloadBufferSize(int downloadBufferSize) {
+        settings.setDownloadBufferSize(downloadBufferSize);
+    }
+
+    /**
+     * Get the flag of whether to preallocate the local file to the remote size.
+     *
+     * @return The flag of whether to preallocate the local file.
+     */
+    public boolean isPreallocate() {
+        return settings.isPreallocate();
+    }
+
+    /**
+     * Set the flag of whether to preallocate the local file to the remote size when download
+     * through file channel. It is skipped in resume broken transfer mode, where the size of the
+     * local file tells how much has been downloaded. Defaults to off.
+     *
+     * @param preallocate The flag of whether to preallocate the local file.
+     */
+    public void setPreallocate(boolean preallocate) {
+        settings.setPreallocate(preallocate);
+    }
+
+    /**
+     * Get the flag of whether to upload with FileChannel.transferTo.
+     *
+     * @return The flag of whether to upload with FileChannel.transferTo.
+     */
+    public boolean isZeroCopyUpload() {
+        return settings.isZeroCopyUpload();
+    }
+
+    /**
+     * Set the flag of whether to upload with FileChannel.transferTo, which lets the operating
+     * system send the local file to the data connection from the resume broken point without
+     * copying it through the heap. It falls back to stream when the checksum is computed.
+     * Defaults to off.
+     *
+     * @param zeroCopyUpload The flag of whether to upload with FileChannel.transferTo.
+     */
+    public void setZeroCopyUpload(boolean zeroCopyUpload) {
+        settings.setZeroCopyUpload(zeroCopyUpload);
+    }
+
+    /**
+     * Get the size of the tail of the local file verified before resume.(byte)
+     *
+     * @return The size of the tail of the local file verified before resume.(byte)
+     */
+    public long getResumeVerifyWindow() {
+        return settings.getResumeVerifyWindow();
+    }
+
+    /**
+     * Set the size of the tail of the local file verified before resume. The tail is compared
+     * with the same range read again from FTP server, and the local file is cut at the first
+     * different byte, so that a corrupted tail left by a crash is downloaded again. Defaults to
+     * 0, which means no verification.(byte)
+     *
+     * @param resumeVerifyWindow The size of the tail of the local file verified before resume.(byte)
+     */
+    public void setResumeVerifyWindow(long resumeVerifyWindow) {
+        settings.setResumeVerifyWindow(resumeVerifyWindow);
+    }
+
+    /**
+     * Get the transfer items.
+     *
+     * @return The transfer items.
+     */
+    List<Item> getItems() {
+        return Collections.unmodifiableList(items);
+    }
+
+    /**
+     * The pair of FTP file URL and local file URL.
+     */
+    static class Item {
+
+        /**
+         * The FTP file URL.
+         */
+        private final String remote;
+
+        /**
+         * The local file URL.
+         */
+        private final String local;
+
+        /**
+         * Constructor method.
+         *
+         * @param remote The FTP file URL.
+         * @param local The local file URL.
+         */
+        Item(String remote, String local) {
+            this.remote = remote;
+            this.local = local;
+        }
+
+        String getRemote() {
+            return remote;
+        }
+
+        String getLocal() {
+            return local;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.venson.easyftp;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The value object with the results of a batch of file transfers and their statistics.
+ *
+ * @author venson
+ */
+public class TransferBatchResult {
+
+    /**
+     * The results in the order of the batch.
+     */
+    private final List<TransferResult> results;
+
+    /**
+     * The elapsed time of the batch.(millisecond)
+     */
+    private final long elapsedTime;
+
+    /**
+     * Constructor method.
+     *
+     * @param results The results in the order of the batch.
+     * @param elapsedTime The elapsed time of the batch.(millisecond)
+     */
+    public TransferBatchResult(List<TransferResult> results, long elapsedTime) {
+        this.results = Collections.unmodifiableList(results);
+        this.elapsedTime = elapsedTime;
+    }
+
+    /**
+     * Get the results in the order of the batch.
+     *
+     * @return The results in the order of the batch.
+     */
+    public List<TransferResult> getResults() {
+        return results;
+    }
+
+    /**
+     * Get the elapsed time of the batch.(millisecond)
+     *
+     * @return The elapsed time of the batch.(millisecond)
+     */
+    public long getElapsedTime() {
+        return elapsedTime;
+    }
+
+    /**
+     * Get the count of succeeded transfers.
+     *
+     * @return The count of succeeded transfers.
+     */
+    public int getSucceededCount() {
+
+        int count = 0;
+        for (TransferResult result : results) {
+            if (result.isSuccess()) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Get the count of failed transfers.
+     *
+     * @return The count of failed transfers.
+     */
+    public int getFailedCount() {
+        return results.size() - getSucceededCount();
+    }
+
+    /**
+     * Get the total count of retry time.
+     *
+     * @return The total count of retry time.
+     */
+    public int getRetryTimes() {
+
+        int count = 0;
+        for (TransferResult result : results) {
+            count += result.getRetryTimes();
+        }
+
+        return count;
+    }
+}
@@ -0,0 +1,159 @@
+package com.venson.easyftp;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+/**
+ * The checksum updated with the bytes as they pass through the transfer.
+ *
+ * @author venson
+ */
+class TransferChecksum {
+
+    /**
+     * The buffer size of reading the local file.(64KB)
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The hex digits.
+     */
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * The message digest, null when it is a CRC.
+     */
+    private final MessageDigest digest;
+
+    /**
+     * The CRC, null when it is a message digest.
+     */
+    private final Checksum crc;
+
+    /**
+     * Constructor method.
+     *
+     * @param algorithm The algorithm of checksum.
+     */
+    TransferChecksum(ChecksumAlgorithm algorithm) {
+
+        switch (algorithm) {
+        case CRC32:
+            digest = null;
+            crc = new CRC32();
+            break;
+        case CRC32C:
+            digest = null;
+            crc = new CRC32C();
+            break;
+        default:
+            try {
+                digest = MessageDigest.getInstance(algorithm.getHashName());
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+            crc = null;
+        }
+    }
+
+    /**
+     * Update the checksum with the bytes.
+     *
+     * @param b The bytes.
+     * @param off The start offset of the bytes.
+     * @param len The count of the bytes.
+     */
+    void update(byte[] b, int off, int len) {
+        if (digest != null) {
+            digest.update(b, off, len);
+        } else {
+            crc.update(b, off, len);
+        }
+    }
+
+    /**
+     * Update the checksum with the remaining bytes of the buffer, and consume them.
+     *
+     * @param buffer The buffer.
+     */
+    void update(ByteBuffer buffer) {
+
+        if (digest != null) {
+            digest.update(buffer);
+            return;
+        }
+
+        // CRC can only be updated with bytes before Java 8.
+        if (buffer.hasArray()) {
+            crc.update(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.position(buffer.limit());
+            return;
+        }
+
+        byte[] bytes = new byte[Math.min(buffer.remaining(), BUFFER_SIZE)];
+        while (buffer.hasRemaining()) {
+            int length = Math.min(bytes.length, buffer.remaining());
+            buffer.get(bytes, 0, length);
+            crc.update(bytes, 0, length);
+        }
+    }
+
+    /**
+     * Update the checksum with the beginning of the local file.
+     *
+     * @param file The local file.
+     * @param length The length from the beginning.
+     * @throws IOException
+     */
+    void update(File file, long length) throws IOException {
+
+        InputStream input = new FileInputStream(file);
+        try {
+
+            byte[] buffer = new byte[BUFFER_SIZE];
+            long remaining = length;
+            while (remaining > 0) {
+
+                int read = input.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+                if (read == -1) {
+                    throw new IOException("Local file is shorter than " + length + " .");
+                }
+
+                update(buffer, 0, read);
+                remaining -= read;
+            }
+
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Get the checksum in lower case hex.
+     *
+     * @return The checksum.
+     */
+    String getValue() {
+
+        if (digest != null) {
+
+            byte[] bytes = digest.digest();
+            char[] chars = new char[bytes.length * 2];
+            for (int i = 0; i < bytes.length; i++) {
+                chars[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0x0F];
+                chars[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0x0F];
+            }
+            return new String(chars);
+        }
+
+        String hex = Long.toHexString(crc.getValue());
+        return "00000000".substring(hex.length()) + hex;
+    }
+}
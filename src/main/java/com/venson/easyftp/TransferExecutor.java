@@ -0,0 +1,392 @@
+package com.venson.easyftp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * TransferExecutor executes a batch of file transfers with a bounded count of workers.
+ * Each worker reuses one ServerToClient, and all workers share one connection pool,
+ * and the count of concurrent transfers to one FTP server is limited.
+ *
+ * @author venson
+ */
+public class TransferExecutor {
+
+    /**
+     * The logger of this class.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(TransferExecutor.class);
+
+    /**
+     * The count of workers.
+     */
+    private final int workers;
+
+    /**
+     * The thread pool of workers.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * The max count of concurrent transfers to one FTP server.
+     */
+    private int maxConnectionsPerHost;
+
+    /**
+     * The pool of logged-in FTP clients shared by workers.
+     */
+    private FTPClientPool connectionPool = new FTPClientPool();
+
+    /**
+     * Constructor method.
+     *
+     * @param workers The count of workers.
+     */
+    public TransferExecutor(int workers) {
+
+        if (workers <= 0) {
+            throw new IllegalArgumentException("The count of workers must be positive.");
+        }
+
+        this.workers = workers;
+        this.maxConnectionsPerHost = workers;
+        this.executor = Executors.newFixedThreadPool(workers);
+    }
+
+    /**
+     * Get the count of workers.
+     *
+     * @return The count of workers.
+     */
+    public int getWorkers() {
+        return workers;
+    }
+
+    /**
+     * Get the max count of concurrent transfers to one FTP server.
+     *
+     * @return The max count of concurrent transfers to one FTP server.
+     */
+    public int getMaxConnectionsPerHost() {
+        return maxConnectionsPerHost;
+    }
+
+    /**
+     * Set the max count of concurrent transfers to one FTP server. Defaults to the count of workers.
+     *
+     * @param maxConnectionsPerHost The max count of concurrent transfers to one FTP server.
+     */
+    public void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+    }
+
+    /**
+     * Get the pool of logged-in FTP clients shared by workers.
+     *
+     * @return The pool of logged-in FTP clients.
+     */
+    public FTPClientPool getConnectionPool() {
+        return connectionPool;
+    }
+
+    /**
+     * Set the pool of logged-in FTP clients shared by workers.
+     *
+     * @param connectionPool The pool of logged-in FTP clients.
+     */
+    public void setConnectionPool(FTPClientPool connectionPool) {
+        this.connectionPool = connectionPool;
+    }
+
+    /**
+     * Execute the batch of file transfers and wait for all of them finished.
+     *
+     * @param batch The batch of file transfers.
+     * @return The results of the batch.
+     */
+    public TransferBatchResult execute(TransferBatch batch) {
+
+        long startTime = System.currentTimeMillis();
+
+        List<TransferBatch.Item> items = batch.getItems();
+        TransferResult[] results = new TransferResult[items.size()];
+        BatchScheduler scheduler = new BatchScheduler(maxConnectionsPerHost);
+
+        // Group the transfers by FTP server, and fail the invalid ones at once.
+        for (int i = 0; i < items.size(); i++) {
+
+            TransferBatch.Item item = items.get(i);
+            try {
+                scheduler.add(AbstractFTPClient.convertFTPUrlToVO(item.getRemote()).getHostKey(), i);
+            } catch (IllegalArgumentException e) {
+                results[i] = createResult(item);
+                results[i].setCause(e);
+            }
+        }
+
+        // Start the workers.
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (int i = 0; i < Math.min(workers, scheduler.size()); i++) {
+            futures.add(executor.submit(new Worker(batch, scheduler, results)));
+        }
+
+        // Wait for the workers.
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                logger.error("Transfer worker failed.", e.getCause());
+            } catch (InterruptedException e) {
+                logger.error("Transfer batch interrupted.", e);
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+
+        // The transfers which are not executed.
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] == null) {
+                results[i] = createResult(items.get(i));
+            }
+        }
+
+        return new TransferBatchResult(Arrays.asList(results), System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * Shutdown the workers and close the connection pool.
+     */
+    public void shutdown() {
+
+        executor.shutdown();
+
+        if (connectionPool != null) {
+            connectionPool.close();
+        }
+    }
+
+    /**
+     * Create the failed result of the transfer item.
+     *
+     * @param item The transfer item.
+     * @return The failed result.
+     */
+    private static TransferResult createResult(TransferBatch.Item item) {
+
+        TransferResult result = new TransferResult();
+        result.setSource(item.getRemote());
+        result.setDestination(item.getLocal());
+        result.setSuccess(false);
+
+        return result;
+    }
+
+    /**
+     * The worker that executes the transfers with its own ServerToClient.
+     */
+    private class Worker implements Runnable {
+
+        /**
+         * The batch of file transfers.
+         */
+        private final TransferBatch batch;
+
+        /**
+         * The scheduler of the batch.
+         */
+        private final BatchScheduler scheduler;
+
+        /**
+         * The results of the batch.
+         */
+        private final TransferResult[] results;
+
+        /**
+         * Constructor method.
+         *
+         * @param batch The batch of file transfers.
+         * @param scheduler The scheduler of the batch.
+         * @param results The results of the batch.
+         */
+        Worker(TransferBatch batch, BatchScheduler scheduler, TransferResult[] results) {
+            this.batch = batch;
+            this.scheduler = scheduler;
+            this.results = results;
+        }
+
+        /**
+         * Execute the transfers until the batch has no more or the worker is interrupted.
+         */
+        public void run() {
+
+            ServerToClient client = new ServerToClient();
+            batch.getSettings().copyTo(client);
+            client.setConnectionPool(connectionPool);
+
+            List<TransferBatch.Item> items = batch.getItems();
+
+            try {
+
+                // Stop taking transfers once the worker is interrupted.
+                int index;
+                while (!Thread.currentThread().isInterrupted() && (index = scheduler.next()) != -1) {
+
+                    TransferBatch.Item item = items.get(index);
+                    TransferResult result = createResult(item);
+                    long startTime = System.currentTimeMillis();
+
+                    try {
+                        result.setSuccess(client.transfer(item.getRemote(), item.getLocal()));
+                        result.setChecksum(client.getChecksum());
+                        result.setMetrics(client.getMetrics());
+                        result.setRetryTimes(client.getCurrentRetryTimes());
+                    } catch (RuntimeException e) {
+                        logger.error("Transfer " + item.getRemote() + " failed.", e);
+                        result.setCause(e);
+                    } finally {
+                        result.setElapsedTime(System.currentTimeMillis() - startTime);
+                        results[index] = result;
+                        scheduler.done(index);
+                    }
+                }
+
+            } catch (InterruptedException e) {
+                logger.error("Transfer worker interrupted.", e);
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * The scheduler that hands out the transfers of FTP servers in turn, and limits the count
+     * of concurrent transfers to one FTP server.
+     */
+    private static class BatchScheduler {
+
+        /**
+         * The max count of concurrent transfers to one FTP server.
+         */
+        private final int maxConnectionsPerHost;
+
+        /**
+         * The pending transfers grouped by FTP server.
+         */
+        private final Map<String, LinkedList<Integer>> pending = new LinkedHashMap<String, LinkedList<Integer>>();
+
+        /**
+         * The FTP servers of the running transfers.
+         */
+        private final Map<Integer, String> running = new HashMap<Integer, String>();
+
+        /**
+         * The count of running transfers grouped by FTP server.
+         */
+        private final Map<String, Integer> active = new HashMap<String, Integer>();
+
+        /**
+         * The count of pending transfers.
+         */
+        private int size = 0;
+
+        /**
+         * Constructor method.
+         *
+         * @param maxConnectionsPerHost The max count of concurrent transfers to one FTP server.
+         */
+        BatchScheduler(int maxConnectionsPerHost) {
+            this.maxConnectionsPerHost = Math.max(1, maxConnectionsPerHost);
+        }
+
+        /**
+         * Add a pending transfer.
+         *
+         * @param host The FTP server.
+         * @param index The index of the transfer.
+         */
+        synchronized void add(String host, int index) {
+
+            LinkedList<Integer> indexes = pending.get(host);
+            if (indexes == null) {
+                indexes = new LinkedList<Integer>();
+                pending.put(host, indexes);
+            }
+
+            indexes.add(index);
+            size++;
+        }
+
+        /**
+         * Get the count of pending transfers.
+         *
+         * @return The count of pending transfers.
+         */
+        synchronized int size() {
+            return size;
+        }
+
+        /**
+         * Wait for the next transfer whose FTP server is not busy.
+         *
+         * @return The index of the transfer, or -1 when there is no more.
+         * @throws InterruptedException
+         */
+        synchronized int next() throws InterruptedException {
+
+            while (!pending.isEmpty()) {
+
+                Iterator<Map.Entry<String, LinkedList<Integer>>> it = pending.entrySet().iterator();
+                while (it.hasNext()) {
+
+                    Map.Entry<String, LinkedList<Integer>> entry = it.next();
+                    String host = entry.getKey();
+                    int count = active.containsKey(host) ? active.get(host) : 0;
+                    if (count >= maxConnectionsPerHost) {
+                        continue;
+                    }
+
+                    int index = entry.getValue().removeFirst();
+                    it.remove();
+
+                    // Move the FTP server to the tail, so that the servers take turns.
+                    if (!entry.getValue().isEmpty()) {
+                        pending.put(host, entry.getValue());
+                    }
+
+                    active.put(host, count + 1);
+                    running.put(index, host);
+                    size--;
+                    return index;
+                }
+
+                wait();
+            }
+
+            return -1;
+        }
+
+        /**
+         * Mark the transfer finished.
+         *
+         * @param index The index of the transfer.
+         */
+        synchronized void done(int index) {
+
+            String host = running.remove(index);
+            active.put(host, active.get(host) - 1);
+            notifyAll();
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.venson.easyftp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The pending result of an asynchronous file transfer. The listeners are notified
+ * when the file transfer is completed, but not when it is cancelled.
+ *
+ * @author venson
+ */
+public class TransferFuture implements Future<TransferResult> {
+
+    /**
+     * The logger of this class.
+     */
+    private static final Logger logger = LoggerFactory.getLogger(TransferFuture.class);
+
+    /**
+     * The latch released when the file transfer is completed or cancelled.
+     */
+    private final CountDownLatch latch = new CountDownLatch(1);
+
+    /**
+     * The listeners waiting for the result.
+     */
+    private final List<TransferListener> listeners = new ArrayList<TransferListener>();
+
+    /**
+     * The result of file transfer.
+     */
+    private TransferResult result = null;
+
+    /**
+     * The cancelled flag.
+     */
+    private boolean cancelled = false;
+
+    /**
+     * Add the listener which is notified when the file transfer is completed. When it has been
+     * completed, the listener is notified at once.
+     *
+     * @param listener The listener.
+     */
+    public void addListener(TransferListener listener) {
+
+        synchronized (this) {
+            if (!isDone()) {
+                listeners.add(listener);
+                return;
+            }
+        }
+
+        if (!cancelled) {
+            notifyListener(listener, result);
+        }
+    }
+
+    /**
+     * Complete the file transfer with the result.
+     *
+     * @param result The result of file transfer.
+     * @return False when it has been completed or cancelled.
+     */
+    boolean complete(TransferResult result) {
+
+        List<TransferListener> completedListeners = null;
+
+        synchronized (this) {
+
+            if (isDone()) {
+                return false;
+            }
+
+            this.result = result;
+            completedListeners = new ArrayList<TransferListener>(listeners);
+            listeners.clear();
+            latch.countDown();
+        }
+
+        for (TransferListener listener : completedListeners) {
+            notifyListener(listener, result);
+        }
+
+        return true;
+    }
+
+    /**
+     * Cancel the file transfer. The running attempt is not interrupted, but no more retry
+     * will be done.
+     *
+     * @param mayInterruptIfRunning Not used.
+     * @return False when it has been completed or cancelled.
+     */
+    public synchronized boolean cancel(boolean mayInterruptIfRunning) {
+
+        if (isDone()) {
+            return false;
+        }
+
+        cancelled = true;
+        listeners.clear();
+        latch.countDown();
+
+        return true;
+    }
+
+    /**
+     * Determine whether the file transfer is cancelled.
+     *
+     * @return The cancelled flag.
+     */
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Determine whether the file transfer is completed or cancelled.
+     *
+     * @return The result of whether the file transfer is completed or cancelled.
+     */
+    public boolean isDone() {
+        return latch.getCount() == 0;
+    }
+
+    /**
+     * Wait for the result of file transfer.
+     *
+     * @return The result of file transfer.
+     * @throws InterruptedException
+     */
+    public TransferResult get() throws InterruptedException {
+
+        latch.await();
+
+        return getResult();
+    }
+
+    /**
+     * Wait for the result of file transfer at most the given time.
+     *
+     * @param timeout The max time to wait.
+     * @param unit The time unit.
+     * @return The result of file transfer.
+     * @throws InterruptedException
+     * @throws TimeoutException
+     */
+    public TransferResult get(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+
+        if (!latch.await(timeout, unit)) {
+            throw new TimeoutException();
+        }
+
+        return getResult();
+    }
+
+    /**
+     * Get the result of file transfer after it is done.
+     *
+     * @return The result of file transfer.
+     */
+    private synchronized TransferResult getResult() {
+
+        if (cancelled) {
+            throw new CancellationException();
+        }
+
+        return result;
+    }
+
+    /**
+     * Notify the listener and do not care its failure.
+     *
+     * @param listener The listener.
+     * @param result The result of file transfer.
+     */
+    private static void notifyListener(TransferListener listener, TransferResult result) {
+        try {
+            listener.transferCompleted(result);
+        } catch (RuntimeException e) {
+            logger.error("Transfer listener failed.", e);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.venson.easyftp;
+
+import java.beans.ConstructorProperties;
+
+/**
+ * The value object with the snapshot of one active file transfer, which is shown by the monitor.
+ *
+ * @author venson
+ */
+public class TransferInfo {
+
+    /**
+     * The key of FTP server.
+     */
+    private final String hostKey;
+
+    /**
+     * The path of the remote file.
+     */
+    private final String path;
+
+    /**
+     * The count of bytes moved so far.
+     */
+    private final long bytesTransferred;
+
+    /**
+     * The rate since the transfer started.(byte/second)
+     */
+    private final long rate;
+
+    /**
+     * The elapsed time.(millisecond)
+     */
+    private final long elapsedTime;
+
+    /**
+     * The time since bytes were moved last.(millisecond)
+     */
+    private final long idleTime;
+
+    /**
+     * The count of retry time.
+     */
+    private final int retryTimes;
+
+    /**
+     * The flag of resume broken transfer mode.
+     */
+    private final boolean resumeBroken;
+
+    /**
+     * Constructor method.
+     *
+     * @param hostKey The key of FTP server.
+     * @param path The path of the remote file.
+     * @param bytesTransferred The count of bytes moved so far.
+     * @param rate The rate since the transfer started.(byte/second)
+     * @param elapsedTime The elapsed time.(millisecond)
+     * @param idleTime The time since bytes were moved last.(millisecond)
+     * @param retryTimes The count of retry time.
+     * @param resumeBroken The flag of resume broken transfer mode.
+     */
+    @ConstructorProperties({ "hostKey", "path", "bytesTransferred", "rate", "elapsedTime", "idleTime",
+        "retryTimes", "resumeBroken" })
+    public TransferInfo(String hostKey, String path, long bytesTransferred, long rate, long elapsedTime,
+        long idleTime, int retryTimes, boolean resumeBroken) {
+        this.hostKey = hostKey;
+        this.path = path;
+        this.bytesTransferred = bytesTransferred;
+        this.rate = rate;
+        this.elapsedTime = elapsedTime;
+        this.idleTime = idleTime;
+        this.retryTimes = retryTimes;
+        this.resumeBroken = resumeBroken;
+    }
+
+    public String getHostKey() {
+        return hostKey;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public long getBytesTransferred() {
+        return bytesTransferred;
+    }
+
+    public long getRate() {
+        return rate;
+    }
+
+    public long getElapsedTime() {
+        return elapsedTime;
+    }
+
+    public long getIdleTime() {
+        return idleTime;
+    }
+
+    public int getRetryTimes() {
+        return retryTimes;
+    }
+
+    public boolean isResumeBroken() {
+        return resumeBroken;
+    }
+}
@@ -0,0 +1,16 @@
+package com.venson.easyftp;
+
+/**
+ * The listener which is notified when an asynchronous file transfer is completed.
+ *
+ * @author venson
+ */
+public interface TransferListener {
+
+    /**
+     * Notify the result of the completed file transfer.
+     *
+     * @param result The result of file transfer.
+     */
+    void transferCompleted(TransferResult result);
+}
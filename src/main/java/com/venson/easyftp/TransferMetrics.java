@@ -0,0 +1,145 @@
+package com.venson.easyftp;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The metrics of one file transfer, which sums the time of each phase and the bytes moved
+ * over all attempts.
+ *
+ * @author venson
+ */
+public class TransferMetrics {
+
+    /**
+     * The time of each phase.(millisecond)
+     */
+    private final AtomicLongArray phaseTimes = new AtomicLongArray(TransferPhase.values().length);
+
+    /**
+     * The count of bytes moved.
+     */
+    private final AtomicLong bytesTransferred = new AtomicLong();
+
+    /**
+     * The count of retry time.
+     */
+    private volatile int retryTimes = 0;
+
+    /**
+     * The elapsed time.(millisecond)
+     */
+    private volatile long elapsedTime = 0L;
+
+    /**
+     * The start time of transfer.(millisecond)
+     */
+    private final long startTime = System.currentTimeMillis();
+
+    /**
+     * The time when bytes were moved last.(millisecond)
+     */
+    private volatile long lastActivityTime = startTime;
+
+    /**
+     * Get the time of the phase.(millisecond)
+     *
+     * @param phase The phase of file transfer.
+     * @return The time of the phase.(millisecond)
+     */
+    public long getPhaseTime(TransferPhase phase) {
+        return phaseTimes.get(phase.ordinal());
+    }
+
+    /**
+     * Get the count of bytes moved.
+     *
+     * @return The count of bytes moved.
+     */
+    public long getBytesTransferred() {
+        return bytesTransferred.get();
+    }
+
+    /**
+     * Get the count of retry time.
+     *
+     * @return The count of retry time.
+     */
+    public int getRetryTimes() {
+        return retryTimes;
+    }
+
+    /**
+     * Get the elapsed time.(millisecond)
+     *
+     * @return The elapsed time.(millisecond)
+     */
+    public long getElapsedTime() {
+        return elapsedTime;
+    }
+
+    /**
+     * Get the start time of transfer.(millisecond)
+     *
+     * @return The start time of transfer.(millisecond)
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Get the time when bytes were moved last, or the start time before any.(millisecond)
+     *
+     * @return The time when bytes were moved last.(millisecond)
+     */
+    public long getLastActivityTime() {
+        return lastActivityTime;
+    }
+
+    /**
+     * Get the effective throughput, which is the bytes moved over the elapsed time.(byte/second)
+     *
+     * @return The effective throughput.(byte/second)
+     */
+    public long getThroughput() {
+        return bytesTransferred.get() * 1000L / Math.max(elapsedTime, 1L);
+    }
+
+    /**
+     * Add the time to the phase.(millisecond)
+     *
+     * @param phase The phase of file transfer.
+     * @param time The time.(millisecond)
+     */
+    void addPhaseTime(TransferPhase phase, long time) {
+        phaseTimes.addAndGet(phase.ordinal(), time);
+    }
+
+    /**
+     * Add the count of bytes moved.
+     *
+     * @param bytes The count of bytes.
+     */
+    void addBytes(long bytes) {
+        bytesTransferred.addAndGet(bytes);
+        lastActivityTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Set the count of retry time.
+     *
+     * @param retryTimes The count of retry time.
+     */
+    void setRetryTimes(int retryTimes) {
+        this.retryTimes = retryTimes;
+    }
+
+    /**
+     * Set the elapsed time.(millisecond)
+     *
+     * @param elapsedTime The elapsed time.(millisecond)
+     */
+    void setElapsedTime(long elapsedTime) {
+        this.elapsedTime = elapsedTime;
+    }
+}
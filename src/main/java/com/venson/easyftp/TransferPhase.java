@@ -0,0 +1,39 @@
+package com.venson.easyftp;
+
+/**
+ * The phase of file transfer which the time is recorded for.
+ *
+ * @author venson
+ */
+public enum TransferPhase {
+
+    /**
+     * Connect to FTP server.
+     */
+    CONNECT,
+
+    /**
+     * Login to FTP server.
+     */
+    LOGIN,
+
+    /**
+     * Probe the metadata of the remote file.
+     */
+    PROBE,
+
+    /**
+     * Change the working directory.
+     */
+    CHANGE_DIR,
+
+    /**
+     * Transfer the data of the file.
+     */
+    TRANSFER,
+
+    /**
+     * Logout and disconnect from FTP server, or release the connection to the pool.
+     */
+    LOGOUT;
+}
@@ -0,0 +1,113 @@
+package com.venson.easyftp;
+
+/**
+ * The value object with the result of one file transfer.
+ *
+ * @author venson
+ */
+public class TransferResult {
+
+    /**
+     * The source URL.
+     */
+    private String source;
+
+    /**
+     * The destination URL.
+     */
+    private String destination;
+
+    /**
+     * The result of transfer.
+     */
+    private boolean success;
+
+    /**
+     * The count of retry time.
+     */
+    private int retryTimes;
+
+    /**
+     * The elapsed time.(millisecond)
+     */
+    private long elapsedTime;
+
+    /**
+     * The cause of failure.
+     */
+    private Throwable cause;
+
+    /**
+     * The checksum of the transferred file.
+     */
+    private String checksum;
+
+    /**
+     * The metrics of transfer.
+     */
+    private TransferMetrics metrics;
+
+    public String getSource() {
+        return source;
+    }
+
+    public void setSource(String source) {
+        this.source = source;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    public void setDestination(String destination) {
+        this.destination = destination;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public void setSuccess(boolean success) {
+        this.success = success;
+    }
+
+    public int getRetryTimes() {
+        return retryTimes;
+    }
+
+    public void setRetryTimes(int retryTimes) {
+        this.retryTimes = retryTimes;
+    }
+
+    public long getElapsedTime() {
+        return elapsedTime;
+    }
+
+    public void setElapsedTime(long elapsedTime) {
+        this.elapsedTime = elapsedTime;
+    }
+
+    public Throwable getCause() {
+        return cause;
+    }
+
+    public void setCause(Throwable cause) {
+        this.cause = cause;
+    }
+
+    public String getChecksum() {
+        return checksum;
+    }
+
+    public void setChecksum(String checksum) {
+        this.checksum = checksum;
+    }
+
+    public TransferMetrics getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(TransferMetrics metrics) {
+        this.metrics = metrics;
+    }
+}
@@ -0,0 +1,298 @@
+package com.venson.easyftp;
+
+/**
+ * The transfer settings shared by the FTP clients of TransferBatch and AsyncTransferService,
+ * which are copied to each ServerToClient they create. The defaults are the ones of ServerToClient.
+ *
+ * @author venson
+ */
+class TransferSettings {
+
+    /**
+     * The FTP transfer mode.(download)
+     */
+    private FTPTransferMode transferMode = FTPTransferMode.DOWNLOAD;
+
+    /**
+     * The resume broken flag.(true)
+     */
+    private boolean resumeBroken = true;
+
+    /**
+     * The max count of retry time.(0)
+     */
+    private int retryTimes = 0;
+
+    /**
+     * The interval wait time between retries.(1 second)
+     */
+    private long retryWaitTime = 1L;
+
+    /**
+     * The policy of retry, null means retry with the max count of retry time and the interval wait time.
+     */
+    private RetryPolicy retryPolicy = null;
+
+    /**
+     * The budget of retries shared by FTP clients, null means no limit.
+     */
+    private RetryBudget retryBudget = null;
+
+    /**
+     * The circuit breaker shared by FTP clients, null means no circuit breaker.
+     */
+    private CircuitBreaker circuitBreaker = null;
+
+    /**
+     * The algorithm of checksum computed during transfer, null means no checksum.
+     */
+    private ChecksumAlgorithm checksumAlgorithm = null;
+
+    /**
+     * The flag of whether to verify the checksum with the one computed by FTP server.(false)
+     */
+    private boolean verifyChecksum = false;
+
+    /**
+     * The bandwidth limiter shared by FTP clients, null means no limit.
+     */
+    private BandwidthLimiter bandwidthLimiter = null;
+
+    /**
+     * The adaptive limiter of concurrent connections shared by FTP clients, null means no limit.
+     */
+    private AdaptiveConcurrencyLimiter concurrencyLimiter = null;
+
+    /**
+     * The registry which the metrics of transfers are aggregated in, null means no registry.
+     */
+    private MetricsRegistry metricsRegistry = null;
+
+    /**
+     * The monitor which the active transfers are registered to, null means no monitor.
+     */
+    private EasyFTPMonitor monitor = null;
+
+    /**
+     * The listener which is notified of the events of FTP client, null means no listener.
+     */
+    private FTPEventListener eventListener = null;
+
+    /**
+     * The count of segments downloaded in parallel.(1)
+     */
+    private int downloadSegments = 1;
+
+    /**
+     * The min size of each download segment.(1MB)
+     */
+    private long minSegmentSize = 1024L * 1024L;
+
+    /**
+     * The size of direct buffer to download through file channel, 0 means download through stream.
+     */
+    private int downloadBufferSize = 0;
+
+    /**
+     * The flag of whether to preallocate the local file to the remote size.(false)
+     */
+    private boolean preallocate = false;
+
+    /**
+     * The flag of whether to upload with FileChannel.transferTo.(false)
+     */
+    private boolean zeroCopyUpload = false;
+
+    /**
+     * The size of the tail of the local file verified before resume, 0 means no verification.
+     */
+    private long resumeVerifyWindow = 0L;
+
+    /**
+     * Copy the settings to the FTP client. The connection pool is not copied.
+     *
+     * @param client The FTP client which the settings are copied to.
+     */
+    void copyTo(ServerToClient client) {
+        client.setTransferMode(transferMode);
+        client.setResumeBroken(resumeBroken);
+        client.setRetryTimes(retryTimes);
+        client.setRetryWaitTime(retryWaitTime);
+        client.setRetryPolicy(retryPolicy);
+        client.setRetryBudget(retryBudget);
+        client.setCircuitBreaker(circuitBreaker);
+        client.setChecksumAlgorithm(checksumAlgorithm);
+        client.setVerifyChecksum(verifyChecksum);
+        client.setBandwidthLimiter(bandwidthLimiter);
+        client.setConcurrencyLimiter(concurrencyLimiter);
+        client.setMetricsRegistry(metricsRegistry);
+        client.setMonitor(monitor);
+        client.setEventListener(eventListener);
+        client.setDownloadSegments(downloadSegments);
+        client.setMinSegmentSize(minSegmentSize);
+        client.setDownloadBufferSize(downloadBufferSize);
+        client.setPreallocate(preallocate);
+        client.setZeroCopyUpload(zeroCopyUpload);
+        client.setResumeVerifyWindow(resumeVerifyWindow);
+    }
+
+    FTPTransferMode getTransferMode() {
+        return transferMode;
+    }
+
+    void setTransferMode(FTPTransferMode transferMode) {
+        this.transferMode = transferMode;
+    }
+
+    boolean isResumeBroken() {
+        return resumeBroken;
+    }
+
+    void setResumeBroken(boolean resumeBroken) {
+        this.resumeBroken = resumeBroken;
+    }
+
+    int getRetryTimes() {
+        return retryTimes;
+    }
+
+    void setRetryTimes(int retryTimes) {
+        this.retryTimes = retryTimes;
+    }
+
+    long getRetryWaitTime() {
+        return retryWaitTime;
+    }
+
+    void setRetryWaitTime(long retryWaitTime) {
+        this.retryWaitTime = retryWaitTime;
+    }
+
+    RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    RetryBudget getRetryBudget() {
+        return retryBudget;
+    }
+
+    void setRetryBudget(RetryBudget retryBudget) {
+        this.retryBudget = retryBudget;
+    }
+
+    CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    void setCircuitBreaker(CircuitBreaker circuitBreaker) {
+        this.circuitBreaker = circuitBreaker;
+    }
+
+    ChecksumAlgorithm getChecksumAlgorithm() {
+        return checksumAlgorithm;
+    }
+
+    void setChecksumAlgorithm(ChecksumAlgorithm checksumAlgorithm) {
+        this.checksumAlgorithm = checksumAlgorithm;
+    }
+
+    boolean isVerifyChecksum() {
+        return verifyChecksum;
+    }
+
+    void setVerifyChecksum(boolean verifyChecksum) {
+        this.verifyChecksum = verifyChecksum;
+    }
+
+    BandwidthLimiter getBandwidthLimiter() {
+        return bandwidthLimiter;
+    }
+
+    void setBandwidthLimiter(BandwidthLimiter bandwidthLimiter) {
+        this.bandwidthLimiter = bandwidthLimiter;
+    }
+
+    AdaptiveConcurrencyLimiter getConcurrencyLimiter() {
+        return concurrencyLimiter;
+    }
+
+    void setConcurrencyLimiter(AdaptiveConcurrencyLimiter concurrencyLimiter) {
+        this.concurrencyLimiter = concurrencyLimiter;
+    }
+
+    MetricsRegistry getMetricsRegistry() {
+        return metricsRegistry;
+    }
+
+    void setMetricsRegistry(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    EasyFTPMonitor getMonitor() {
+        return monitor;
+    }
+
+    void setMonitor(EasyFTPMonitor monitor) {
+        this.monitor = monitor;
+    }
+
+    FTPEventListener getEventListener() {
+        return eventListener;
+    }
+
+    void setEventListener(FTPEventListener eventListener) {
+        this.eventListener = eventListener;
+    }
+
+    int getDownloadSegments() {
+        return downloadSegments;
+    }
+
+    void setDownloadSegments(int downloadSegments) {
+        this.downloadSegments = downloadSegments;
+    }
+
+    long getMinSegmentSize() {
+        return minSegmentSize;
+    }
+
+    void setMinSegmentSize(long minSegmentSize) {
+        this.minSegmentSize = minSegmentSize;
+    }
+
+    int getDownloadBufferSize() {
+        return downloadBufferSize;
+    }
+
+    void setDownloadBufferSize(int downloadBufferSize) {
+        this.downloadBufferSize = downloadBufferSize;
+    }
+
+    boolean isPreallocate() {
+        return preallocate;
+    }
+
+    void setPreallocate(boolean preallocate) {
+        this.preallocate = preallocate;
+    }
+
+    boolean isZeroCopyUpload() {
+        return zeroCopyUpload;
+    }
+
+    void setZeroCopyUpload(boolean zeroCopyUpload) {
+        this.zeroCopyUpload = zeroCopyUpload;
+    }
+
+    long getResumeVerifyWindow() {
+        return resumeVerifyWindow;
+    }
+
+    void setResumeVerifyWindow(long resumeVerifyWindow) {
+        this.resumeVerifyWindow = resumeVerifyWindow;
+    }
+}
@@ -17,6 +17,16 @@ public class AbstractFTPClientStub extends AbstractFTPClient {
 
     private boolean doTransferResult;
 
+    private boolean sessionAlive;
+
+    private RuntimeException doTransferError;
+
+    private IOException doTransferException;
+
+    private int connectCount;
+
+    private int disconnectCount;
+
     public void setConnectResult(boolean connectResult) {
         this.connectResult = connectResult;
     }
@@ -29,8 +39,29 @@ public class AbstractFTPClientStub extends AbstractFTPClient {
         this.doTransferResult = doTransferResult;
     }
 
+    public void setSessionAlive(boolean sessionAlive) {
+        this.sessionAlive = sessionAlive;
+    }
+
+    public void setDoTransferError(RuntimeException doTransferError) {
+        this.doTransferError = doTransferError;
+    }
+
+    public void setDoTransferException(IOException doTransferException) {
+        this.doTransferException = doTransferException;
+    }
+
+    public int getConnectCount() {
+        return connectCount;
+    }
+
+    public int getDisconnectCount() {
+        return disconnectCount;
+    }
+
     @Override
     protected boolean connect() throws IOException {
+        connectCount++;
         return connectResult;
     }
 
@@ -41,10 +72,22 @@ public class AbstractFTPClientStub extends AbstractFTPClient {
 
     @Override
     protected void logoutAndDisconnect() {
+        disconnectCount++;
+    }
+
+    @Override
+    protected boolean isSessionAlive() {
+        return sessionAlive;
     }
 
     @Override
     protected boolean doTransfer() throws IOException {
+        if (doTransferError != null) {
+            throw doTransferError;
+        }
+        if (doTransferException != null) {
+            throw doTransferException;
+        }
         return doTransferResult;
     }
 }
@@ -0,0 +1,242 @@
+package com.venson.easyftp;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.venson.easyftp.AdaptiveConcurrencyLimiter;
+
+/**
+ * The test class of AdaptiveConcurrencyLimiter.
+ *
+ * @author venson
+ */
+public class AdaptiveConcurrencyLimiterTest {
+
+    /**
+     * Test default behavior.
+     */
+    @Test
+    public void testDefaultBehavior001() {
+
+        // =================== Before  ===================
+
+        // ===================  Input  ===================
+
+        // =================== Process ===================
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter();
+
+        // =================== Output  ===================
+        Assert.assertEquals(4, limiter.getInitialLimit());
+        Assert.assertEquals(1, limiter.getMinLimit());
+        Assert.assertEquals(32, limiter.getMaxLimit());
+        Assert.assertEquals(0.5d, limiter.getBackoffRatio(), 0.0d);
+        Assert.assertEquals(2.0d, limiter.getLatencyTolerance(), 0.0d);
+        Assert.assertEquals(60, limiter.getAcquireTimeout());
+        Assert.assertEquals(4, limiter.getLimit("192.168.19.251:21"));
+        Assert.assertEquals(0, limiter.getInFlight("192.168.19.251:21"));
+
+        // ===================  After  ===================
+    }
+
+    /**
+     * The limit grows by about one after a limit's worth of successful transfers at the full limit.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRelease001() throws Exception {
+
+        // =================== Before  ===================
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter();
+        limiter.setInitialLimit(2);
+
+        // ===================  Input  ===================
+        String hostKey = "192.168.19.251:21";
+
+        // =================== Process ===================
+        for (int i = 0; i < 3; i++) {
+            AdaptiveConcurrencyLimiter.Permit permit1 = limiter.acquire(hostKey);
+            AdaptiveConcurrencyLimiter.Permit permit2 = limiter.acquire(hostKey);
+            limiter.release(permit1, true);
+            limiter.release(permit2, true);
+        }
+
+        // =================== Output  ===================
+        Assert.assertEquals(3, limiter.getLimit(hostKey));
+        Assert.assertEquals(0, limiter.getInFlight(hostKey));
+
+        // ===================  After  ===================
+    }
+
+    /**
+     * The limit does not grow when the transfers do not reach it.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRelease002() throws Exception {
+
+        // =================== Before  ===================
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter();
+        limiter.setInitialLimit(2);
+
+        // ===================  Input  ===================
+        String hostKey = "192.168.19.251:21";
+
+        // =================== Process ===================
+        for (int i = 0; i < 10; i++) {
+            limiter.release(limiter.acquire(hostKey), true);
+        }
+
+        // =================== Output  ===================
+        Assert.assertEquals(2, limiter.getLimit(hostKey));
+
+        // ===================  After  ===================
+    }
+
+    /**
+     * The overloaded connections started before the backoff cut the limit only once.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testReleaseOverloaded001() throws Exception {
+
+        // =================== Before  ===================
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter();
+        limiter.setInitialLimit(8);
+
+        // ===================  Input  ===================
+        String hostKey = "192.168.19.251:21";
+
+        // =================== Process ===================
+        AdaptiveConcurrencyLimiter.Permit permit1 = limiter.acquire(hostKey);
+        AdaptiveConcurrencyLimiter.Permit permit2 = limiter.acquire(hostKey);
+        limiter.releaseOverloaded(permit1);
+        limiter.releaseOverloaded(permit2);
+        int limit1 = limiter.getLimit(hostKey);
+        limiter.releaseOverloaded(limiter.acquire(hostKey));
+        int limit2 = limiter.getLimit(hostKey);
+
+        // =================== Output  ===================
+        Assert.assertEquals(4, limit1);
+        Assert.assertEquals(2, limit2);
+        Assert.assertEquals(0, limiter.getInFlight(hostKey));
+
+        // ===================  After  ===================
+    }
+
+    /**
+     * The connect much slower than usual backs off.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRecordLatency001() throws Exception {
+
+        // =================== Before  ===================
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter();
+        limiter.setInitialLimit(8);
+
+        // ===================  Input  ===================
+        String hostKey = "192.168.19.251:21";
+
+        // =================== Process ===================
+        AdaptiveConcurrencyLimiter.Permit permit1 = limiter.acquire(hostKey);
+        limiter.recordLatency(permit1, 100L);
+        AdaptiveConcurrencyLimiter.Permit permit2 = limiter.acquire(hostKey);
+        limiter.recordLatency(permit2, 150L);
+        int limit1 = limiter.getLimit(hostKey);
+        AdaptiveConcurrencyLimiter.Permit permit3 = limiter.acquire(hostKey);
+        limiter.recordLatency(permit3, 500L);
+        int limit2 = limiter.getLimit(hostKey);
+
+        // =================== Output  ===================
+        Assert.assertEquals(8, limit1);
+        Assert.assertEquals(4, limit2);
+
+        // ===================  After  ===================
+    }
+
+    /**
+     * The connection waits until a permit is returned when the limit is reached.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testAcquire001() throws Exception {
+
+        // =================== Before  ===================
+        final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter();
+        limiter.setInitialLimit(1);
+        final String hostKey = "192.168.19.251:21";
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire(hostKey);
+
+        // ===================  Input  ===================
+        final CountDownLatch acquired = new CountDownLatch(1);
+
+        // =================== Process ===================
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    limiter.acquire(hostKey);
+                    acquired.countDown();
+                } catch (Exception e) {
+                    // The latch is not counted down.
+                }
+            }
+        });
+        thread.start();
+        boolean result1 = acquired.await(200L, TimeUnit.MILLISECONDS);
+        limiter.release(permit, false);
+        boolean result2 = acquired.await(5L, TimeUnit.SECONDS);
+
+        // =================== Output  ===================
+        Assert.assertEquals(false, result1);
+        Assert.assertEquals(true, result2);
+        Assert.assertEquals(1, limiter.getInFlight(hostKey));
+
+        // ===================  After  ===================
+        thread.join();
+    }
+
+    /**
+     * The connection gives up when no permit is returned within the acquire timeout.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testAcquire002() throws Exception {
+
+        // =================== Before  ===================
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter();
+        limiter.setInitialLimit(1);
+        String hostKey = "192.168.19.251:21";
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire(hostKey);
+
+        // ===================  Input  ===================
+        limiter.setAcquireTimeout(1);
+
+        // =================== Process ===================
+        long startTime = System.currentTimeMillis();
+        boolean timedOut = false;
+        try {
+            limiter.acquire(hostKey);
+        } catch (InterruptedIOException e) {
+            timedOut = true;
+        }
+        long elapsedTime = System.currentTimeMillis() - startTime;
+
+        // =================== Output  ===================
+        Assert.assertEquals(true, timedOut);
+        Assert.assertTrue(elapsedTime >= 900L && elapsedTime < 5000L);
+        Assert.assertEquals(1, limiter.getInFlight(hostKey));
+
+        // ===================  After  ===================
+        limiter.release(permit, false);
+    }
+}
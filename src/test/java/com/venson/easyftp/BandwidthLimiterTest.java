@@ -0,0 +1,167 @@
+package com.venson.easyftp;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.venson.easyftp.BandwidthLimiter;
+
+/**
+ * The test class of BandwidthLimiter.
+ *
+ * @author venson
+ */
+public class BandwidthLimiterTest {
+
+    /**
+     * Test default behavior.
+     */
+    @Test
+    public void testDefaultBehavior001() {
+
+        // =================== Before  ===================
+
+        // ===================  Input  ===================
+
+        // =================== Process ===================
+        BandwidthLimiter limiter = new BandwidthLimiter();
+
+        // =================== Output  ===================
+        Assert.assertEquals(0L, limiter.getGlobalRate());
+        Assert.assertEquals(0L, limiter.getHostRate());
+        Assert.assertEquals(0L, limiter.getTransferRate());
+        Assert.assertNull(limiter.newThrottle("192.168.19.251:21"));
+
+        // ===================  After  ===================
+    }
+
+    /**
+     * The bucket allows the tokens of one second at once, and the debt is waited at its rate.
+     */
+    @Test
+    public void testReserve001() {
+
+        // =================== Before  ===================
+        TokenBucket bucket = new TokenBucket(1000L);
+
+        // ===================  Input  ===================
+
+        // =================== Process ===================
+        long wait1 = bucket.reserve(1000L);
+        long wait2 = bucket.reserve(500L);
+
+        // =================== Output  ===================
+        Assert.assertEquals(0L, wait1);
+        Assert.assertTrue(wait2 > 400L * 1000000L);
+        Assert.assertTrue(wait2 <= 500L * 1000000L);
+
+        // ===================  After  ===================
+    }
+
+    /**
+     * The bucket without rate never waits.
+     */
+    @Test
+    public void testReserve002() {
+
+        // =================== Before  ===================
+        TokenBucket bucket = new TokenBucket(0L);
+
+        // ===================  Input  ===================
+
+        // =================== Process ===================
+        long wait = bucket.reserve(Long.MAX_VALUE / 2);
+
+        // =================== Output  ===================
+        Assert.assertEquals(0L, wait);
+
+        // ===================  After  ===================
+    }
+
+    /**
+     * The transfers to the same FTP server share its bucket, and the others do not.
+     */
+    @Test
+    public void testNewThrottle001() throws Exception {
+
+        // =================== Before  ===================
+        BandwidthLimiter limiter = new BandwidthLimiter();
+        limiter.setHostRate(1000L);
+
+        // ===================  Input  ===================
+        BandwidthLimiter.Throttle throttle1 = limiter.newThrottle("192.168.19.251:21");
+        BandwidthLimiter.Throttle throttle2 = limiter.newThrottle("192.168.19.251:21");
+        BandwidthLimiter.Throttle throttle3 = limiter.newThrottle("192.168.19.252:21");
+
+        // =================== Process ===================
+        throttle1.acquire(1000L);
+        long start = System.currentTimeMillis();
+        throttle3.acquire(1000L);
+        long elapsed1 = System.currentTimeMillis() - start;
+        start = System.currentTimeMillis();
+        throttle2.acquire(200L);
+        long elapsed2 = System.currentTimeMillis() - start;
+
+        // =================== Output  ===================
+        Assert.assertTrue(elapsed1 < 100L);
+        Assert.assertTrue(elapsed2 >= 100L);
+
+        // ===================  After  ===================
+    }
+
+    /**
+     * The transfer to two FTP servers takes the tokens of both of them.
+     */
+    @Test
+    public void testNewThrottle002() throws Exception {
+
+        // =================== Before  ===================
+        BandwidthLimiter limiter = new BandwidthLimiter();
+        limiter.setHostRate(1000L);
+
+        // ===================  Input  ===================
+        BandwidthLimiter.Throttle throttle1 = limiter.newThrottle("192.168.19.251:21", "192.168.19.252:21");
+        BandwidthLimiter.Throttle throttle2 = limiter.newThrottle("192.168.19.252:21");
+
+        // =================== Process ===================
+        throttle1.acquire(1000L);
+        long start = System.currentTimeMillis();
+        throttle2.acquire(200L);
+        long elapsed = System.currentTimeMillis() - start;
+
+        // =================== Output  ===================
+        Assert.assertTrue(elapsed >= 100L);
+
+        // ===================  After  ===================
+    }
+
+    /**
+     * The throttled output stream waits for the throttle and writes the bytes.
+     */
+    @Test
+    public void testThrottledOutputStream001() throws Exception {
+
+        // =================== Before  ===================
+        TokenBucket bucket = new TokenBucket(1000L);
+        BandwidthLimiter.Throttle throttle = new BandwidthLimiter.Throttle(Collections.singletonList(bucket));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        // ===================  Input  ===================
+        ThrottledOutputStream output = new ThrottledOutputStream(out, throttle);
+
+        // =================== Process ===================
+        output.write(new byte[1000], 0, 1000);
+        long start = System.currentTimeMillis();
+        output.write(new byte[200], 0, 200);
+        long elapsed = System.currentTimeMillis() - start;
+        output.close();
+
+        // =================== Output  ===================
+        Assert.assertEquals(1200, out.size());
+        Assert.assertTrue(elapsed >= 100L);
+
+        // ===================  After  ===================
+    }
+}
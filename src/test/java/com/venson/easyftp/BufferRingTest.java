@@ -0,0 +1,127 @@
+package com.venson.easyftp;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * The test class of BufferRing.
+ *
+ * @author venson
+ */
+public class BufferRingTest {
+
+    /**
+     * When the stream is much larger than the ring, the same content is expected and the ring is reused.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCopy001() throws Exception {
+
+        // =================== Before  ===================
+        BufferRing ring = new BufferRing(2, 1024);
+        byte[] content = new byte[100000];
+        new Random(1).nextBytes(content);
+
+        // ===================  Input  ===================
+        ByteArrayOutputStream output1 = new ByteArrayOutputStream();
+        ByteArrayOutputStream output2 = new ByteArrayOutputStream();
+
+        // =================== Process ===================
+        long result1 = ring.copy(new ByteArrayInputStream(content), output1);
+        long result2 = ring.copy(new ByteArrayInputStream(content, 0, 10), output2);
+
+        // =================== Output  ===================
+        Assert.assertEquals(100000L, result1);
+        Assert.assertTrue(Arrays.equals(content, output1.toByteArray()));
+        Assert.assertEquals(10L, result2);
+        Assert.assertTrue(Arrays.equals(Arrays.copyOf(content, 10), output2.toByteArray()));
+
+        // ===================  After  ===================
+    }
+
+    /**
+     * When reading fails, the error of reading is expected and the ring can copy again.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCopy002() throws Exception {
+
+        // =================== Before  ===================
+        BufferRing ring = new BufferRing(2, 1024);
+        final IOException error = new IOException("read");
+
+        // ===================  Input  ===================
+        InputStream input = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw error;
+            }
+        };
+
+        // =================== Process ===================
+        IOException result = null;
+        try {
+            ring.copy(input, new ByteArrayOutputStream());
+        } catch (IOException e) {
+            result = e;
+        }
+        long result2 = ring.copy(new ByteArrayInputStream(new byte[5000]), new ByteArrayOutputStream());
+
+        // =================== Output  ===================
+        Assert.assertSame(error, result);
+        Assert.assertEquals(5000L, result2);
+
+        // ===================  After  ===================
+    }
+
+    /**
+     * When writing fails, the error of writing is expected and the input stream is closed.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testCopy003() throws Exception {
+
+        // =================== Before  ===================
+        BufferRing ring = new BufferRing(2, 1024);
+        final boolean[] closed = new boolean[1];
+
+        // ===================  Input  ===================
+        InputStream input = new ByteArrayInputStream(new byte[100000]) {
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+        OutputStream output = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("write");
+            }
+        };
+
+        // =================== Process ===================
+        IOException result = null;
+        try {
+            ring.copy(input, output);
+        } catch (IOException e) {
+            result = e;
+        }
+
+        // =================== Output  ===================
+        Assert.assertEquals("write", result.getMessage());
+        Assert.assertEquals(true, closed[0]);
+
+        // ===================  After  ===================
+    }
+}
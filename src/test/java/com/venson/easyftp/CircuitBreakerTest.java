@@ -0,0 +1,185 @@
+package com.venson.easyftp;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.venson.easyftp.CircuitBreaker;
+import com.venson.easyftp.CircuitState;
+
+/**
+ * The test class of CircuitBreaker.
+ *
+ * @author venson
+ */
+public class CircuitBreakerTest {
+
+    /**
+     * Test default behavior.
+     */
+    @Test
+    public void testDefaultBehavior001() {
+
+        // =================== Before  ===================
+
+        // ===================  Input  ===================
+
+        // =================== Process ===================
+        CircuitBreaker breaker = new CircuitBreaker();
+
+        // =================== Output  ===================
+        Assert.assertEquals(5, breaker.getFailureThreshold());
+        Assert.assertEquals(30L, breaker.getOpenTime());
+        Assert.assertEquals(CircuitState.CLOSED, breaker.getState("192.168.19.251:21"));
+        Assert.assertEquals(true, breaker.allowRequest("192.168.19.251:21"));
+
+        // ===================  After  ===================
+    }
+
+    /**
+     * When the consecutive failures reach the threshold, the circuit is opened and the
+     * connections fail fast.
+     */
+    @Test
+    public void testRecordFailure001() {
+
+        // =================== Before  ===================
+        CircuitBreaker breaker = new CircuitBreaker();
+        breaker.setFailureThreshold(3);
+
+        // ===================  Input  ===================
+        String hostKey = "192.168.19.251:21";
+
+        // =================== Process ===================
+        breaker.recordFailure(hostKey);
+        breaker.recordFailure(hostKey);
+        CircuitState result1 = breaker.getState(hostKey);
+        breaker.recordFailure(hostKey);
+        CircuitState result2 = breaker.getState(hostKey);
+
+        // =================== Output  ===================
+        Assert.assertEquals(CircuitState.CLOSED, result1);
+        Assert.assertEquals(CircuitState.OPEN, result2);
+        Assert.assertEquals(false, breaker.allowRequest(hostKey));
+        Assert.assertEquals(true, breaker.allowRequest("192.168.19.252:21"));
+
+        // ===================  After  ===================
+    }
+
+    /**
+     * When a success is recorded between failures, the count of consecutive failures is reset.
+     */
+    @Test
+    public void testRecordSuccess001() {
+
+        // =================== Before  ===================
+        CircuitBreaker breaker = new CircuitBreaker();
+        breaker.setFailureThreshold(2);
+
+        // ===================  Input  ===================
+        String hostKey = "192.168.19.251:21";
+
+        // =================== Process ===================
+        breaker.recordFailure(hostKey);
+        breaker.recordSuccess(hostKey);
+        breaker.recordFailure(hostKey);
+
+        // =================== Output  ===================
+        Assert.assertEquals(CircuitState.CLOSED, breaker.getState(hostKey));
+
+        // ===================  After  ===================
+    }
+
+    /**
+     * When the open time has passed, only one probe is allowed, and its success closes the circuit.
+     */
+    @Test
+    public void testAllowRequest001() {
+
+        // =================== Before  ===================
+        CircuitBreaker breaker = new CircuitBreaker();
+        breaker.setFailureThreshold(1);
+        breaker.setOpenTime(0L);
+
+        // ===================  Input  ===================
+        String hostKey = "192.168.19.251:21";
+        breaker.recordFailure(hostKey);
+
+        // =================== Process ===================
+        boolean result1 = breaker.allowRequest(hostKey);
+        breaker.setOpenTime(60L);
+        boolean result2 = breaker.allowRequest(hostKey);
+        CircuitState state = breaker.getState(hostKey);
+        breaker.recordSuccess(hostKey);
+        boolean result3 = breaker.allowRequest(hostKey);
+
+        // =================== Output  ===================
+        Assert.assertEquals(true, result1);
+        Assert.assertEquals(false, result2);
+        Assert.assertEquals(CircuitState.HALF_OPEN, state);
+        Assert.assertEquals(true, result3);
+        Assert.assertEquals(CircuitState.CLOSED, breaker.getState(hostKey));
+
+        // ===================  After  ===================
+    }
+
+    /**
+     * When the probe fails, the circuit is opened again.
+     */
+    @Test
+    public void testAllowRequest002() {
+
+        // =================== Before  ===================
+        CircuitBreaker breaker = new CircuitBreaker();
+        breaker.setFailureThreshold(1);
+        breaker.setOpenTime(60L);
+
+        // ===================  Input  ===================
+        String hostKey = "192.168.19.251:21";
+        breaker.recordFailure(hostKey);
+
+        // =================== Process ===================
+        breaker.setOpenTime(0L);
+        boolean result1 = breaker.allowRequest(hostKey);
+        breaker.setOpenTime(60L);
+        breaker.recordFailure(hostKey);
+        boolean result2 = breaker.allowRequest(hostKey);
+
+        // =================== Output  ===================
+        Assert.assertEquals(true, result1);
+        Assert.assertEquals(false, result2);
+        Assert.assertEquals(CircuitState.OPEN, breaker.getState(hostKey));
+
+        // ===================  After  ===================
+    }
+
+    /**
+     * When the result of the probe is not recorded within the open time, the probe expires and
+     * the next caller is allowed as the probe.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testAllowRequest003() throws Exception {
+
+        // =================== Before  ===================
+        CircuitBreaker breaker = new CircuitBreaker();
+        breaker.setFailureThreshold(1);
+        breaker.setOpenTime(0L);
+
+        // ===================  Input  ===================
+        String hostKey = "192.168.19.251:21";
+        breaker.recordFailure(hostKey);
+
+        // =================== Process ===================
+        boolean result1 = breaker.allowRequest(hostKey);
+        Thread.sleep(10L);
+        boolean result2 = breaker.allowRequest(hostKey);
+
+        // =================== Output  ===================
+        Assert.assertEquals(true, result1);
+        Assert.assertEquals(true, result2);
+        Assert.assertEquals(CircuitState.HALF_OPEN, breaker.getState(hostKey));
+
+        // ===================  After  ===================
+    }
+}
@@ -0,0 +1,85 @@
+package com.venson.easyftp;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * The test class of DirectBufferPool.
+ *
+ * @author venson
+ */
+public class DirectBufferPoolTest {
+
+    /**
+     * When the pool is empty, a new cleared direct buffer is expected.
+     */
+    @Test
+    public void testAcquire001() {
+
+        // =================== Before  ===================
+        DirectBufferPool pool = new DirectBufferPool(2);
+
+        // ===================  Input  ===================
+
+        // =================== Process ===================
+        ByteBuffer result = pool.acquire(1024);
+
+        // =================== Output  ===================
+        Assert.assertTrue(result.isDirect());
+        Assert.assertEquals(1024, result.capacity());
+        Assert.assertEquals(1024, result.remaining());
+
+        // ===================  After  ===================
+    }
+
+    /**
+     * When a buffer of the capacity is released, it is reused and cleared.
+     */
+    @Test
+    public void testAcquire002() {
+
+        // =================== Before  ===================
+        DirectBufferPool pool = new DirectBufferPool(2);
+        ByteBuffer buffer = pool.acquire(1024);
+        buffer.put((byte) 1).flip();
+        pool.release(buffer);
+
+        // ===================  Input  ===================
+
+        // =================== Process ===================
+        ByteBuffer result1 = pool.acquire(2048);
+        ByteBuffer result2 = pool.acquire(1024);
+
+        // =================== Output  ===================
+        Assert.assertNotSame(buffer, result1);
+        Assert.assertSame(buffer, result2);
+        Assert.assertEquals(1024, result2.remaining());
+
+        // ===================  After  ===================
+    }
+
+    /**
+     * When there are enough idle buffers, the released one is dropped.
+     */
+    @Test
+    public void testRelease001() {
+
+        // =================== Before  ===================
+        DirectBufferPool pool = new DirectBufferPool(2);
+
+        // ===================  Input  ===================
+
+        // =================== Process ===================
+        pool.release(ByteBuffer.allocateDirect(1024));
+        pool.release(ByteBuffer.allocateDirect(1024));
+        pool.release(ByteBuffer.allocateDirect(1024));
+
+        // =================== Output  ===================
+        Assert.assertEquals(2, pool.getIdleCount(1024));
+        Assert.assertEquals(0, pool.getIdleCount(2048));
+
+        // ===================  After  ===================
+    }
+}
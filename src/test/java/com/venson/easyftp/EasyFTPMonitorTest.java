@@ -0,0 +1,119 @@
+package com.venson.easyftp;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.openmbean.CompositeData;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.venson.easyftp.EasyFTPMonitor;
+
+/**
+ * The test class of EasyFTPMonitor.
+ *
+ * @author venson
+ */
+public class EasyFTPMonitorTest {
+
+    /**
+     * The transfer is shown while it is active, and dropped when it is finished.
+     */
+    @Test
+    public void testGetActiveTransfers001() {
+
+        // =================== Before  ===================
+        EasyFTPMonitor monitor = new EasyFTPMonitor();
+        AbstractFTPClientStub stub = new AbstractFTPClientStub();
+        stub.setMonitor(monitor);
+
+        // ===================  Input  ===================
+
+        // =================== Process ===================
+        stub.startTransfer();
+        stub.getMetrics().addBytes(100L);
+        int count1 = monitor.getActiveTransferCount();
+        TransferInfo info = monitor.getActiveTransfers().get(0);
+        stub.finishTransfer(true);
+        int count2 = monitor.getActiveTransferCount();
+
+        // =================== Output  ===================
+        Assert.assertEquals(1, count1);
+        Assert.assertEquals(100L, info.getBytesTransferred());
+        Assert.assertEquals(true, info.isResumeBroken());
+        Assert.assertEquals(0, count2);
+
+        // ===================  After  ===================
+    }
+
+    /**
+     * The transfer which has moved no bytes for the stall time is shown as stalled.
+     */
+    @Test
+    public void testGetStalledTransfers001() {
+
+        // =================== Before  ===================
+        EasyFTPMonitor monitor = new EasyFTPMonitor();
+        AbstractFTPClientStub stub = new AbstractFTPClientStub();
+        stub.setMonitor(monitor);
+        stub.startTransfer();
+
+        // ===================  Input  ===================
+
+        // =================== Process ===================
+        long stallTime = monitor.getStallTime();
+        int count1 = monitor.getStalledTransfers().size();
+        monitor.setStallTime(0L);
+        int count2 = monitor.getStalledTransfers().size();
+
+        // =================== Output  ===================
+        Assert.assertEquals(60L, stallTime);
+        Assert.assertEquals(0, count1);
+        Assert.assertEquals(1, count2);
+
+        // ===================  After  ===================
+        stub.finishTransfer(true);
+    }
+
+    /**
+     * The monitor is exposed through the platform MBean server while it is registered.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testRegister001() throws Exception {
+
+        // =================== Before  ===================
+        EasyFTPMonitor monitor = new EasyFTPMonitor();
+        CircuitBreaker breaker = new CircuitBreaker();
+        breaker.setFailureThreshold(1);
+        breaker.recordFailure("192.168.19.251:21");
+        monitor.setCircuitBreaker(breaker);
+        AbstractFTPClientStub stub = new AbstractFTPClientStub();
+        stub.setMonitor(monitor);
+        stub.startTransfer();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        // ===================  Input  ===================
+
+        // =================== Process ===================
+        boolean result = monitor.register("test");
+        Object count = server.getAttribute(monitor.getObjectName(), "ActiveTransferCount");
+        CompositeData[] transfers = (CompositeData[]) server.getAttribute(monitor.getObjectName(), "ActiveTransfers");
+        boolean registered = server.isRegistered(monitor.getObjectName());
+        monitor.unregister();
+
+        // =================== Output  ===================
+        Assert.assertEquals(true, result);
+        Assert.assertEquals(true, registered);
+        Assert.assertEquals(1, count);
+        Assert.assertEquals(1, transfers.length);
+        Assert.assertEquals(0L, transfers[0].get("bytesTransferred"));
+        Assert.assertEquals("OPEN", monitor.getCircuitStates().get("192.168.19.251:21"));
+        Assert.assertNull(monitor.getObjectName());
+
+        // ===================  After  ===================
+        stub.finishTransfer(true);
+    }
+}
@@ -0,0 +1,155 @@
+package com.venson.easyftp;
+
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.venson.easyftp.ExponentialBackoffRetryPolicy;
+
+/**
+ * The test class of ExponentialBackoffRetryPolicy.
+ *
+ * @author venson
+ */
+public class ExponentialBackoffRetryPolicyTest {
+
+    /**
+     * Test default behavior.
+     */
+    @Test
+    public void testDefaultBehavior001() {
+
+        // =================== Before  ===================
+
+        // ===================  Input  ===================
+
+        // =================== Process ===================
+        ExponentialBackoffRetryPolicy policy = new ExponentialBackoffRetryPolicy();
+
+        // =================== Output  ===================
+        Assert.assertEquals(5, policy.getMaxRetryTimes());
+        Assert.assertEquals(1L, policy.getBaseDelay());
+        Assert.assertEquals(60L, policy.getMaxDelay());
+        Assert.assertEquals(0L, policy.getMaxElapsedTime());
+
+        // ===================  After  ===================
+    }
+
+    /**
+     * When the random is at its max, the wait time doubles for each retry until the max wait time.
+     */
+    @Test
+    public void testGetRetryDelay001() {
+
+        // =================== Before  ===================
+        ExponentialBackoffRetryPolicy policy = new ExponentialBackoffRetryPolicy(new FixedRandom(0.999999d));
+        policy.setMaxRetryTimes(10);
+        policy.setBaseDelay(1L);
+        policy.setMaxDelay(10L);
+
+        // ===================  Input  ===================
+
+        // =================== Process ===================
+        long delay1 = policy.getRetryDelay(1, 0L);
+        long delay2 = policy.getRetryDelay(2, 0L);
+        long delay4 = policy.getRetryDelay(4, 0L);
+        long delay5 = policy.getRetryDelay(5, 0L);
+        long delay10 = policy.getRetryDelay(10, 0L);
+
+        // =================== Output  ===================
+        Assert.assertEquals(1000L, delay1);
+        Assert.assertEquals(2000L, delay2);
+        Assert.assertEquals(8000L, delay4);
+        Assert.assertEquals(10000L, delay5);
+        Assert.assertEquals(10000L, delay10);
+
+        // ===================  After  ===================
+    }
+
+    /**
+     * When the random is at its min, no wait is expected.
+     */
+    @Test
+    public void testGetRetryDelay002() {
+
+        // =================== Before  ===================
+        ExponentialBackoffRetryPolicy policy = new ExponentialBackoffRetryPolicy(new FixedRandom(0.0d));
+
+        // ===================  Input  ===================
+
+        // =================== Process ===================
+        long result = policy.getRetryDelay(3, 0L);
+
+        // =================== Output  ===================
+        Assert.assertEquals(0L, result);
+
+        // ===================  After  ===================
+    }
+
+    /**
+     * When the max count of retry time is exceeded, giving up is expected.
+     */
+    @Test
+    public void testGetRetryDelay003() {
+
+        // =================== Before  ===================
+        ExponentialBackoffRetryPolicy policy = new ExponentialBackoffRetryPolicy(new FixedRandom(0.5d));
+        policy.setMaxRetryTimes(2);
+
+        // ===================  Input  ===================
+
+        // =================== Process ===================
+        long result2 = policy.getRetryDelay(2, 0L);
+        long result3 = policy.getRetryDelay(3, 0L);
+
+        // =================== Output  ===================
+        Assert.assertTrue(result2 >= 0L);
+        Assert.assertEquals(-1L, result3);
+
+        // ===================  After  ===================
+    }
+
+    /**
+     * When the retry would start after the max elapsed time, giving up is expected.
+     */
+    @Test
+    public void testGetRetryDelay004() {
+
+        // =================== Before  ===================
+        ExponentialBackoffRetryPolicy policy = new ExponentialBackoffRetryPolicy(new FixedRandom(0.5d));
+        policy.setBaseDelay(1L);
+        policy.setMaxElapsedTime(10L);
+
+        // ===================  Input  ===================
+
+        // =================== Process ===================
+        long result1 = policy.getRetryDelay(1, 9000L);
+        long result2 = policy.getRetryDelay(1, 9600L);
+
+        // =================== Output  ===================
+        Assert.assertEquals(500L, result1);
+        Assert.assertEquals(-1L, result2);
+
+        // ===================  After  ===================
+    }
+
+    /**
+     * The random generator which always returns the same value.
+     */
+    private static class FixedRandom extends Random {
+
+        private static final long serialVersionUID = 1L;
+
+        private final double value;
+
+        FixedRandom(double value) {
+            this.value = value;
+        }
+
+        @Override
+        public double nextDouble() {
+            return value;
+        }
+    }
+}
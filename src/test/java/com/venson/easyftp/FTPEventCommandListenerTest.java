@@ -0,0 +1,92 @@
+package com.venson.easyftp;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.net.ProtocolCommandEvent;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.venson.easyftp.FTPEventCommandListener;
+import com.venson.easyftp.FTPEventListener;
+import com.venson.easyftp.FTPEventType;
+
+/**
+ * The test class of FTPEventCommandListener.
+ *
+ * @author venson
+ */
+public class FTPEventCommandListenerTest {
+
+    /**
+     * Each command is paired with its first reply, and the later replies and the welcome reply are ignored.
+     */
+    @Test
+    public void testProtocolReplyReceived001() {
+
+        // =================== Before  ===================
+        final List<String> events = new ArrayList<String>();
+        FTPEventListener eventListener = new FTPEventListener() {
+
+            public Object begin(FTPEventType type, String hostKey, String name) {
+                return type + " " + hostKey + " " + name;
+            }
+
+            public void end(Object event, long bytes, int replyCode, boolean success) {
+                events.add(event + " " + bytes + " " + replyCode + " " + success);
+            }
+        };
+        FTPEventCommandListener listener = new FTPEventCommandListener(eventListener, "localhost:21");
+        Object source = new Object();
+
+        // ===================  Input  ===================
+
+        // =================== Process ===================
+        listener.protocolReplyReceived(new ProtocolCommandEvent(source, 220, "220 Welcome"));
+        listener.protocolCommandSent(new ProtocolCommandEvent(source, "USER", "USER username"));
+        listener.protocolReplyReceived(new ProtocolCommandEvent(source, 331, "331 Password required"));
+        listener.protocolCommandSent(new ProtocolCommandEvent(source, "RETR", "RETR foo.xml"));
+        listener.protocolReplyReceived(new ProtocolCommandEvent(source, 550, "550 No such file"));
+        listener.protocolReplyReceived(new ProtocolCommandEvent(source, 226, "226 Transfer complete"));
+
+        // =================== Output  ===================
+        Assert.assertEquals(2, events.size());
+        Assert.assertEquals("COMMAND localhost:21 USER 0 331 true", events.get(0));
+        Assert.assertEquals("COMMAND localhost:21 RETR 0 550 false", events.get(1));
+
+        // ===================  After  ===================
+    }
+
+    /**
+     * The command is not ended when the event listener does not record it.
+     */
+    @Test
+    public void testProtocolReplyReceived002() {
+
+        // =================== Before  ===================
+        final List<Object> events = new ArrayList<Object>();
+        FTPEventListener eventListener = new FTPEventListener() {
+
+            public Object begin(FTPEventType type, String hostKey, String name) {
+                return null;
+            }
+
+            public void end(Object event, long bytes, int replyCode, boolean success) {
+                events.add(event);
+            }
+        };
+        FTPEventCommandListener listener = new FTPEventCommandListener(eventListener, "localhost:21");
+        Object source = new Object();
+
+        // ===================  Input  ===================
+
+        // =================== Process ===================
+        listener.protocolCommandSent(new ProtocolCommandEvent(source, "USER", "USER username"));
+        listener.protocolReplyReceived(new ProtocolCommandEvent(source, 331, "331 Password required"));
+
+        // =================== Output  ===================
+        Assert.assertTrue(events.isEmpty());
+
+        // ===================  After  ===================
+    }
+}
@@ -0,0 +1,46 @@
+package com.venson.easyftp;
+
+import org.apache.commons.net.ProtocolCommandEvent;
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.venson.easyftp.FTPMetricsCommandListener;
+import com.venson.easyftp.MetricsRegistry;
+
+/**
+ * The test class of FTPMetricsCommandListener.
+ *
+ * @author venson
+ */
+public class FTPMetricsCommandListenerTest {
+
+    /**
+     * Each command is paired with its first reply, and the later replies and the welcome reply are ignored.
+     */
+    @Test
+    public void testProtocolReplyReceived001() {
+
+        // =================== Before  ===================
+        MetricsRegistry registry = new MetricsRegistry();
+        FTPMetricsCommandListener listener = new FTPMetricsCommandListener(registry);
+        Object source = new Object();
+
+        // ===================  Input  ===================
+
+        // =================== Process ===================
+        listener.protocolReplyReceived(new ProtocolCommandEvent(source, 220, "220 Welcome"));
+        listener.protocolCommandSent(new ProtocolCommandEvent(source, "USER", "USER username"));
+        listener.protocolReplyReceived(new ProtocolCommandEvent(source, 331, "331 Password required"));
+        listener.protocolCommandSent(new ProtocolCommandEvent(source, "RETR", "RETR foo.xml"));
+        listener.protocolReplyReceived(new ProtocolCommandEvent(source, 150, "150 Opening"));
+        listener.protocolReplyReceived(new ProtocolCommandEvent(source, 226, "226 Transfer complete"));
+
+        // =================== Output  ===================
+        MetricsRegistry.HostMetrics host = registry.getHostMetrics(null);
+        Assert.assertEquals(2, host.getCommands().size());
+        Assert.assertEquals(1L, host.getCommandTime("USER").getCount());
+        Assert.assertEquals(1L, host.getCommandTime("RETR").getCount());
+
+        // ===================  After  ===================
+    }
+}
@@ -12,7 +12,26 @@ import org.junit.runners.Suite;
 @Suite.SuiteClasses({
     AbstractFTPClientTest.class,
     ServerToClientTest.class,
-    ServerToServerTest.class
+    ServerToServerTest.class,
+    FTPClientPoolTest.class,
+    TransferExecutorTest.class,
+    AsyncTransferServiceTest.class,
+    FTPMetadataProbeTest.class,
+    ExponentialBackoffRetryPolicyTest.class,
+    RetryBudgetTest.class,
+    CircuitBreakerTest.class,
+    TransferChecksumTest.class,
+    DirectBufferPoolTest.class,
+    BandwidthLimiterTest.class,
+    AdaptiveConcurrencyLimiterTest.class,
+    LatencyHistogramTest.class,
+    MetricsRegistryTest.class,
+    FTPMetricsCommandListenerTest.class,
+    EasyFTPMonitorTest.class,
+    FTPEventCommandListenerTest.class,
+    LoopbackTransferTest.class,
+    BufferRingTest.class,
+    TransferSettingsTest.class
 })
 public class FTPTestSuite {
 }
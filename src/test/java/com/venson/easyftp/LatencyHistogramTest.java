@@ -0,0 +1,97 @@
+package com.venson.easyftp;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.venson.easyftp.LatencyHistogram;
+
+/**
+ * The test class of LatencyHistogram.
+ *
+ * @author venson
+ */
+public class LatencyHistogramTest {
+
+    /**
+     * Test default behavior.
+     */
+    @Test
+    public void testDefaultBehavior001() {
+
+        // =================== Before  ===================
+
+        // ===================  Input  ===================
+
+        // =================== Process ===================
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        // =================== Output  ===================
+        Assert.assertEquals(0L, histogram.getCount());
+        Assert.assertEquals(0L, histogram.getMax());
+        Assert.assertEquals(0.0d, histogram.getMean(), 0.0d);
+        Assert.assertEquals(0L, histogram.getPercentile(99.0d));
+
+        // ===================  After  ===================
+    }
+
+    /**
+     * The percentile is the upper bound of its log-linear bucket, and never above the max.
+     */
+    @Test
+    public void testGetPercentile001() {
+
+        // =================== Before  ===================
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        // ===================  Input  ===================
+        for (int i = 0; i < 90; i++) {
+            histogram.record(10L);
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(1000L);
+        }
+
+        // =================== Process ===================
+        long p50 = histogram.getPercentile(50.0d);
+        long p90 = histogram.getPercentile(90.0d);
+        long p99 = histogram.getPercentile(99.0d);
+
+        // =================== Output  ===================
+        Assert.assertEquals(10L, p50);
+        Assert.assertEquals(10L, p90);
+        Assert.assertEquals(1000L, p99);
+        Assert.assertEquals(100L, histogram.getCount());
+        Assert.assertEquals(1000L, histogram.getMax());
+        Assert.assertEquals(109.0d, histogram.getMean(), 0.0d);
+
+        // ===================  After  ===================
+    }
+
+    /**
+     * The bucket of a value holds it, and its upper bound is within 12.5% of the value.
+     */
+    @Test
+    public void testGetBucketIndex001() {
+
+        // =================== Before  ===================
+
+        // ===================  Input  ===================
+        long[] values = { 0L, 7L, 8L, 9L, 15L, 16L, 17L, 1000L, 123456789L, Long.MAX_VALUE };
+
+        // =================== Process ===================
+        for (long value : values) {
+
+            int index = LatencyHistogram.getBucketIndex(value);
+            long upper = LatencyHistogram.getBucketUpperBound(index);
+
+            // =================== Output  ===================
+            Assert.assertTrue(upper >= value);
+            Assert.assertTrue(upper - value <= value / 8L + 1L);
+            if (index > 0) {
+                Assert.assertTrue(LatencyHistogram.getBucketUpperBound(index - 1) < value);
+            }
+        }
+
+        // ===================  After  ===================
+    }
+}
@@ -0,0 +1,1028 @@
+package com.venson.easyftp;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The FTP server started in process on loopback, whose root is a local directory. It serves
+ * the commands used by ServerToClient and ServerToServer, in passive and active mode with REST,
+ * and injects latency, bandwidth caps, connection limits and faults, so that the transfers are
+ * exercised over real sockets without external services.
+ *
+ * @author venson
+ */
+public class LoopbackFTPServer {
+
+    /**
+     * The user name.
+     */
+    public static final String USER_NAME = "test";
+
+    /**
+     * The password.
+     */
+    public static final String PASSWORD = "test";
+
+    /**
+     * The timeout of waiting for the data connection.(millisecond)
+     */
+    private static final int DATA_TIMEOUT = 10000;
+
+    /**
+     * The size of data buffer.
+     */
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    /**
+     * The root directory of FTP server.
+     */
+    private final File rootDirectory;
+
+    /**
+     * The threads of the sessions.
+     */
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    /**
+     * The control connections of the active sessions.
+     */
+    private final Set<Socket> sessions = Collections.newSetFromMap(new ConcurrentHashMap<Socket, Boolean>());
+
+    /**
+     * The count of accepted connections.
+     */
+    private final AtomicInteger connectionCount = new AtomicInteger();
+
+    /**
+     * The count of connections rejected with 421 from now on.
+     */
+    private final AtomicInteger rejectedConnections = new AtomicInteger();
+
+    /**
+     * The count of data connections dropped from now on.
+     */
+    private final AtomicInteger droppedDataConnections = new AtomicInteger();
+
+    /**
+     * The count of bytes after which the dropped data connections are closed.
+     */
+    private final AtomicLong dropAfterBytes = new AtomicLong();
+
+    /**
+     * The count of data connections to stall.
+     */
+    private final AtomicInteger stalledDataConnections = new AtomicInteger();
+
+    /**
+     * The count of bytes after which the data connections stall.
+     */
+    private final AtomicLong stallAfterBytes = new AtomicLong();
+
+    /**
+     * The count of passive data connections refused with 425 from now on.
+     */
+    private final AtomicInteger refusedDataConnections = new AtomicInteger();
+
+    /**
+     * The listening socket.
+     */
+    private ServerSocket serverSocket;
+
+    /**
+     * The delay of each reply.(millisecond)
+     */
+    private volatile long replyLatency = 0L;
+
+    /**
+     * The max speed of each data connection, 0 means no limit.(byte/second)
+     */
+    private volatile long bandwidth = 0L;
+
+    /**
+     * The max count of concurrent connections, 0 means no limit.
+     */
+    private volatile int maxConnections = 0;
+
+    /**
+     * The delay of LIST.(millisecond)
+     */
+    private volatile long listDelay = 0L;
+
+    /**
+     * The flag of whether to reply FEAT, so that the clients fall back to LIST without it.
+     */
+    private volatile boolean features = true;
+
+    /**
+     * The flag of whether to accept PORT, so that FXP is refused without it.
+     */
+    private volatile boolean activeMode = true;
+
+    /**
+     * The flag of whether to accept PASV, so that FXP is refused without it.
+     */
+    private volatile boolean passiveMode = true;
+
+    /**
+     * The count of received PORT commands.
+     */
+    private final AtomicInteger portCommands = new AtomicInteger();
+
+    /**
+     * Constructor method.
+     *
+     * @param rootDirectory The root directory of FTP server.
+     */
+    public LoopbackFTPServer(File rootDirectory) {
+        this.rootDirectory = rootDirectory;
+    }
+
+    /**
+     * Start FTP server on a free port of loopback, and create the root directory when it does not exist.
+     *
+     * @throws IOException
+     */
+    public void start() throws IOException {
+
+        if (!rootDirectory.isDirectory() && !rootDirectory.mkdirs()) {
+            throw new IOException("Cannot create " + rootDirectory);
+        }
+
+        serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0));
+
+        executor.execute(new Runnable() {
+            public void run() {
+                accept();
+            }
+        });
+    }
+
+    /**
+     * Stop FTP server and close all sessions.
+     */
+    public void stop() {
+
+        closeQuietly(serverSocket);
+
+        for (Socket socket : sessions) {
+            closeQuietly(socket);
+        }
+
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(DATA_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Get the port of FTP server.
+     *
+     * @return The port of FTP server.
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Get the FTP URL of the path.
+     *
+     * @param path The absolute path on FTP server.
+     * @return The FTP URL.
+     */
+    public String getUrl(String path) {
+        return "ftp://" + USER_NAME + ":" + PASSWORD + "@127.0.0.1:" + getPort() + path;
+    }
+
+    /**
+     * Get the root directory of FTP server.
+     *
+     * @return The root directory of FTP server.
+     */
+    public File getRootDirectory() {
+        return rootDirectory;
+    }
+
+    /**
+     * Get the count of accepted connections, including the rejected ones.
+     *
+     * @return The count of accepted connections.
+     */
+    public int getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    /**
+     * Get the count of active sessions.
+     *
+     * @return The count of active sessions.
+     */
+    public int getActiveConnections() {
+        return sessions.size();
+    }
+
+    /**
+     * Set the delay of each reply, which emulates the round trip of a remote FTP server.
+     *
+     * @param replyLatency The delay of each reply.(millisecond)
+     */
+    public void setReplyLatency(long replyLatency) {
+        this.replyLatency = replyLatency;
+    }
+
+    /**
+     * Set the max speed of each data connection. Defaults to 0, which means no limit.
+     *
+     * @param bandwidth The max speed of each data connection.(byte/second)
+     */
+    public void setBandwidth(long bandwidth) {
+        this.bandwidth = bandwidth;
+    }
+
+    /**
+     * Set the max count of concurrent connections, above which the connections are rejected
+     * with 421. Defaults to 0, which means no limit.
+     *
+     * @param maxConnections The max count of concurrent connections.
+     */
+    public void setMaxConnections(int maxConnections) {
+        this.maxConnections = maxConnections;
+    }
+
+    /**
+     * Set the delay of LIST, which emulates a large directory.
+     *
+     * @param listDelay The delay of LIST.(millisecond)
+     */
+    public void setListDelay(long listDelay) {
+        this.listDelay = listDelay;
+    }
+
+    /**
+     * Set the flag of whether to reply FEAT. Defaults to on.
+     *
+     * @param features The flag of whether to reply FEAT.
+     */
+    public void setFeatures(boolean features) {
+        this.features = features;
+    }
+
+    /**
+     * Set the flag of whether to accept PORT. Defaults to on. Without it PORT is refused with 500,
+     * like the FTP servers which do not open data connections to a third-party address.
+     *
+     * @param activeMode The flag of whether to accept PORT.
+     */
+    public void setActiveMode(boolean activeMode) {
+        this.activeMode = activeMode;
+    }
+
+    /**
+     * Set the flag of whether to accept PASV. Defaults to on. Without it PASV is refused with 500,
+     * and the data connections are opened by FTP server with PORT.
+     *
+     * @param passiveMode The flag of whether to accept PASV.
+     */
+    public void setPassiveMode(boolean passiveMode) {
+        this.passiveMode = passiveMode;
+    }
+
+    /**
+     * Get the count of received PORT commands.
+     *
+     * @return The count of received PORT commands.
+     */
+    public int getPortCommands() {
+        return portCommands.get();
+    }
+
+    /**
+     * Reject the next connections with 421.
+     *
+     * @param count The count of rejected connections.
+     */
+    public void rejectConnections(int count) {
+        rejectedConnections.set(count);
+    }
+
+    /**
+     * Drop the next data connections after some bytes, and reply 426.
+     *
+     * @param count The count of dropped data connections.
+     * @param afterBytes The count of bytes after which the data connections are closed.
+     */
+    public void dropDataConnections(int count, long afterBytes) {
+        dropAfterBytes.set(afterBytes);
+        droppedDataConnections.set(count);
+    }
+
+    /**
+     * Stall the next data connections after some bytes, which neither send nor close until the
+     * data timeout, and then reply 426.
+     *
+     * @param count The count of stalled data connections.
+     * @param afterBytes The count of bytes after which the data connections stall.
+     */
+    public void stallDataConnections(int count, long afterBytes) {
+        stallAfterBytes.set(afterBytes);
+        stalledDataConnections.set(count);
+    }
+
+    /**
+     * Refuse the next passive data connections with 425 after accepting them, like the FTP servers
+     * which accept them only from the address of the client.
+     *
+     * @param count The count of refused data connections.
+     */
+    public void refuseDataConnections(int count) {
+        refusedDataConnections.set(count);
+    }
+
+    /**
+     * Accept the connections until FTP server stops.
+     */
+    private void accept() {
+
+        while (!serverSocket.isClosed()) {
+
+            final Socket socket;
+            try {
+                socket = serverSocket.accept();
+            } catch (IOException e) {
+                return;
+            }
+
+            connectionCount.incrementAndGet();
+            executor.execute(new Runnable() {
+                public void run() {
+                    new Session(socket).run();
+                }
+            });
+        }
+    }
+
+    /**
+     * Take one of the faults which are injected for the next times.
+     *
+     * @param counter The count of the next times.
+     * @return The result of whether the fault is taken.
+     */
+    private static boolean takeFault(AtomicInteger counter) {
+
+        int count;
+        do {
+            count = counter.get();
+            if (count <= 0) {
+                return false;
+            }
+        } while (!counter.compareAndSet(count, count - 1));
+
+        return true;
+    }
+
+    /**
+     * Sleep quietly.
+     *
+     * @param time The time of sleep.(millisecond)
+     */
+    private static void sleep(long time) {
+
+        if (time <= 0) {
+            return;
+        }
+
+        try {
+            Thread.sleep(time);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Close the socket quietly.
+     *
+     * @param socket The socket.
+     */
+    private static void closeQuietly(Socket socket) {
+        try {
+            if (socket != null) {
+                socket.close();
+            }
+        } catch (IOException e) {
+            // Ignore.
+        }
+    }
+
+    /**
+     * Close the server socket quietly.
+     *
+     * @param socket The server socket.
+     */
+    private static void closeQuietly(ServerSocket socket) {
+        try {
+            if (socket != null) {
+                socket.close();
+            }
+        } catch (IOException e) {
+            // Ignore.
+        }
+    }
+
+    /**
+     * The session of one control connection.
+     */
+    private class Session {
+
+        /**
+         * The control connection.
+         */
+        private final Socket socket;
+
+        /**
+         * The writer of replies.
+         */
+        private Writer writer;
+
+        /**
+         * The current directory.
+         */
+        private String currentDirectory = "/";
+
+        /**
+         * The user name sent by USER.
+         */
+        private String userName = null;
+
+        /**
+         * The flag of whether the user has logged in.
+         */
+        private boolean loggedIn = false;
+
+        /**
+         * The offset sent by REST.
+         */
+        private long restartOffset = 0L;
+
+        /**
+         * The listening socket of passive mode.
+         */
+        private ServerSocket passiveSocket = null;
+
+        /**
+         * The address of active mode.
+         */
+        private InetSocketAddress activeAddress = null;
+
+        /**
+         * Constructor method.
+         *
+         * @param socket The control connection.
+         */
+        Session(Socket socket) {
+            this.socket = socket;
+        }
+
+        /**
+         * Serve the commands until the client quits or the connection closes.
+         */
+        void run() {
+
+            sessions.add(socket);
+            try {
+
+                writer = new OutputStreamWriter(socket.getOutputStream(), "UTF-8");
+
+                int max = maxConnections;
+                if (takeFault(rejectedConnections) || (max > 0 && sessions.size() > max)) {
+                    reply("421 Service not available, too many connections.");
+                    return;
+                }
+
+                reply("220 EasyFTP loopback server ready.");
+
+                BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), "UTF-8"));
+                String line;
+                while ((line = reader.readLine()) != null) {
+
+                    int index = line.indexOf(' ');
+                    String command = (index < 0 ? line : line.substring(0, index)).toUpperCase(Locale.US);
+                    String argument = index < 0 ? null : line.substring(index + 1);
+
+                    if (!execute(command, argument)) {
+                        return;
+                    }
+                }
+
+            } catch (IOException e) {
+                // The client closed the connection.
+            } finally {
+                closeQuietly(passiveSocket);
+                closeQuietly(socket);
+                sessions.remove(socket);
+            }
+        }
+
+        /**
+         * Execute the command.
+         *
+         * @param command The command.
+         * @param argument The argument of the command, or null.
+         * @return The result of whether the session goes on.
+         * @throws IOException
+         */
+        private boolean execute(String command, String argument) throws IOException {
+
+            if ("QUIT".equals(command)) {
+                reply("221 Goodbye.");
+                return false;
+            } else if ("USER".equals(command)) {
+                userName = argument;
+                loggedIn = false;
+                reply("331 Password required.");
+                return true;
+            } else if ("PASS".equals(command)) {
+                loggedIn = USER_NAME.equals(userName) && PASSWORD.equals(argument);
+                reply(loggedIn ? "230 Logged in." : "530 Login incorrect.");
+                return true;
+            } else if ("SYST".equals(command)) {
+                reply("215 UNIX Type: L8");
+                return true;
+            } else if ("NOOP".equals(command)) {
+                reply("200 OK.");
+                return true;
+            } else if ("FEAT".equals(command)) {
+                if (features) {
+                    reply("211-Features:\r\n SIZE\r\n MDTM\r\n REST STREAM\r\n211 End");
+                } else {
+                    reply("502 Command not implemented.");
+                }
+                return true;
+            }
+
+            if (!loggedIn) {
+                reply("530 Not logged in.");
+                return true;
+            }
+
+            if ("TYPE".equals(command) || "MODE".equals(command) || "STRU".equals(command)) {
+                reply("200 OK.");
+            } else if ("PWD".equals(command) || "XPWD".equals(command)) {
+                reply("257 \"" + currentDirectory + "\" is current directory.");
+            } else if ("CWD".equals(command) || "CDUP".equals(command)) {
+                String path = resolve("CDUP".equals(command) ? ".." : argument);
+                if (getFile(path).isDirectory()) {
+                    currentDirectory = path;
+                    reply("250 Directory changed.");
+                } else {
+                    reply("550 No such directory.");
+                }
+            } else if ("MKD".equals(command)) {
+                String path = resolve(argument);
+                reply(getFile(path).mkdir() ? "257 \"" + path + "\" created." : "550 Cannot create directory.");
+            } else if ("DELE".equals(command)) {
+                File file = getFile(resolve(argument));
+                reply(file.isFile() && file.delete() ? "250 Deleted." : "550 Cannot delete file.");
+            } else if ("SIZE".equals(command)) {
+                File file = getFile(resolve(argument));
+                reply(file.isFile() ? "213 " + file.length() : "550 No such file.");
+            } else if ("MDTM".equals(command)) {
+                File file = getFile(resolve(argument));
+                if (file.isFile()) {
+                    SimpleDateFormat format = new SimpleDateFormat("yyyyMMddHHmmss", Locale.US);
+                    format.setTimeZone(TimeZone.getTimeZone("UTC"));
+                    reply("213 " + format.format(new Date(file.lastModified())));
+                } else {
+                    reply("550 No such file.");
+                }
+            } else if ("REST".equals(command)) {
+                try {
+                    restartOffset = Long.parseLong(argument.trim());
+                    reply("350 Restarting at " + restartOffset + ".");
+                } catch (RuntimeException e) {
+                    reply("501 Invalid offset.");
+                }
+            } else if ("PASV".equals(command) && !passiveMode) {
+                reply("500 Illegal PASV command.");
+            } else if ("PASV".equals(command)) {
+                closeQuietly(passiveSocket);
+                activeAddress = null;
+                passiveSocket = new ServerSocket();
+                passiveSocket.bind(new InetSocketAddress(socket.getLocalAddress(), 0));
+                passiveSocket.setSoTimeout(DATA_TIMEOUT);
+                int port = passiveSocket.getLocalPort();
+                reply("227 Entering Passive Mode ("
+                    + socket.getLocalAddress().getHostAddress().replace('.', ',') + "," + (port >> 8) + "," + (port & 0xff) + ").");
+            } else if ("PORT".equals(command) && !activeMode) {
+                portCommands.incrementAndGet();
+                reply("500 Illegal PORT command.");
+            } else if ("PORT".equals(command)) {
+                portCommands.incrementAndGet();
+                try {
+                    String[] parts = argument.trim().split(",");
+                    String host = parts[0] + "." + parts[1] + "." + parts[2] + "." + parts[3];
+                    int port = Integer.parseInt(parts[4]) * 256 + Integer.parseInt(parts[5]);
+                    closeQuietly(passiveSocket);
+                    passiveSocket = null;
+                    activeAddress = new InetSocketAddress(host, port);
+                    reply("200 PORT command successful.");
+                } catch (RuntimeException e) {
+                    reply("501 Invalid PORT command.");
+                }
+            } else if ("RETR".equals(command)) {
+                retrieve(getFile(resolve(argument)));
+            } else if ("STOR".equals(command) || "APPE".equals(command)) {
+                store(getFile(resolve(argument)), "APPE".equals(command));
+            } else if ("LIST".equals(command) || "NLST".equals(command)) {
+                list(argument, "NLST".equals(command));
+            } else if ("ABOR".equals(command)) {
+                reply("226 Abort successful.");
+            } else {
+                reply("502 Command not implemented.");
+            }
+
+            return true;
+        }
+
+        /**
+         * Send the file on the data connection.
+         *
+         * @param file The file.
+         * @throws IOException
+         */
+        private void retrieve(File file) throws IOException {
+
+            long offset = restartOffset;
+            restartOffset = 0L;
+
+            if (!file.isFile()) {
+                closeDataSetting();
+                reply("550 No such file.");
+                return;
+            }
+
+            Socket data = openDataConnection();
+            if (data == null) {
+                return;
+            }
+
+            InputStream input = new FileInputStream(file);
+            boolean complete = false;
+            try {
+                reply("150 Opening BINARY mode data connection for " + file.getName() + " (" + file.length() + " bytes).");
+                skipFully(input, offset);
+                complete = copy(input, data.getOutputStream());
+            } catch (SocketException e) {
+                complete = false;
+            } finally {
+                input.close();
+                closeQuietly(data);
+            }
+
+            reply(complete ? "226 Transfer complete." : "426 Connection closed, transfer aborted.");
+        }
+
+        /**
+         * Receive the file on the data connection.
+         *
+         * @param file The file.
+         * @param append The flag of whether to append to the file.
+         * @throws IOException
+         */
+        private void store(File file, boolean append) throws IOException {
+
+            long offset = restartOffset;
+            restartOffset = 0L;
+
+            if (file.getParentFile() == null || !file.getParentFile().isDirectory()) {
+                closeDataSetting();
+                reply("553 No such directory.");
+                return;
+            }
+
+            Socket data = openDataConnection();
+            if (data == null) {
+                return;
+            }
+
+            RandomAccessFile output = new RandomAccessFile(file, "rw");
+            boolean complete = false;
+            try {
+                reply("150 Opening BINARY mode data connection for " + file.getName() + ".");
+
+                long position = append ? output.length() : offset;
+                output.setLength(position);
+                output.seek(position);
+
+                complete = copy(data.getInputStream(), new RandomAccessFileOutputStream(output));
+            } catch (SocketException e) {
+                complete = false;
+            } finally {
+                output.close();
+                closeQuietly(data);
+            }
+
+            reply(complete ? "226 Transfer complete." : "426 Connection closed, transfer aborted.");
+        }
+
+        /**
+         * Send the listing of the directory or the file on the data connection.
+         *
+         * @param argument The argument of LIST, or null for the current directory.
+         * @param namesOnly The flag of whether to send the names only.
+         * @throws IOException
+         */
+        private void list(String argument, boolean namesOnly) throws IOException {
+
+            // Ignore the options like "-a".
+            String path = argument == null || argument.startsWith("-") ? currentDirectory : resolve(argument);
+            File target = getFile(path);
+
+            List<File> files = new ArrayList<File>();
+            if (target.isDirectory()) {
+                File[] children = target.listFiles();
+                if (children != null) {
+                    Collections.addAll(files, children);
+                }
+            } else if (target.isFile()) {
+                files.add(target);
+            }
+
+            Socket data = openDataConnection();
+            if (data == null) {
+                return;
+            }
+
+            try {
+                reply("150 Opening ASCII mode data connection for file list.");
+                sleep(listDelay);
+
+                SimpleDateFormat format = new SimpleDateFormat("MMM dd yyyy", Locale.US);
+                StringBuilder listing = new StringBuilder();
+                for (File file : files) {
+                    if (namesOnly) {
+                        listing.append(file.getName());
+                    } else {
+                        listing.append(file.isDirectory() ? "drwxr-xr-x" : "-rw-r--r--").append(" 1 ftp ftp ")
+                            .append(file.length()).append(' ').append(format.format(new Date(file.lastModified())))
+                            .append(' ').append(file.getName());
+                    }
+                    listing.append("\r\n");
+                }
+
+                OutputStream output = data.getOutputStream();
+                output.write(listing.toString().getBytes("UTF-8"));
+                output.flush();
+            } finally {
+                closeQuietly(data);
+            }
+
+            reply("226 Transfer complete.");
+        }
+
+        /**
+         * Open the data connection in passive or active mode, and reply 425 when it fails.
+         *
+         * @return The data connection, or null when it fails.
+         * @throws IOException
+         */
+        private Socket openDataConnection() throws IOException {
+
+            ServerSocket passive = passiveSocket;
+            InetSocketAddress active = activeAddress;
+            closeDataSetting();
+
+            try {
+                if (passive != null) {
+                    Socket data;
+                    try {
+                        data = passive.accept();
+                    } finally {
+                        closeQuietly(passive);
+                    }
+                    if (takeFault(refusedDataConnections)) {
+                        closeQuietly(data);
+                        reply("425 Security: Bad IP connecting.");
+                        return null;
+                    }
+                    return data;
+                }
+
+                if (active != null) {
+                    Socket data = new Socket();
+                    data.connect(active, DATA_TIMEOUT);
+                    return data;
+                }
+
+            } catch (IOException e) {
+                reply("425 Cannot open data connection.");
+                return null;
+            }
+
+            reply("425 Use PORT or PASV first.");
+            return null;
+        }
+
+        /**
+         * Forget the setting of the data connection, which is used once.
+         */
+        private void closeDataSetting() {
+            passiveSocket = null;
+            activeAddress = null;
+        }
+
+        /**
+         * Copy the data with the bandwidth cap, and drop or stall the data connection when the fault is injected.
+         *
+         * @param input The input.
+         * @param output The output.
+         * @return The result of whether all data is copied.
+         * @throws IOException
+         */
+        private boolean copy(InputStream input, OutputStream output) throws IOException {
+
+            long dropAfter = takeFault(droppedDataConnections) ? dropAfterBytes.get() : -1L;
+            long stallAfter = takeFault(stalledDataConnections) ? stallAfterBytes.get() : -1L;
+            long startTime = System.currentTimeMillis();
+            long total = 0L;
+            byte[] buffer = new byte[BUFFER_SIZE];
+
+            int count;
+            while ((count = input.read(buffer)) != -1) {
+
+                if (dropAfter >= 0 && total + count > dropAfter) {
+                    output.write(buffer, 0, (int) (dropAfter - total));
+                    output.flush();
+                    return false;
+                }
+
+                if (stallAfter >= 0 && total + count > stallAfter) {
+                    output.write(buffer, 0, (int) (stallAfter - total));
+                    output.flush();
+                    sleep(DATA_TIMEOUT);
+                    return false;
+                }
+
+                output.write(buffer, 0, count);
+                total += count;
+
+                long speed = bandwidth;
+                if (speed > 0) {
+                    sleep(total * 1000L / speed - (System.currentTimeMillis() - startTime));
+                }
+            }
+
+            output.flush();
+            return true;
+        }
+
+        /**
+         * Skip the bytes of the input.
+         *
+         * @param input The input.
+         * @param count The count of skipped bytes.
+         * @throws IOException
+         */
+        private void skipFully(InputStream input, long count) throws IOException {
+
+            long remaining = count;
+            while (remaining > 0) {
+                long skipped = input.skip(remaining);
+                if (skipped <= 0) {
+                    return;
+                }
+                remaining -= skipped;
+            }
+        }
+
+        /**
+         * Resolve the path against the current directory.
+         *
+         * @param path The absolute or relative path.
+         * @return The normalized absolute path.
+         */
+        private String resolve(String path) {
+
+            String full = path == null ? currentDirectory
+                : path.startsWith("/") ? path : currentDirectory + "/" + path;
+
+            LinkedList<String> names = new LinkedList<String>();
+            for (String name : full.split("/")) {
+                if (name.length() == 0 || ".".equals(name)) {
+                    continue;
+                }
+                if ("..".equals(name)) {
+                    if (!names.isEmpty()) {
+                        names.removeLast();
+                    }
+                } else {
+                    names.add(name);
+                }
+            }
+
+            StringBuilder resolved = new StringBuilder();
+            for (String name : names) {
+                resolved.append('/').append(name);
+            }
+
+            return resolved.length() == 0 ? "/" : resolved.toString();
+        }
+
+        /**
+         * Get the local file of the path.
+         *
+         * @param path The normalized absolute path.
+         * @return The local file.
+         */
+        private File getFile(String path) {
+            return new File(rootDirectory, path);
+        }
+
+        /**
+         * Send the reply after the latency.
+         *
+         * @param reply The reply.
+         * @throws IOException
+         */
+        private void reply(String reply) throws IOException {
+
+            sleep(replyLatency);
+
+            writer.write(reply + "\r\n");
+            writer.flush();
+        }
+    }
+
+    /**
+     * The output stream which writes at the position of the file.
+     */
+    private static class RandomAccessFileOutputStream extends OutputStream {
+
+        /**
+         * The file.
+         */
+        private final RandomAccessFile file;
+
+        /**
+         * Constructor method.
+         *
+         * @param file The file.
+         */
+        RandomAccessFileOutputStream(RandomAccessFile file) {
+            this.file = file;
+        }
+
+        /**
+         * Write the byte.
+         *
+         * @param b The byte.
+         * @throws IOException
+         */
+        @Override
+        public void write(int b) throws IOException {
+            file.write(b);
+        }
+
+        /**
+         * Write the bytes.
+         *
+         * @param b The bytes.
+         * @param off The offset of the bytes.
+         * @param len The length of the bytes.
+         * @throws IOException
+         */
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            file.write(b, off, len);
+        }
+    }
+}
@@ -0,0 +1,1276 @@
+package com.venson.easyftp;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.venson.easyftp.AbstractFTPClient;
+import com.venson.easyftp.AdaptiveConcurrencyLimiter;
+import com.venson.easyftp.AsyncTransferService;
+import com.venson.easyftp.FTPClientPool;
+import com.venson.easyftp.FTPEventListener;
+import com.venson.easyftp.FTPEventType;
+import com.venson.easyftp.FTPTransferMode;
+import com.venson.easyftp.ServerToClient;
+import com.venson.easyftp.ServerToServer;
+import com.venson.easyftp.TransferBatch;
+import com.venson.easyftp.TransferBatchResult;
+import com.venson.easyftp.TransferExecutor;
+import com.venson.easyftp.TransferResult;
+
+/**
+ * The test class of the transfers over real sockets against LoopbackFTPServer.
+ *
+ * @author venson
+ */
+public class LoopbackTransferTest {
+
+    /**
+     * Download the file, success is expected and the local file is the same as the remote one.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testDownload001() throws Exception {
+
+        // =================== Before  ===================
+        File work = createDirectory();
+        LoopbackFTPServer server = new LoopbackFTPServer(new File(work, "root"));
+        server.start();
+        File remote = createFile(new File(work, "root/ftp/file/foo.bin"), 300000);
+        File local = new File(work, "local/bar.bin");
+
+        // ===================  Input  ===================
+        ServerToClient client = new ServerToClient();
+
+        // =================== Process ===================
+        boolean result = client.transfer(server.getUrl("/ftp/file/foo.bin"), local.getAbsolutePath());
+
+        // =================== Output  ===================
+        Assert.assertEquals(true, result);
+        Assert.assertTrue(Arrays.equals(readFile(remote), readFile(local)));
+
+        // ===================  After  ===================
+        server.stop();
+        delete(work);
+    }
+
+    /**
+     * Download the file when the data connection is dropped at first, and is resume broken transfer mode,
+     * success is expected and the rest of the file is downloaded by the retry.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testDownload002() throws Exception {
+
+        // =================== Before  ===================
+        File work = createDirectory();
+        LoopbackFTPServer server = new LoopbackFTPServer(new File(work, "root"));
+        server.start();
+        server.dropDataConnections(1, 100000L);
+        File remote = createFile(new File(work, "root/ftp/file/foo.bin"), 300000);
+        File local = new File(work, "local/bar.bin");
+
+        // ===================  Input  ===================
+        ServerToClient client = new ServerToClient();
+        client.setResumeBroken(true);
+        client.setRetryTimes(1);
+        client.setRetryWaitTime(0L);
+
+        // =================== Process ===================
+        boolean result = client.transfer(server.getUrl("/ftp/file/foo.bin"), local.getAbsolutePath());
+
+        // =================== Output  ===================
+        Assert.assertEquals(true, result);
+        Assert.assertEquals(1, client.getCurrentRetryTimes());
+        Assert.assertTrue(Arrays.equals(readFile(remote), readFile(local)));
+
+        // ===================  After  ===================
+        server.stop();
+        delete(work);
+    }
+
+    /**
+     * Download the file when the first connection is rejected with 421, success is expected by the retry.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testDownload003() throws Exception {
+
+        // =================== Before  ===================
+        File work = createDirectory();
+        LoopbackFTPServer server = new LoopbackFTPServer(new File(work, "root"));
+        server.start();
+        server.rejectConnections(1);
+        File remote = createFile(new File(work, "root/foo.bin"), 1000);
+        File local = new File(work, "local/bar.bin");
+
+        // ===================  Input  ===================
+        ServerToClient client = new ServerToClient();
+        client.setRetryTimes(1);
+        client.setRetryWaitTime(0L);
+
+        // =================== Process ===================
+        boolean result = client.transfer(server.getUrl("/foo.bin"), local.getAbsolutePath());
+
+        // =================== Output  ===================
+        Assert.assertEquals(true, result);
+        Assert.assertEquals(2, server.getConnectionCount());
+        Assert.assertTrue(Arrays.equals(readFile(remote), readFile(local)));
+
+        // ===================  After  ===================
+        server.stop();
+        delete(work);
+    }
+
+    /**
+     * Download the file when FTP server does not reply FEAT and LIST is slow, success is expected
+     * after the file is probed with LIST.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testDownload004() throws Exception {
+
+        // =================== Before  ===================
+        File work = createDirectory();
+        LoopbackFTPServer server = new LoopbackFTPServer(new File(work, "root"));
+        server.start();
+        server.setFeatures(false);
+        server.setListDelay(200L);
+        File remote = createFile(new File(work, "root/ftp/foo.bin"), 1000);
+        File local = new File(work, "local/bar.bin");
+
+        // ===================  Input  ===================
+        ServerToClient client = new ServerToClient();
+
+        // =================== Process ===================
+        long startTime = System.currentTimeMillis();
+        boolean result = client.transfer(server.getUrl("/ftp/foo.bin"), local.getAbsolutePath());
+        long elapsedTime = System.currentTimeMillis() - startTime;
+
+        // =================== Output  ===================
+        Assert.assertEquals(true, result);
+        Assert.assertTrue(elapsedTime >= 200L);
+        Assert.assertTrue(Arrays.equals(readFile(remote), readFile(local)));
+
+        // ===================  After  ===================
+        server.stop();
+        delete(work);
+    }
+
+    /**
+     * Download the file when the bandwidth of FTP server is capped, success is expected no faster than the cap.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testDownload005() throws Exception {
+
+        // =================== Before  ===================
+        File work = createDirectory();
+        LoopbackFTPServer server = new LoopbackFTPServer(new File(work, "root"));
+        server.start();
+        server.setBandwidth(256L * 1024L);
+        createFile(new File(work, "root/foo.bin"), 128 * 1024);
+        File local = new File(work, "local/bar.bin");
+
+        // ===================  Input  ===================
+        ServerToClient client = new ServerToClient();
+
+        // =================== Process ===================
+        long startTime = System.currentTimeMillis();
+        boolean result = client.transfer(server.getUrl("/foo.bin"), local.getAbsolutePath());
+        long elapsedTime = System.currentTimeMillis() - startTime;
+
+        // =================== Output  ===================
+        Assert.assertEquals(true, result);
+        Assert.assertTrue(elapsedTime >= 400L);
+        Assert.assertEquals(128L * 1024L, local.length());
+
+        // ===================  After  ===================
+        server.stop();
+        delete(work);
+    }
+
+    /**
+     * Download the file in 3 segments over their own connections with a concurrency limit of one,
+     * success is expected and the reassembled local file is the same as the remote one.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testDownload006() throws Exception {
+
+        // =================== Before  ===================
+        File work = createDirectory();
+        LoopbackFTPServer server = new LoopbackFTPServer(new File(work, "root"));
+        server.start();
+        File remote = createFile(new File(work, "root/ftp/file/foo.bin"), 600000);
+        File local = new File(work, "local/bar.bin");
+
+        // ===================  Input  ===================
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter();
+        limiter.setInitialLimit(1);
+        limiter.setAcquireTimeout(5);
+        ServerToClient client = new ServerToClient();
+        client.setDownloadSegments(3);
+        client.setMinSegmentSize(100000L);
+        client.setConcurrencyLimiter(limiter);
+
+        // =================== Process ===================
+        boolean result = client.transfer(server.getUrl("/ftp/file/foo.bin"), local.getAbsolutePath());
+
+        // =================== Output  ===================
+        Assert.assertEquals(true, result);
+        Assert.assertEquals(3, server.getConnectionCount());
+        Assert.assertTrue(Arrays.equals(readFile(remote), readFile(local)));
+
+        // ===================  After  ===================
+        server.stop();
+        delete(work);
+    }
+
+    /**
+     * Download the file in 3 segments when the data connection of one segment is dropped, failure
+     * is expected, the local file is truncated to the contiguous downloaded part, and all of the
+     * connections are closed.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testDownload007() throws Exception {
+
+        // =================== Before  ===================
+        File work = createDirectory();
+        LoopbackFTPServer server = new LoopbackFTPServer(new File(work, "root"));
+        server.start();
+        server.dropDataConnections(1, 50000L);
+        File remote = createFile(new File(work, "root/ftp/file/foo.bin"), 600000);
+        File local = new File(work, "local/bar.bin");
+
+        // ===================  Input  ===================
+        ServerToClient client = new ServerToClient();
+        client.setDownloadSegments(3);
+        client.setMinSegmentSize(100000L);
+
+        // =================== Process ===================
+        boolean result = client.transfer(server.getUrl("/ftp/file/foo.bin"), local.getAbsolutePath());
+        long deadline = System.currentTimeMillis() + 5000L;
+        while (server.getActiveConnections() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10L);
+        }
+
+        // =================== Output  ===================
+        Assert.assertEquals(false, result);
+        Assert.assertEquals(0, server.getActiveConnections());
+        byte[] content = readFile(local);
+        Assert.assertTrue(content.length < 600000);
+        Assert.assertTrue(Arrays.equals(Arrays.copyOf(readFile(remote), content.length), content));
+
+        // ===================  After  ===================
+        server.stop();
+        delete(work);
+    }
+
+    /**
+     * Download the file through file channel, which is turned on after the client is created,
+     * success is expected and the local file is the same as the remote one.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testDownload008() throws Exception {
+
+        // =================== Before  ===================
+        File work = createDirectory();
+        LoopbackFTPServer server = new LoopbackFTPServer(new File(work, "root"));
+        server.start();
+        File remote = createFile(new File(work, "root/ftp/file/foo.bin"), 300000);
+        File local = new File(work, "local/bar.bin");
+
+        // ===================  Input  ===================
+        ServerToClient client = new ServerToClient();
+        client.setDownloadBufferSize(8192);
+
+        // =================== Process ===================
+        boolean result = client.transfer(server.getUrl("/ftp/file/foo.bin"), local.getAbsolutePath());
+
+        // =================== Output  ===================
+        Assert.assertEquals(true, result);
+        Assert.assertTrue(Arrays.equals(readFile(remote), readFile(local)));
+
+        // ===================  After  ===================
+        server.stop();
+        delete(work);
+    }
+
+    /**
+     * Download the file with a batch in 3 segments through file channel, the settings of the
+     * batch are expected to reach the client, so success is expected over 3 connections.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testDownload009() throws Exception {
+
+        // =================== Before  ===================
+        File work = createDirectory();
+        LoopbackFTPServer server = new LoopbackFTPServer(new File(work, "root"));
+        server.start();
+        File remote = createFile(new File(work, "root/ftp/file/foo.bin"), 600000);
+        File local = new File(work, "local/bar.bin");
+        TransferExecutor executor = new TransferExecutor(1);
+
+        // ===================  Input  ===================
+        TransferBatch batch = new TransferBatch();
+        batch.setDownloadSegments(3);
+        batch.setMinSegmentSize(100000L);
+        batch.setDownloadBufferSize(8192);
+        batch.add(server.getUrl("/ftp/file/foo.bin"), local.getAbsolutePath());
+
+        // =================== Process ===================
+        TransferBatchResult result = executor.execute(batch);
+
+        // =================== Output  ===================
+        Assert.assertEquals(1, result.getSucceededCount());
+        Assert.assertEquals(3, server.getConnectionCount());
+        Assert.assertTrue(Arrays.equals(readFile(remote), readFile(local)));
+
+        // ===================  After  ===================
+        executor.shutdown();
+        server.stop();
+        delete(work);
+    }
+
+    /**
+     * Download the file asynchronously in 3 segments through file channel, the settings of the
+     * service are expected to reach the client, so success is expected over 3 connections.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testDownload010() throws Exception {
+
+        // =================== Before  ===================
+        File work = createDirectory();
+        LoopbackFTPServer server = new LoopbackFTPServer(new File(work, "root"));
+        server.start();
+        File remote = createFile(new File(work, "root/ftp/file/foo.bin"), 600000);
+        File local = new File(work, "local/bar.bin");
+        AsyncTransferService service = new AsyncTransferService(1);
+
+        // ===================  Input  ===================
+        service.setDownloadSegments(3);
+        service.setMinSegmentSize(100000L);
+        service.setDownloadBufferSize(8192);
+
+        // =================== Process ===================
+        TransferResult result = service.transferAsync(server.getUrl("/ftp/file/foo.bin"), local.getAbsolutePath()).get();
+
+        // =================== Output  ===================
+        Assert.assertEquals(true, result.isSuccess());
+        Assert.assertEquals(3, server.getConnectionCount());
+        Assert.assertTrue(Arrays.equals(readFile(remote), readFile(local)));
+
+        // ===================  After  ===================
+        service.shutdown();
+        server.stop();
+        delete(work);
+    }
+
+    /**
+     * Download the files from two FTP servers with one client, the commands are expected to be
+     * notified with the key of the FTP server they are sent to.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testDownload011() throws Exception {
+
+        // =================== Before  ===================
+        File work = createDirectory();
+        LoopbackFTPServer server1 = new LoopbackFTPServer(new File(work, "root1"));
+        server1.start();
+        LoopbackFTPServer server2 = new LoopbackFTPServer(new File(work, "root2"));
+        server2.start();
+        createFile(new File(work, "root1/ftp/file/foo.bin"), 1000);
+        createFile(new File(work, "root2/ftp/file/foo.bin"), 1000);
+        final List<String> commands = Collections.synchronizedList(new ArrayList<String>());
+
+        // ===================  Input  ===================
+        ServerToClient client = new ServerToClient();
+        client.setEventListener(new FTPEventListener() {
+
+            public Object begin(FTPEventType type, String hostKey, String name) {
+                return type == FTPEventType.COMMAND && "RETR".equals(name) ? hostKey : null;
+            }
+
+            public void end(Object event, long bytes, int replyCode, boolean success) {
+                commands.add((String) event);
+            }
+        });
+
+        // =================== Process ===================
+        boolean result1 = client.transfer(server1.getUrl("/ftp/file/foo.bin"), new File(work, "local/bar1.bin").getAbsolutePath());
+        boolean result2 = client.transfer(server2.getUrl("/ftp/file/foo.bin"), new File(work, "local/bar2.bin").getAbsolutePath());
+
+        // =================== Output  ===================
+        Assert.assertEquals(true, result1);
+        Assert.assertEquals(true, result2);
+        Assert.assertEquals(Arrays.asList("127.0.0.1:" + server1.getPort(), "127.0.0.1:" + server2.getPort()), commands);
+
+        // ===================  After  ===================
+        server1.stop();
+        server2.stop();
+        delete(work);
+    }
+
+    /**
+     * Download a batch of files with 4 workers over the connection pool and a concurrency limit
+     * of 2, success is expected and no more than 2 files are transferred at the same time.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testDownload012() throws Exception {
+
+        // =================== Before  ===================
+        File work = createDirectory();
+        LoopbackFTPServer server = new LoopbackFTPServer(new File(work, "root"));
+        server.start();
+        server.setBandwidth(1024 * 1024);
+        TransferExecutor executor = new TransferExecutor(4);
+        final AtomicInteger active = new AtomicInteger();
+        final AtomicInteger maxActive = new AtomicInteger();
+
+        // ===================  Input  ===================
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter();
+        limiter.setInitialLimit(2);
+        limiter.setMaxLimit(2);
+        TransferBatch batch = new TransferBatch();
+        batch.setConcurrencyLimiter(limiter);
+        batch.setEventListener(new FTPEventListener() {
+
+            public Object begin(FTPEventType type, String hostKey, String name) {
+
+                if (type != FTPEventType.DATA_TRANSFER) {
+                    return null;
+                }
+
+                int count = active.incrementAndGet();
+                int max;
+                do {
+                    max = maxActive.get();
+                } while (count > max && !maxActive.compareAndSet(max, count));
+                return type;
+            }
+
+            public void end(Object event, long bytes, int replyCode, boolean success) {
+                active.decrementAndGet();
+            }
+        });
+        for (int i = 0; i < 12; i++) {
+            createFile(new File(work, "root/ftp/file/foo" + i + ".bin"), 100000);
+            batch.add(server.getUrl("/ftp/file/foo" + i + ".bin"), new File(work, "local/bar" + i + ".bin").getAbsolutePath());
+        }
+
+        // =================== Process ===================
+        TransferBatchResult result = executor.execute(batch);
+
+        // =================== Output  ===================
+        Assert.assertEquals(12, result.getSucceededCount());
+        Assert.assertTrue(maxActive.get() <= 2);
+
+        // ===================  After  ===================
+        executor.shutdown();
+        server.stop();
+        delete(work);
+    }
+
+    /**
+     * Upload the file, success is expected and the remote file is the same as the local one.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testUpload001() throws Exception {
+
+        // =================== Before  ===================
+        File work = createDirectory();
+        LoopbackFTPServer server = new LoopbackFTPServer(new File(work, "root"));
+        server.start();
+        File local = createFile(new File(work, "local/foo.bin"), 300000);
+        File remote = new File(work, "root/ftp/file/bar.bin");
+
+        // ===================  Input  ===================
+        ServerToClient client = new ServerToClient();
+        client.setTransferMode(FTPTransferMode.UPLOAD);
+
+        // =================== Process ===================
+        boolean result = client.transfer(server.getUrl("/ftp/file/bar.bin"), local.getAbsolutePath());
+
+        // =================== Output  ===================
+        Assert.assertEquals(true, result);
+        Assert.assertTrue(Arrays.equals(readFile(local), readFile(remote)));
+
+        // ===================  After  ===================
+        server.stop();
+        delete(work);
+    }
+
+    /**
+     * Upload a file into a directory and then a file without directory through one connection
+     * pool, the second file is expected in the login directory instead of the first one's.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testUpload002() throws Exception {
+
+        // =================== Before  ===================
+        File work = createDirectory();
+        LoopbackFTPServer server = new LoopbackFTPServer(new File(work, "root"));
+        server.start();
+        File local1 = createFile(new File(work, "local/a.txt"), 1000);
+        File local2 = createFile(new File(work, "local/b.txt"), 2000);
+        FTPClientPool pool = new FTPClientPool();
+
+        // ===================  Input  ===================
+        ServerToClient client = new ServerToClient();
+        client.setTransferMode(FTPTransferMode.UPLOAD);
+        client.setConnectionPool(pool);
+
+        // =================== Process ===================
+        boolean result1 = client.transfer(server.getUrl("/dir/a.txt"), local1.getAbsolutePath());
+        boolean result2 = client.transfer(server.getUrl("/b.txt"), local2.getAbsolutePath());
+
+        // =================== Output  ===================
+        Assert.assertEquals(true, result1);
+        Assert.assertEquals(true, result2);
+        Assert.assertEquals(1, server.getConnectionCount());
+        Assert.assertTrue(Arrays.equals(readFile(local1), readFile(new File(work, "root/dir/a.txt"))));
+        Assert.assertTrue(Arrays.equals(readFile(local2), readFile(new File(work, "root/b.txt"))));
+        Assert.assertEquals(false, new File(work, "root/dir/b.txt").exists());
+
+        // ===================  After  ===================
+        pool.close();
+        server.stop();
+        delete(work);
+    }
+
+    /**
+     * Transfer the file server to server, success is expected and the file of server2 is the same as server1's.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testServerToServer001() throws Exception {
+
+        // =================== Before  ===================
+        File work = createDirectory();
+        LoopbackFTPServer server1 = new LoopbackFTPServer(new File(work, "root1"));
+        server1.start();
+        LoopbackFTPServer server2 = new LoopbackFTPServer(new File(work, "root2"));
+        server2.start();
+        File file1 = createFile(new File(work, "root1/ftp/foo.bin"), 300000);
+        File file2 = new File(work, "root2/ftp/bar.bin");
+        file2.getParentFile().mkdirs();
+
+        // ===================  Input  ===================
+        ServerToServer sts = new ServerToServer();
+
+        // =================== Process ===================
+        boolean result = sts.transfer(server1.getUrl("/ftp/foo.bin"), server2.getUrl("/ftp/bar.bin"));
+
+        // =================== Output  ===================
+        Assert.assertEquals(true, result);
+        Assert.assertTrue(Arrays.equals(readFile(file1), readFile(file2)));
+
+        // ===================  After  ===================
+        server1.stop();
+        server2.stop();
+        delete(work);
+    }
+
+    /**
+     * Transfer a batch of files server to server, success is expected for each file over one pair of sessions.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testServerToServer002() throws Exception {
+
+        // =================== Before  ===================
+        File work = createDirectory();
+        LoopbackFTPServer server1 = new LoopbackFTPServer(new File(work, "root1"));
+        server1.start();
+        LoopbackFTPServer server2 = new LoopbackFTPServer(new File(work, "root2"));
+        server2.start();
+        List<String> server1Urls = new ArrayList<String>();
+        List<String> server2Urls = new ArrayList<String>();
+        for (int i = 0; i < 3; i++) {
+            createFile(new File(work, "root1/ftp/foo" + i + ".bin"), 1000 + i);
+            server1Urls.add(server1.getUrl("/ftp/foo" + i + ".bin"));
+            server2Urls.add(server2.getUrl("/ftp/dir" + i + "/bar" + i + ".bin"));
+        }
+
+        // ===================  Input  ===================
+        ServerToServer sts = new ServerToServer();
+
+        // =================== Process ===================
+        TransferBatchResult result = sts.transfer(server1Urls, server2Urls);
+
+        // =================== Output  ===================
+        Assert.assertEquals(3, result.getSucceededCount());
+        Assert.assertEquals(1, server1.getConnectionCount());
+        Assert.assertEquals(1, server2.getConnectionCount());
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(server1Urls.get(i), result.getResults().get(i).getSource());
+            Assert.assertTrue(Arrays.equals(readFile(new File(work, "root1/ftp/foo" + i + ".bin")),
+                readFile(new File(work, "root2/ftp/dir" + i + "/bar" + i + ".bin"))));
+        }
+
+        // ===================  After  ===================
+        server1.stop();
+        server2.stop();
+        delete(work);
+    }
+
+    /**
+     * Transfer a batch of files server to server, when a file does not exist and a URL is invalid,
+     * failure is expected for them and success is expected for the others.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testServerToServer003() throws Exception {
+
+        // =================== Before  ===================
+        File work = createDirectory();
+        LoopbackFTPServer server1 = new LoopbackFTPServer(new File(work, "root1"));
+        server1.start();
+        LoopbackFTPServer server2 = new LoopbackFTPServer(new File(work, "root2"));
+        server2.start();
+        createFile(new File(work, "root1/ftp/foo0.bin"), 1000);
+        createFile(new File(work, "root1/ftp/foo3.bin"), 1000);
+
+        // ===================  Input  ===================
+        ServerToServer sts = new ServerToServer();
+        List<String> server1Urls = Arrays.asList(server1.getUrl("/ftp/foo0.bin"), server1.getUrl("/ftp/foo1.bin"),
+            "ftp://invalid", server1.getUrl("/ftp/foo3.bin"));
+        List<String> server2Urls = Arrays.asList(server2.getUrl("/ftp/bar0.bin"), server2.getUrl("/ftp/bar1.bin"),
+            server2.getUrl("/ftp/bar2.bin"), server2.getUrl("/ftp/bar3.bin"));
+
+        // =================== Process ===================
+        TransferBatchResult result = sts.transfer(server1Urls, server2Urls);
+
+        // =================== Output  ===================
+        Assert.assertEquals(2, result.getSucceededCount());
+        Assert.assertEquals(true, result.getResults().get(0).isSuccess());
+        Assert.assertEquals(false, result.getResults().get(1).isSuccess());
+        Assert.assertEquals(false, result.getResults().get(2).isSuccess());
+        Assert.assertTrue(result.getResults().get(2).getCause() instanceof IllegalArgumentException);
+        Assert.assertEquals(true, result.getResults().get(3).isSuccess());
+        Assert.assertTrue(new File(work, "root2/ftp/bar3.bin").isFile());
+        Assert.assertEquals(1, server1.getConnectionCount());
+        Assert.assertEquals(1, server2.getConnectionCount());
+
+        // ===================  After  ===================
+        server1.stop();
+        server2.stop();
+        delete(work);
+    }
+
+    /**
+     * Transfer a batch of files server to server over 3 session pairs, success is expected for each file.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testServerToServer004() throws Exception {
+
+        // =================== Before  ===================
+        File work = createDirectory();
+        LoopbackFTPServer server1 = new LoopbackFTPServer(new File(work, "root1"));
+        server1.start();
+        LoopbackFTPServer server2 = new LoopbackFTPServer(new File(work, "root2"));
+        server2.start();
+        server2.setBandwidth(1024L * 1024L);
+        List<String> server1Urls = new ArrayList<String>();
+        List<String> server2Urls = new ArrayList<String>();
+        for (int i = 0; i < 9; i++) {
+            createFile(new File(work, "root1/ftp/foo" + i + ".bin"), 50000 + i);
+            server1Urls.add(server1.getUrl("/ftp/foo" + i + ".bin"));
+            server2Urls.add(server2.getUrl("/ftp/bar" + i + ".bin"));
+        }
+
+        // ===================  Input  ===================
+        ServerToServer sts = new ServerToServer();
+        sts.setParallelPairs(3);
+
+        // =================== Process ===================
+        TransferBatchResult result = sts.transfer(server1Urls, server2Urls);
+
+        // =================== Output  ===================
+        Assert.assertEquals(9, result.getSucceededCount());
+        Assert.assertEquals(3, server1.getConnectionCount());
+        Assert.assertEquals(3, server2.getConnectionCount());
+        for (int i = 0; i < 9; i++) {
+            Assert.assertTrue(Arrays.equals(readFile(new File(work, "root1/ftp/foo" + i + ".bin")),
+                readFile(new File(work, "root2/ftp/bar" + i + ".bin"))));
+        }
+
+        // ===================  After  ===================
+        server1.stop();
+        server2.stop();
+        delete(work);
+    }
+
+    /**
+     * Transfer a batch of files server to server over 3 session pairs, when server2 accepts only 2 connections,
+     * the rejected pair stops after 3 failed files and the other pairs transfer the rest.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testServerToServer005() throws Exception {
+
+        // =================== Before  ===================
+        File work = createDirectory();
+        LoopbackFTPServer server1 = new LoopbackFTPServer(new File(work, "root1"));
+        server1.start();
+        LoopbackFTPServer server2 = new LoopbackFTPServer(new File(work, "root2"));
+        server2.start();
+        server2.setMaxConnections(2);
+        List<String> server1Urls = new ArrayList<String>();
+        List<String> server2Urls = new ArrayList<String>();
+        for (int i = 0; i < 12; i++) {
+            createFile(new File(work, "root1/ftp/foo" + i + ".bin"), 1000 + i);
+            server1Urls.add(server1.getUrl("/ftp/foo" + i + ".bin"));
+            server2Urls.add(server2.getUrl("/ftp/bar" + i + ".bin"));
+        }
+
+        // ===================  Input  ===================
+        ServerToServer sts = new ServerToServer();
+        sts.setParallelPairs(3);
+
+        // =================== Process ===================
+        TransferBatchResult result = sts.transfer(server1Urls, server2Urls);
+
+        // =================== Output  ===================
+        Assert.assertEquals(12, result.getResults().size());
+        Assert.assertTrue(result.getFailedCount() <= 3);
+        Assert.assertEquals(12, result.getSucceededCount() + result.getFailedCount());
+
+        // ===================  After  ===================
+        server1.stop();
+        server2.stop();
+        delete(work);
+    }
+
+    /**
+     * Transfer a batch of files server to server when server1 refuses PORT, success is expected
+     * through the client, and FXP is tried only once for the pair of servers.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testServerToServer006() throws Exception {
+
+        // =================== Before  ===================
+        File work = createDirectory();
+        LoopbackFTPServer server1 = new LoopbackFTPServer(new File(work, "root1"));
+        server1.start();
+        server1.setActiveMode(false);
+        LoopbackFTPServer server2 = new LoopbackFTPServer(new File(work, "root2"));
+        server2.start();
+        List<String> server1Urls = new ArrayList<String>();
+        List<String> server2Urls = new ArrayList<String>();
+        for (int i = 0; i < 3; i++) {
+            createFile(new File(work, "root1/ftp/foo" + i + ".bin"), 1024 * 1024 + i);
+            server1Urls.add(server1.getUrl("/ftp/foo" + i + ".bin"));
+            server2Urls.add(server2.getUrl("/ftp/bar" + i + ".bin"));
+        }
+
+        // ===================  Input  ===================
+        ServerToServer sts = new ServerToServer();
+        sts.setProxyFallback(true);
+
+        // =================== Process ===================
+        TransferBatchResult result = sts.transfer(server1Urls, server2Urls);
+
+        // =================== Output  ===================
+        Assert.assertEquals(3, result.getSucceededCount());
+        Assert.assertEquals(1, server1.getPortCommands());
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(Arrays.equals(readFile(new File(work, "root1/ftp/foo" + i + ".bin")),
+                readFile(new File(work, "root2/ftp/bar" + i + ".bin"))));
+        }
+
+        // ===================  After  ===================
+        server1.stop();
+        server2.stop();
+        delete(work);
+    }
+
+    /**
+     * Resume the file server to server when server1 refuses PORT, success is expected through
+     * the client from the size of the file of server2. Without the fallback, failure is expected.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testServerToServer007() throws Exception {
+
+        // =================== Before  ===================
+        File work = createDirectory();
+        LoopbackFTPServer server1 = new LoopbackFTPServer(new File(work, "root1"));
+        server1.start();
+        server1.setActiveMode(false);
+        LoopbackFTPServer server2 = new LoopbackFTPServer(new File(work, "root2"));
+        server2.start();
+        byte[] content = readFile(createFile(new File(work, "root1/ftp/foo.bin"), 1500000));
+        File file2 = new File(work, "root2/ftp/bar.bin");
+        file2.getParentFile().mkdirs();
+        OutputStream output = new FileOutputStream(file2);
+        try {
+            output.write(content, 0, 500000);
+        } finally {
+            output.close();
+        }
+
+        // ===================  Input  ===================
+        ServerToServer sts1 = new ServerToServer();
+        sts1.setResumeBroken(true);
+        ServerToServer sts2 = new ServerToServer();
+        sts2.setResumeBroken(true);
+        sts2.setProxyFallback(true);
+
+        // =================== Process ===================
+        boolean result1 = sts1.transfer(server1.getUrl("/ftp/foo.bin"), server2.getUrl("/ftp/bar.bin"));
+        boolean result2 = sts2.transfer(server1.getUrl("/ftp/foo.bin"), server2.getUrl("/ftp/bar.bin"));
+
+        // =================== Output  ===================
+        Assert.assertEquals(false, result1);
+        Assert.assertEquals(true, result2);
+        Assert.assertEquals(1000000L, sts2.getMetrics().getBytesTransferred());
+        Assert.assertTrue(Arrays.equals(content, readFile(file2)));
+
+        // ===================  After  ===================
+        server1.stop();
+        server2.stop();
+        delete(work);
+    }
+
+    /**
+     * Transfer the file server to server slower than the completion timeout, failure is expected
+     * as soon as the timeout expires.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testServerToServer008() throws Exception {
+
+        // =================== Before  ===================
+        File work = createDirectory();
+        LoopbackFTPServer server1 = new LoopbackFTPServer(new File(work, "root1"));
+        server1.start();
+        server1.setBandwidth(200 * 1024);
+        LoopbackFTPServer server2 = new LoopbackFTPServer(new File(work, "root2"));
+        server2.start();
+        createFile(new File(work, "root1/ftp/foo.bin"), 2 * 1024 * 1024);
+
+        // ===================  Input  ===================
+        ServerToServer sts = new ServerToServer();
+        sts.setCompletionTimeout(1L);
+
+        // =================== Process ===================
+        long startTime = System.currentTimeMillis();
+        boolean result = sts.transfer(server1.getUrl("/ftp/foo.bin"), server2.getUrl("/ftp/bar.bin"));
+        long elapsedTime = System.currentTimeMillis() - startTime;
+
+        // =================== Output  ===================
+        Assert.assertEquals(false, result);
+        Assert.assertTrue(elapsedTime < 5000L);
+
+        // ===================  After  ===================
+        server1.stop();
+        server2.stop();
+        delete(work);
+    }
+
+    /**
+     * Transfer the file server to server when the data connection stalls, the watchdog is expected
+     * to abort it before the data timeout, and success is expected on retry.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testServerToServer009() throws Exception {
+
+        // =================== Before  ===================
+        File work = createDirectory();
+        LoopbackFTPServer server1 = new LoopbackFTPServer(new File(work, "root1"));
+        server1.start();
+        server1.stallDataConnections(1, 100000L);
+        LoopbackFTPServer server2 = new LoopbackFTPServer(new File(work, "root2"));
+        server2.start();
+        createFile(new File(work, "root1/ftp/foo.bin"), 1024 * 1024);
+
+        // ===================  Input  ===================
+        ServerToServer sts = new ServerToServer();
+        sts.setStallTimeout(1L);
+        sts.setRetryTimes(1);
+        sts.setRetryWaitTime(0L);
+
+        // =================== Process ===================
+        long startTime = System.currentTimeMillis();
+        boolean result = sts.transfer(server1.getUrl("/ftp/foo.bin"), server2.getUrl("/ftp/bar.bin"));
+        long elapsedTime = System.currentTimeMillis() - startTime;
+
+        // =================== Output  ===================
+        Assert.assertEquals(true, result);
+        Assert.assertEquals(1, sts.getCurrentRetryTimes());
+        Assert.assertTrue(elapsedTime < 5000L);
+        Assert.assertTrue(Arrays.equals(readFile(new File(work, "root1/ftp/foo.bin")),
+            readFile(new File(work, "root2/ftp/bar.bin"))));
+
+        // ===================  After  ===================
+        server1.stop();
+        server2.stop();
+        delete(work);
+    }
+
+    /**
+     * Transfer the file server to server on the same FTP server with a concurrency limit of one,
+     * success is expected because both sessions of the attempt share one permit.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testServerToServer010() throws Exception {
+
+        // =================== Before  ===================
+        File work = createDirectory();
+        LoopbackFTPServer server = new LoopbackFTPServer(new File(work, "root"));
+        server.start();
+        File file1 = createFile(new File(work, "root/ftp/foo.bin"), 300000);
+
+        // ===================  Input  ===================
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter();
+        limiter.setInitialLimit(1);
+        limiter.setAcquireTimeout(5);
+        ServerToServer sts = new ServerToServer();
+        sts.setConcurrencyLimiter(limiter);
+
+        // =================== Process ===================
+        boolean result = sts.transfer(server.getUrl("/ftp/foo.bin"), server.getUrl("/ftp/bar.bin"));
+
+        // =================== Output  ===================
+        Assert.assertEquals(true, result);
+        Assert.assertEquals(0, limiter.getInFlight(AbstractFTPClient.convertFTPUrlToVO(server.getUrl("/ftp/foo.bin")).getHostKey()));
+        Assert.assertTrue(Arrays.equals(readFile(file1), readFile(new File(work, "root/ftp/bar.bin"))));
+
+        // ===================  After  ===================
+        server.stop();
+        delete(work);
+    }
+
+    /**
+     * Transfer a batch of files server to server, where a file without directory follows a file
+     * in a directory, the second file is expected in the login directory of server2.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testServerToServer011() throws Exception {
+
+        // =================== Before  ===================
+        File work = createDirectory();
+        LoopbackFTPServer server1 = new LoopbackFTPServer(new File(work, "root1"));
+        server1.start();
+        LoopbackFTPServer server2 = new LoopbackFTPServer(new File(work, "root2"));
+        server2.start();
+        createFile(new File(work, "root1/ftp/foo0.bin"), 1000);
+        createFile(new File(work, "root1/ftp/foo1.bin"), 2000);
+
+        // ===================  Input  ===================
+        ServerToServer sts = new ServerToServer();
+        List<String> server1Urls = Arrays.asList(server1.getUrl("/ftp/foo0.bin"), server1.getUrl("/ftp/foo1.bin"));
+        List<String> server2Urls = Arrays.asList(server2.getUrl("/dir/bar0.bin"), server2.getUrl("/bar1.bin"));
+
+        // =================== Process ===================
+        TransferBatchResult result = sts.transfer(server1Urls, server2Urls);
+
+        // =================== Output  ===================
+        Assert.assertEquals(2, result.getSucceededCount());
+        Assert.assertEquals(1, server2.getConnectionCount());
+        Assert.assertTrue(Arrays.equals(readFile(new File(work, "root1/ftp/foo1.bin")),
+            readFile(new File(work, "root2/bar1.bin"))));
+        Assert.assertEquals(false, new File(work, "root2/dir/bar1.bin").exists());
+
+        // ===================  After  ===================
+        server1.stop();
+        server2.stop();
+        delete(work);
+    }
+
+    /**
+     * Transfer the file server to server when server2 refuses PASV, success is expected through
+     * the client, with the data connection of server2 opened by server2.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testServerToServer012() throws Exception {
+
+        // =================== Before  ===================
+        File work = createDirectory();
+        LoopbackFTPServer server1 = new LoopbackFTPServer(new File(work, "root1"));
+        server1.start();
+        LoopbackFTPServer server2 = new LoopbackFTPServer(new File(work, "root2"));
+        server2.start();
+        server2.setPassiveMode(false);
+        File file1 = createFile(new File(work, "root1/ftp/foo.bin"), 1024 * 1024);
+
+        // ===================  Input  ===================
+        ServerToServer sts = new ServerToServer();
+        sts.setProxyFallback(true);
+
+        // =================== Process ===================
+        boolean result = sts.transfer(server1.getUrl("/ftp/foo.bin"), server2.getUrl("/ftp/bar.bin"));
+
+        // =================== Output  ===================
+        Assert.assertEquals(true, result);
+        Assert.assertEquals(0, server1.getPortCommands());
+        Assert.assertTrue(Arrays.equals(readFile(file1), readFile(new File(work, "root2/ftp/bar.bin"))));
+
+        // ===================  After  ===================
+        server1.stop();
+        server2.stop();
+        delete(work);
+    }
+
+    /**
+     * Transfer the file server to server when server2 refuses the data connection from server1
+     * with 425, success is expected through the client over the sessions opened again.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testServerToServer013() throws Exception {
+
+        // =================== Before  ===================
+        File work = createDirectory();
+        LoopbackFTPServer server1 = new LoopbackFTPServer(new File(work, "root1"));
+        server1.start();
+        LoopbackFTPServer server2 = new LoopbackFTPServer(new File(work, "root2"));
+        server2.start();
+        server2.refuseDataConnections(1);
+        File file1 = createFile(new File(work, "root1/ftp/foo.bin"), 1024 * 1024);
+
+        // ===================  Input  ===================
+        ServerToServer sts = new ServerToServer();
+        sts.setProxyFallback(true);
+
+        // =================== Process ===================
+        boolean result = sts.transfer(server1.getUrl("/ftp/foo.bin"), server2.getUrl("/ftp/bar.bin"));
+
+        // =================== Output  ===================
+        Assert.assertEquals(true, result);
+        Assert.assertEquals(0, sts.getCurrentRetryTimes());
+        Assert.assertEquals(1, server1.getPortCommands());
+        Assert.assertEquals(2, server2.getConnectionCount());
+        Assert.assertTrue(Arrays.equals(readFile(file1), readFile(new File(work, "root2/ftp/bar.bin"))));
+
+        // ===================  After  ===================
+        server1.stop();
+        server2.stop();
+        delete(work);
+    }
+
+    /**
+     * Transfer the file server to server through the client with a limit of 200KB/s per transfer,
+     * it is expected to take about 2 seconds for 600KB after the burst of 1 second, instead of running at full speed.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testServerToServer014() throws Exception {
+
+        // =================== Before  ===================
+        File work = createDirectory();
+        LoopbackFTPServer server1 = new LoopbackFTPServer(new File(work, "root1"));
+        server1.start();
+        server1.setActiveMode(false);
+        LoopbackFTPServer server2 = new LoopbackFTPServer(new File(work, "root2"));
+        server2.start();
+        File file1 = createFile(new File(work, "root1/ftp/foo.bin"), 600 * 1024);
+
+        // ===================  Input  ===================
+        BandwidthLimiter limiter = new BandwidthLimiter();
+        limiter.setTransferRate(200 * 1024);
+        ServerToServer sts = new ServerToServer();
+        sts.setProxyFallback(true);
+        sts.setBandwidthLimiter(limiter);
+
+        // =================== Process ===================
+        long startTime = System.currentTimeMillis();
+        boolean result = sts.transfer(server1.getUrl("/ftp/foo.bin"), server2.getUrl("/ftp/bar.bin"));
+        long elapsedTime = System.currentTimeMillis() - startTime;
+
+        // =================== Output  ===================
+        Assert.assertEquals(true, result);
+        Assert.assertTrue(elapsedTime >= 1500L);
+        Assert.assertTrue(Arrays.equals(readFile(file1), readFile(new File(work, "root2/ftp/bar.bin"))));
+
+        // ===================  After  ===================
+        server1.stop();
+        server2.stop();
+        delete(work);
+    }
+
+    /**
+     * Transfer the file server to server slowly while the file of server2 is watched, the bytes
+     * of the transfer are expected to grow during FXP and to reach the file size at the end.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testServerToServer015() throws Exception {
+
+        // =================== Before  ===================
+        File work = createDirectory();
+        LoopbackFTPServer server1 = new LoopbackFTPServer(new File(work, "root1"));
+        server1.start();
+        LoopbackFTPServer server2 = new LoopbackFTPServer(new File(work, "root2"));
+        server2.start();
+        server2.setBandwidth(256L * 1024L);
+        createFile(new File(work, "root1/ftp/foo.bin"), 640 * 1024);
+
+        // ===================  Input  ===================
+        final ServerToServer sts = new ServerToServer();
+        sts.setStallTimeout(1L);
+        final String server1Url = server1.getUrl("/ftp/foo.bin");
+        final String server2Url = server2.getUrl("/ftp/bar.bin");
+        final AtomicInteger result = new AtomicInteger();
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                result.set(sts.transfer(server1Url, server2Url) ? 1 : -1);
+            }
+        });
+
+        // =================== Process ===================
+        thread.start();
+        Thread.sleep(1500L);
+        long bytes = sts.getMetrics().getBytesTransferred();
+        thread.join();
+
+        // =================== Output  ===================
+        Assert.assertEquals(1, result.get());
+        Assert.assertTrue(bytes > 0L);
+        Assert.assertTrue(bytes < 640L * 1024L);
+        Assert.assertEquals(640L * 1024L, sts.getMetrics().getBytesTransferred());
+
+        // ===================  After  ===================
+        server1.stop();
+        server2.stop();
+        delete(work);
+    }
+
+    /**
+     * Create the temporary directory.
+     *
+     * @return The temporary directory.
+     * @throws IOException
+     */
+    static File createDirectory() throws IOException {
+
+        File directory = File.createTempFile("easyftp", "");
+        if (!directory.delete() || !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+
+        return directory;
+    }
+
+    /**
+     * Create the file with random content.
+     *
+     * @param file The file.
+     * @param size The size of the file.
+     * @return The file.
+     * @throws IOException
+     */
+    static File createFile(File file, int size) throws IOException {
+
+        file.getParentFile().mkdirs();
+
+        byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        OutputStream output = new FileOutputStream(file);
+        try {
+            output.write(content);
+        } finally {
+            output.close();
+        }
+
+        return file;
+    }
+
+    /**
+     * Read the content of the file.
+     *
+     * @param file The file.
+     * @return The content of the file.
+     * @throws IOException
+     */
+    static byte[] readFile(File file) throws IOException {
+
+        byte[] content = new byte[(int) file.length()];
+        InputStream input = new FileInputStream(file);
+        try {
+            int offset = 0;
+            int count;
+            while (offset < content.length && (count = input.read(content, offset, content.length - offset)) != -1) {
+                offset += count;
+            }
+        } finally {
+            input.close();
+        }
+
+        return content;
+    }
+
+    /**
+     * Delete the file or the directory with its content.
+     *
+     * @param file The file or the directory.
+     */
+    static void delete(File file) {
+
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+
+        file.delete();
+    }
+}
@@ -0,0 +1,84 @@
+package com.venson.easyftp;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.venson.easyftp.MetricsRegistry;
+
+/**
+ * The test class of MetricsRegistry.
+ *
+ * @author venson
+ */
+public class MetricsRegistryTest {
+
+    /**
+     * The metrics of transfers are aggregated by FTP server.
+     */
+    @Test
+    public void testRecord001() {
+
+        // =================== Before  ===================
+        MetricsRegistry registry = new MetricsRegistry();
+
+        // ===================  Input  ===================
+        TransferMetrics metrics1 = new TransferMetrics();
+        metrics1.addPhaseTime(TransferPhase.TRANSFER, 500L);
+        metrics1.addBytes(1000L);
+        metrics1.setRetryTimes(1);
+        metrics1.setElapsedTime(800L);
+
+        TransferMetrics metrics2 = new TransferMetrics();
+        metrics2.addPhaseTime(TransferPhase.TRANSFER, 1500L);
+        metrics2.addBytes(3000L);
+        metrics2.setElapsedTime(1600L);
+
+        TransferMetrics metrics3 = new TransferMetrics();
+        metrics3.addPhaseTime(TransferPhase.CONNECT, 3000L);
+        metrics3.setElapsedTime(3000L);
+
+        // =================== Process ===================
+        registry.record("192.168.19.251:21", metrics1, true);
+        registry.record("192.168.19.251:21", metrics2, true);
+        registry.record("192.168.19.252:21", metrics3, false);
+
+        // =================== Output  ===================
+        Assert.assertEquals(2, registry.getHostKeys().size());
+
+        MetricsRegistry.HostMetrics host1 = registry.getHostMetrics("192.168.19.251:21");
+        Assert.assertEquals(2L, host1.getTransferCount());
+        Assert.assertEquals(2L, host1.getSuccessCount());
+        Assert.assertEquals(1L, host1.getRetryCount());
+        Assert.assertEquals(4000L, host1.getByteCount());
+        Assert.assertEquals(2000L, host1.getThroughput());
+        Assert.assertEquals(2000L, host1.getPhaseTime(TransferPhase.TRANSFER).getSum());
+
+        MetricsRegistry.HostMetrics host2 = registry.getHostMetrics("192.168.19.252:21");
+        Assert.assertEquals(1L, host2.getFailureCount());
+        Assert.assertEquals(3000L, host2.getPhaseTime(TransferPhase.CONNECT).getMax());
+
+        // ===================  After  ===================
+    }
+
+    /**
+     * The effective throughput of a transfer is the bytes over the elapsed time.
+     */
+    @Test
+    public void testGetThroughput001() {
+
+        // =================== Before  ===================
+        TransferMetrics metrics = new TransferMetrics();
+
+        // ===================  Input  ===================
+        metrics.addBytes(5000L);
+        metrics.setElapsedTime(2000L);
+
+        // =================== Process ===================
+        long throughput = metrics.getThroughput();
+
+        // =================== Output  ===================
+        Assert.assertEquals(2500L, throughput);
+
+        // ===================  After  ===================
+    }
+}
@@ -0,0 +1,118 @@
+package com.venson.easyftp;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.venson.easyftp.RetryBudget;
+
+/**
+ * The test class of RetryBudget.
+ *
+ * @author venson
+ */
+public class RetryBudgetTest {
+
+    /**
+     * Test default behavior.
+     */
+    @Test
+    public void testDefaultBehavior001() {
+
+        // =================== Before  ===================
+
+        // ===================  Input  ===================
+
+        // =================== Process ===================
+        RetryBudget budget = new RetryBudget();
+
+        // =================== Output  ===================
+        Assert.assertEquals(0.1d, budget.getRetryRatio(), 0.0d);
+        Assert.assertEquals(10, budget.getMaxBurst());
+        Assert.assertEquals(10, budget.getAvailableRetries("192.168.19.251:21"));
+
+        // ===================  After  ===================
+    }
+
+    /**
+     * When the burst is used up, the retry is refused until enough transfers are recorded.
+     */
+    @Test
+    public void testTryAcquireRetry001() {
+
+        // =================== Before  ===================
+        RetryBudget budget = new RetryBudget();
+        budget.setRetryRatio(0.5d);
+        budget.setMaxBurst(2);
+
+        // ===================  Input  ===================
+        String hostKey = "192.168.19.251:21";
+
+        // =================== Process ===================
+        boolean result1 = budget.tryAcquireRetry(hostKey);
+        boolean result2 = budget.tryAcquireRetry(hostKey);
+        boolean result3 = budget.tryAcquireRetry(hostKey);
+        budget.recordTransfer(hostKey);
+        boolean result4 = budget.tryAcquireRetry(hostKey);
+        budget.recordTransfer(hostKey);
+        boolean result5 = budget.tryAcquireRetry(hostKey);
+
+        // =================== Output  ===================
+        Assert.assertEquals(true, result1);
+        Assert.assertEquals(true, result2);
+        Assert.assertEquals(false, result3);
+        Assert.assertEquals(false, result4);
+        Assert.assertEquals(true, result5);
+
+        // ===================  After  ===================
+    }
+
+    /**
+     * The budgets of different FTP servers are independent.
+     */
+    @Test
+    public void testTryAcquireRetry002() {
+
+        // =================== Before  ===================
+        RetryBudget budget = new RetryBudget();
+        budget.setMaxBurst(1);
+
+        // ===================  Input  ===================
+
+        // =================== Process ===================
+        boolean result1 = budget.tryAcquireRetry("192.168.19.251:21");
+        boolean result2 = budget.tryAcquireRetry("192.168.19.251:21");
+        boolean result3 = budget.tryAcquireRetry("192.168.19.252:21");
+
+        // =================== Output  ===================
+        Assert.assertEquals(true, result1);
+        Assert.assertEquals(false, result2);
+        Assert.assertEquals(true, result3);
+
+        // ===================  After  ===================
+    }
+
+    /**
+     * The recorded transfers can not fill the budget over the max count of retries in a burst.
+     */
+    @Test
+    public void testRecordTransfer001() {
+
+        // =================== Before  ===================
+        RetryBudget budget = new RetryBudget();
+        budget.setRetryRatio(1.0d);
+        budget.setMaxBurst(3);
+
+        // ===================  Input  ===================
+        String hostKey = "192.168.19.251:21";
+
+        // =================== Process ===================
+        for (int i = 0; i < 10; i++) {
+            budget.recordTransfer(hostKey);
+        }
+
+        // =================== Output  ===================
+        Assert.assertEquals(3, budget.getAvailableRetries(hostKey));
+
+        // ===================  After  ===================
+    }
+}
@@ -0,0 +1,173 @@
+package com.venson.easyftp;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.venson.easyftp.ChecksumAlgorithm;
+
+/**
+ * The test class of TransferChecksum and its streams.
+ *
+ * @author venson
+ */
+public class TransferChecksumTest {
+
+    /**
+     * The check input of the algorithms.
+     */
+    private static final byte[] CHECK_INPUT = "123456789".getBytes();
+
+    /**
+     * The checksums of check input are expected for each algorithm.
+     */
+    @Test
+    public void testGetValue001() {
+
+        // =================== Before  ===================
+
+        // ===================  Input  ===================
+
+        // =================== Process ===================
+        String crc32 = checksumOf(ChecksumAlgorithm.CRC32, CHECK_INPUT);
+        String crc32c = checksumOf(ChecksumAlgorithm.CRC32C, CHECK_INPUT);
+        String md5 = checksumOf(ChecksumAlgorithm.MD5, CHECK_INPUT);
+        String sha256 = checksumOf(ChecksumAlgorithm.SHA_256, CHECK_INPUT);
+
+        // =================== Output  ===================
+        Assert.assertEquals("cbf43926", crc32);
+        Assert.assertEquals("e3069283", crc32c);
+        Assert.assertEquals("25f9e794323b453885f5181f1b624d0b", md5);
+        Assert.assertEquals("15e2b0d3c33891ebb0f1ef609ec419420c20e320ce94c65fbc8c3312448eb225", sha256);
+
+        // ===================  After  ===================
+    }
+
+    /**
+     * When the CRC has leading zeros, they are kept.
+     */
+    @Test
+    public void testGetValue002() {
+
+        // =================== Before  ===================
+
+        // ===================  Input  ===================
+        byte[] input = new byte[0];
+
+        // =================== Process ===================
+        String result = checksumOf(ChecksumAlgorithm.CRC32C, input);
+
+        // =================== Output  ===================
+        Assert.assertEquals("00000000", result);
+
+        // ===================  After  ===================
+    }
+
+    /**
+     * When FTP server replies the CRC in upper case without leading zeros, it matches, and a
+     * different or malformed CRC does not.
+     */
+    @Test
+    public void testMatches001() {
+
+        // =================== Before  ===================
+
+        // ===================  Input  ===================
+        String checksum = "0a1b2c3d";
+
+        // =================== Process ===================
+        boolean result1 = ChecksumAlgorithm.CRC32.matches(checksum, "A1B2C3D");
+        boolean result2 = ChecksumAlgorithm.CRC32.matches(checksum, "A1B2C3E");
+        boolean result3 = ChecksumAlgorithm.CRC32.matches(checksum, "not a crc");
+        boolean result4 = ChecksumAlgorithm.MD5.matches("25f9e794323b453885f5181f1b624d0b", "25F9E794323B453885F5181F1B624D0B");
+
+        // =================== Output  ===================
+        Assert.assertEquals(true, result1);
+        Assert.assertEquals(false, result2);
+        Assert.assertEquals(false, result3);
+        Assert.assertEquals(true, result4);
+
+        // ===================  After  ===================
+    }
+
+    /**
+     * The skipped bytes of input stream are counted in the checksum.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testChecksumInputStream001() throws Exception {
+
+        // =================== Before  ===================
+        TransferChecksum checksum = new TransferChecksum(ChecksumAlgorithm.MD5);
+
+        // ===================  Input  ===================
+        InputStream input = new ChecksumInputStream(new ByteArrayInputStream(CHECK_INPUT), checksum);
+
+        // =================== Process ===================
+        long skipped = input.skip(4L);
+        byte[] buffer = new byte[16];
+        int read = input.read(buffer);
+        input.close();
+
+        // =================== Output  ===================
+        Assert.assertEquals(4L, skipped);
+        Assert.assertEquals(5, read);
+        Assert.assertEquals("25f9e794323b453885f5181f1b624d0b", checksum.getValue());
+
+        // ===================  After  ===================
+    }
+
+    /**
+     * The bytes written to output stream are counted in the checksum after the local file prefix.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testChecksumOutputStream001() throws Exception {
+
+        // =================== Before  ===================
+        File file = File.createTempFile("easyftp", ".tmp");
+        OutputStream fos = new FileOutputStream(file);
+        fos.write(CHECK_INPUT, 0, 3);
+        fos.close();
+
+        TransferChecksum checksum = new TransferChecksum(ChecksumAlgorithm.SHA_256);
+        checksum.update(file, file.length());
+
+        // ===================  Input  ===================
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStream output = new ChecksumOutputStream(bytes, checksum);
+
+        // =================== Process ===================
+        output.write(CHECK_INPUT[3]);
+        output.write(CHECK_INPUT, 4, 5);
+        output.close();
+
+        // =================== Output  ===================
+        Assert.assertEquals(6, bytes.size());
+        Assert.assertEquals("15e2b0d3c33891ebb0f1ef609ec419420c20e320ce94c65fbc8c3312448eb225", checksum.getValue());
+
+        // ===================  After  ===================
+        Assert.assertTrue(file.delete());
+    }
+
+    /**
+     * Compute the checksum of the bytes.
+     *
+     * @param algorithm The algorithm of checksum.
+     * @param bytes The bytes.
+     * @return The checksum.
+     */
+    private static String checksumOf(ChecksumAlgorithm algorithm, byte[] bytes) {
+        TransferChecksum checksum = new TransferChecksum(algorithm);
+        checksum.update(bytes, 0, bytes.length);
+        return checksum.getValue();
+    }
+}
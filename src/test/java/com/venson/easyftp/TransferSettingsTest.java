@@ -0,0 +1,94 @@
+package com.venson.easyftp;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.venson.easyftp.BandwidthLimiter;
+import com.venson.easyftp.ChecksumAlgorithm;
+import com.venson.easyftp.FTPTransferMode;
+import com.venson.easyftp.ServerToClient;
+
+/**
+ * The test class of TransferSettings.
+ *
+ * @author venson
+ */
+public class TransferSettingsTest {
+
+    /**
+     * Test default behavior, the defaults are expected to be the ones of ServerToClient.
+     */
+    @Test
+    public void testDefaultBehavior001() {
+
+        // =================== Before  ===================
+        ServerToClient client = new ServerToClient();
+
+        // ===================  Input  ===================
+
+        // =================== Process ===================
+        TransferSettings settings = new TransferSettings();
+
+        // =================== Output  ===================
+        Assert.assertEquals(client.getTransferMode(), settings.getTransferMode());
+        Assert.assertEquals(client.isResumeBroken(), settings.isResumeBroken());
+        Assert.assertEquals(client.getRetryTimes(), settings.getRetryTimes());
+        Assert.assertEquals(client.getRetryWaitTime(), settings.getRetryWaitTime());
+        Assert.assertEquals(client.getDownloadSegments(), settings.getDownloadSegments());
+        Assert.assertEquals(client.getMinSegmentSize(), settings.getMinSegmentSize());
+        Assert.assertEquals(client.getDownloadBufferSize(), settings.getDownloadBufferSize());
+        Assert.assertEquals(client.isPreallocate(), settings.isPreallocate());
+        Assert.assertEquals(client.isZeroCopyUpload(), settings.isZeroCopyUpload());
+        Assert.assertEquals(client.getResumeVerifyWindow(), settings.getResumeVerifyWindow());
+        Assert.assertEquals(client.isVerifyChecksum(), settings.isVerifyChecksum());
+
+        // ===================  After  ===================
+    }
+
+    /**
+     * The settings are expected to be copied to the FTP client.
+     */
+    @Test
+    public void testCopyTo001() {
+
+        // =================== Before  ===================
+        BandwidthLimiter limiter = new BandwidthLimiter();
+        ServerToClient client = new ServerToClient();
+
+        // ===================  Input  ===================
+        TransferSettings settings = new TransferSettings();
+        settings.setTransferMode(FTPTransferMode.UPLOAD);
+        settings.setResumeBroken(false);
+        settings.setRetryTimes(3);
+        settings.setRetryWaitTime(5L);
+        settings.setChecksumAlgorithm(ChecksumAlgorithm.MD5);
+        settings.setVerifyChecksum(true);
+        settings.setBandwidthLimiter(limiter);
+        settings.setDownloadSegments(4);
+        settings.setMinSegmentSize(1000L);
+        settings.setDownloadBufferSize(8192);
+        settings.setPreallocate(true);
+        settings.setZeroCopyUpload(true);
+        settings.setResumeVerifyWindow(4096L);
+
+        // =================== Process ===================
+        settings.copyTo(client);
+
+        // =================== Output  ===================
+        Assert.assertEquals(FTPTransferMode.UPLOAD, client.getTransferMode());
+        Assert.assertEquals(false, client.isResumeBroken());
+        Assert.assertEquals(3, client.getRetryTimes());
+        Assert.assertEquals(5L, client.getRetryWaitTime());
+        Assert.assertEquals(ChecksumAlgorithm.MD5, client.getChecksumAlgorithm());
+        Assert.assertEquals(true, client.isVerifyChecksum());
+        Assert.assertSame(limiter, client.getBandwidthLimiter());
+        Assert.assertEquals(4, client.getDownloadSegments());
+        Assert.assertEquals(1000L, client.getMinSegmentSize());
+        Assert.assertEquals(8192, client.getDownloadBufferSize());
+        Assert.assertEquals(true, client.isPreallocate());
+        Assert.assertEquals(true, client.isZeroCopyUpload());
+        Assert.assertEquals(4096L, client.getResumeVerifyWindow());
+
+        // ===================  After  ===================
+    }
+}